@@ -0,0 +1,465 @@
+package org.metalev.multitouch.controller;
+
+/**
+ * GesturePublisher.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Publishes the gestures seen by a MultiTouchController as a stream of GestureEvents (select, transform, release, fling), with demand-based
+ * backpressure modelled on java.util.concurrent.Flow (which is not available on Android). A GesturePublisher is a MultiTouchObjectCanvas: pass it
+ * to the controller in place of your own canvas, either wrapping your canvas (which then still does hit testing and receives every callback), or
+ * on its own, in which case the whole view is one draggable object that starts at the origin with scale 1.
+ *
+ * Publishing never blocks the thread that drives the controller. Each subscriber has its own small queue: while a subscriber has no outstanding
+ * demand, successive transforms are conflated (only the latest is kept), and select/release/fling events are queued in order. When the queue is
+ * full, queued transforms are dropped to make room (a release carries the final transform, so no end state is lost); select/release/fling events
+ * are never dropped, so if a subscriber falls more than QUEUE_CAPACITY of them behind, its subscription fails with onError() instead. Events are
+ * delivered on whichever thread publishes them or calls request(), never concurrently to the same subscriber.
+ *
+ * Usage:
+ *   <code>
+ *   GesturePublisher<Object> gestures = GesturePublisher.forWholeView();
+ *   MultiTouchController<Object> multiTouchController = new MultiTouchController<Object>(gestures);
+ *   gestures.subscribe(new GesturePublisher.Subscriber<Object>() { ... });
+ *   </code>
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.metalev.multitouch.controller.MultiTouchController.MultiTouchObjectCanvas;
+import org.metalev.multitouch.controller.MultiTouchController.PointInfo;
+import org.metalev.multitouch.controller.MultiTouchController.PositionAndScale;
+
+public class GesturePublisher<T> implements MultiTouchObjectCanvas<T> {
+
+	/**
+	 * Number of events a subscriber can fall behind by. Beyond this, queued transforms are dropped, and once only select/release/fling events are
+	 * queued, the subscription fails (transforms are conflated, so this is rarely reached).
+	 */
+	public static final int QUEUE_CAPACITY = 16;
+
+	/** Releases faster than this, in pixels per second, also publish a TYPE_FLING event */
+	private static final float MIN_FLING_VELOCITY = 50.0f;
+
+	/** A release only publishes a fling if the object was still moving within this many ms of the release */
+	private static final long MAX_FLING_IDLE_TIME = 100;
+
+	/** Weight of the newest transform in the velocity estimate */
+	private static final float VELOCITY_SMOOTHING = 0.6f;
+
+	// ------------------------------------------------------------------------------------
+
+	/** Receives gesture events, in the manner of java.util.concurrent.Flow.Subscriber */
+	public static interface Subscriber<T> {
+		/** Called once, before any other method, with the subscription to request events through */
+		public void onSubscribe(Subscription subscription);
+
+		/** Called with the next event, at most as many times as requested. The event is reused after this returns, so copy out what you need. */
+		public void onNext(GestureEvent<T> event);
+
+		/** Called when the publisher is closed, after any remaining requested events */
+		public void onComplete();
+
+		/**
+		 * Called instead of onComplete() if the subscription fails, which only happens if the subscriber falls more than QUEUE_CAPACITY
+		 * select/release/fling events behind (an IllegalStateException). Any events still queued are not delivered, and no more events follow.
+		 */
+		public void onError(Throwable error);
+	}
+
+	/** A subscriber's link to the publisher, in the manner of java.util.concurrent.Flow.Subscription */
+	public static interface Subscription {
+		/** Allow n more events to be delivered (n > 0); may be called from any thread, including from onNext() */
+		public void request(long n);
+
+		/** Stop delivering events */
+		public void cancel();
+	}
+
+	/** A gesture event, see Subscriber.onNext() */
+	public static class GestureEvent<T> {
+		/** An object was picked up. getPositionAndScale() is its transform at that time. */
+		public static final int TYPE_SELECT = 1;
+
+		/** The selected object was moved, scaled and/or rotated to getPositionAndScale() */
+		public static final int TYPE_TRANSFORM = 2;
+
+		/** The object was let go of. getPositionAndScale() is its final transform. */
+		public static final int TYPE_RELEASE = 3;
+
+		/** The object was let go of while moving, follows TYPE_RELEASE. getVelocityX/Y() are in pixels per second. */
+		public static final int TYPE_FLING = 4;
+
+		private int type;
+
+		private T obj;
+
+		private final PositionAndScale xform = new PositionAndScale();
+
+		private long eventTime;
+
+		private float velocityX, velocityY;
+
+		private void set(GestureEvent<T> other) {
+			this.type = other.type;
+			this.obj = other.obj;
+			this.xform.set(other.xform);
+			this.eventTime = other.eventTime;
+			this.velocityX = other.velocityX;
+			this.velocityY = other.velocityY;
+		}
+
+		/** One of the TYPE_* constants */
+		public int getType() {
+			return type;
+		}
+
+		/** The object the gesture applies to */
+		public T getObject() {
+			return obj;
+		}
+
+		public PositionAndScale getPositionAndScale() {
+			return xform;
+		}
+
+		/** Time of the touch sample that caused the event, in ms, in the SystemClock.uptimeMillis() time base */
+		public long getEventTime() {
+			return eventTime;
+		}
+
+		public float getVelocityX() {
+			return velocityX;
+		}
+
+		public float getVelocityY() {
+			return velocityY;
+		}
+	}
+
+	// ------------------------------------------------------------------------------------
+
+	/** One subscriber's demand and queue of undelivered events */
+	private static class SubscriptionImpl<T> implements Subscription {
+		private final GesturePublisher<T> publisher;
+
+		private final Subscriber<T> subscriber;
+
+		/** Queued events, oldest at index head. Guarded by this. */
+		private final GestureEvent<T>[] queue;
+
+		private int head, size;
+
+		/** Outstanding demand. Guarded by this. */
+		private long requested;
+
+		private boolean completed;
+
+		/** Set when a select/release/fling event could not be queued; the subscription then fails with onError(). Guarded by this. */
+		private boolean overflowed;
+
+		private volatile boolean cancelled;
+
+		/** Number of drain() calls in progress or pending; only the caller that increments it from 0 delivers, so onNext() is never concurrent */
+		private final AtomicInteger wip = new AtomicInteger();
+
+		/** The event being delivered, copied out of the queue so that publishing can carry on while the subscriber reads it */
+		private final GestureEvent<T> delivering = new GestureEvent<T>();
+
+		@SuppressWarnings("unchecked")
+		private SubscriptionImpl(GesturePublisher<T> publisher, Subscriber<T> subscriber) {
+			this.publisher = publisher;
+			this.subscriber = subscriber;
+			// Generic arrays can't be created directly; the cast is safe since the array never leaves this object and only holds GestureEvent<T>s
+			queue = (GestureEvent<T>[]) new GestureEvent<?>[QUEUE_CAPACITY];
+			for (int i = 0; i < QUEUE_CAPACITY; i++)
+				queue[i] = new GestureEvent<T>();
+		}
+
+		public void request(long n) {
+			if (n <= 0)
+				throw new IllegalArgumentException("request() requires a positive number of events");
+			synchronized (this) {
+				requested += n;
+				if (requested < 0)
+					// Overflowed: treat as unbounded, as Flow does
+					requested = Long.MAX_VALUE;
+			}
+			drain();
+		}
+
+		public void cancel() {
+			cancelled = true;
+			publisher.removeSubscription(this);
+		}
+
+		/**
+		 * Queue an event, conflating it with the newest queued event if both are transforms. If the queue is full, the oldest queued transform is
+		 * dropped to make room; if there is none, a new transform is dropped, and any other event makes the subscription fail.
+		 */
+		private void enqueue(int type, T obj, PositionAndScale xform, long eventTime, float velocityX, float velocityY) {
+			boolean overflow = false;
+			synchronized (this) {
+				if (overflowed || completed)
+					return;
+				GestureEvent<T> event = null;
+				if (type == GestureEvent.TYPE_TRANSFORM && size > 0 && queue[(head + size - 1) % QUEUE_CAPACITY].type == GestureEvent.TYPE_TRANSFORM) {
+					event = queue[(head + size - 1) % QUEUE_CAPACITY];
+				} else if (size < QUEUE_CAPACITY || evictTransform()) {
+					event = queue[(head + size++) % QUEUE_CAPACITY];
+				} else if (type != GestureEvent.TYPE_TRANSFORM) {
+					// Only select/release/fling events are queued, and none of them can be dropped
+					overflowed = overflow = true;
+				}
+				if (event != null) {
+					event.type = type;
+					event.obj = obj;
+					event.xform.set(xform);
+					event.eventTime = eventTime;
+					event.velocityX = velocityX;
+					event.velocityY = velocityY;
+				}
+			}
+			if (overflow)
+				publisher.removeSubscription(this);
+			drain();
+		}
+
+		/** Remove the oldest queued transform, keeping the other events in order. Returns false if there is none. Call while holding this. */
+		private boolean evictTransform() {
+			for (int i = 0; i < size; i++) {
+				GestureEvent<T> evicted = queue[(head + i) % QUEUE_CAPACITY];
+				if (evicted.type == GestureEvent.TYPE_TRANSFORM) {
+					// Move the newer events down a slot, and put the (reused) event object in the freed slot at the end
+					for (int j = i; j < size - 1; j++)
+						queue[(head + j) % QUEUE_CAPACITY] = queue[(head + j + 1) % QUEUE_CAPACITY];
+					queue[(head + size - 1) % QUEUE_CAPACITY] = evicted;
+					evicted.obj = null;
+					size--;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void complete() {
+			synchronized (this) {
+				completed = true;
+			}
+			drain();
+		}
+
+		/**
+		 * Deliver as many queued events as have been requested, then onComplete() if the publisher has been closed and the queue is empty. If the
+		 * queue overflowed, call onError() straight away instead.
+		 */
+		private void drain() {
+			if (wip.getAndIncrement() != 0)
+				// Another thread is delivering, and will loop again because wip is now nonzero
+				return;
+			do {
+				while (!cancelled) {
+					boolean finished = false, failed = false;
+					synchronized (this) {
+						if (overflowed) {
+							// Drop the queued events, so they don't hold on to their objects
+							for (; size > 0; size--, head = (head + 1) % QUEUE_CAPACITY)
+								queue[head].obj = null;
+							finished = failed = true;
+						} else if (size == 0) {
+							if (!completed)
+								break;
+							finished = true;
+						} else {
+							if (requested == 0)
+								break;
+							delivering.set(queue[head]);
+							queue[head].obj = null;
+							head = (head + 1) % QUEUE_CAPACITY;
+							size--;
+							if (requested != Long.MAX_VALUE)
+								requested--;
+						}
+					}
+					if (finished) {
+						cancelled = true;
+						if (failed)
+							subscriber.onError(new IllegalStateException("Subscriber fell more than " + QUEUE_CAPACITY
+									+ " select/release/fling events behind"));
+						else
+							subscriber.onComplete();
+						break;
+					}
+					subscriber.onNext(delivering);
+				}
+			} while (wip.decrementAndGet() != 0);
+		}
+	}
+
+	private static final SubscriptionImpl<?>[] NO_SUBSCRIPTIONS = new SubscriptionImpl<?>[0];
+
+	/** The current subscriptions, replaced (never modified) when subscribers come and go, so publishing does not need to lock */
+	private volatile SubscriptionImpl<?>[] subscriptions = NO_SUBSCRIPTIONS;
+
+	private boolean closed;
+
+	// ------------------------------------------------------------------------------------
+
+	/** The wrapped canvas, or null if the whole view is one object */
+	private final MultiTouchObjectCanvas<T> canvas;
+
+	/** The whole-view object's transform, if there is no wrapped canvas */
+	private float viewXOff, viewYOff, viewScale = 1.0f, viewAngle;
+
+	private T selectedObj;
+
+	/** Position and time of the last transform, and the smoothed velocity of the selected object, for detecting flings */
+	private float lastXOff, lastYOff, velocityX, velocityY;
+
+	private long lastTransformTime;
+
+	private final PositionAndScale mXform = new PositionAndScale();
+
+	/** Publish the gestures applied to the objects of the given canvas. All MultiTouchObjectCanvas calls are passed on to it. */
+	public GesturePublisher(MultiTouchObjectCanvas<T> canvas) {
+		this.canvas = canvas;
+	}
+
+	/** A publisher for which the whole view is a single object (the publisher itself), that can be dragged, scaled and rotated anywhere */
+	public static GesturePublisher<Object> forWholeView() {
+		return new GesturePublisher<Object>(null);
+	}
+
+	/** Add a subscriber. Its onSubscribe() is called before this returns; it then receives the events published after it has requested them. */
+	public void subscribe(Subscriber<T> subscriber) {
+		SubscriptionImpl<T> subscription = new SubscriptionImpl<T>(this, subscriber);
+		boolean alreadyClosed;
+		synchronized (this) {
+			alreadyClosed = closed;
+			if (!alreadyClosed)
+				subscriptions = append(subscriptions, subscription);
+		}
+		subscriber.onSubscribe(subscription);
+		if (alreadyClosed)
+			subscription.complete();
+	}
+
+	/** Stop publishing: every subscriber gets onComplete() once it has been delivered the events already queued for it */
+	public void close() {
+		SubscriptionImpl<?>[] subs;
+		synchronized (this) {
+			closed = true;
+			subs = subscriptions;
+			subscriptions = NO_SUBSCRIPTIONS;
+		}
+		for (int i = 0; i < subs.length; i++)
+			subs[i].complete();
+	}
+
+	private static SubscriptionImpl<?>[] append(SubscriptionImpl<?>[] subs, SubscriptionImpl<?> sub) {
+		SubscriptionImpl<?>[] newSubs = new SubscriptionImpl<?>[subs.length + 1];
+		System.arraycopy(subs, 0, newSubs, 0, subs.length);
+		newSubs[subs.length] = sub;
+		return newSubs;
+	}
+
+	private synchronized void removeSubscription(SubscriptionImpl<T> sub) {
+		SubscriptionImpl<?>[] subs = subscriptions;
+		for (int i = 0; i < subs.length; i++) {
+			if (subs[i] == sub) {
+				SubscriptionImpl<?>[] newSubs = new SubscriptionImpl<?>[subs.length - 1];
+				System.arraycopy(subs, 0, newSubs, 0, i);
+				System.arraycopy(subs, i + 1, newSubs, i, subs.length - i - 1);
+				subscriptions = newSubs;
+				return;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void publish(int type, T obj, PositionAndScale xform, long eventTime, float velocityX, float velocityY) {
+		SubscriptionImpl<?>[] subs = subscriptions;
+		for (int i = 0; i < subs.length; i++)
+			// Only SubscriptionImpl<T>s are ever added
+			((SubscriptionImpl<T>) subs[i]).enqueue(type, obj, xform, eventTime, velocityX, velocityY);
+	}
+
+	// ------------------------------------------------------------------------------------
+	// MultiTouchObjectCanvas
+
+	@SuppressWarnings("unchecked")
+	public T getDraggableObjectAtPoint(PointInfo touchPoint) {
+		return canvas != null ? canvas.getDraggableObjectAtPoint(touchPoint) : (T) this;
+	}
+
+	public void getPositionAndScale(T obj, PositionAndScale objPosAndScaleOut) {
+		if (canvas != null)
+			canvas.getPositionAndScale(obj, objPosAndScaleOut);
+		else
+			objPosAndScaleOut.set(viewXOff, viewYOff, true, viewScale, false, viewScale, viewScale, true, viewAngle);
+	}
+
+	public boolean setPositionAndScale(T obj, PositionAndScale newObjPosAndScale, PointInfo touchPoint) {
+		if (canvas != null) {
+			if (!canvas.setPositionAndScale(obj, newObjPosAndScale, touchPoint))
+				return false;
+		} else {
+			viewXOff = newObjPosAndScale.getXOff();
+			viewYOff = newObjPosAndScale.getYOff();
+			viewScale = newObjPosAndScale.getScale();
+			viewAngle = newObjPosAndScale.getAngle();
+		}
+		long eventTime = touchPoint.getEventTime();
+		long dt = eventTime - lastTransformTime;
+		if (dt > 0) {
+			float vx = (newObjPosAndScale.getXOff() - lastXOff) * 1000.0f / dt;
+			float vy = (newObjPosAndScale.getYOff() - lastYOff) * 1000.0f / dt;
+			velocityX = VELOCITY_SMOOTHING * vx + (1.0f - VELOCITY_SMOOTHING) * velocityX;
+			velocityY = VELOCITY_SMOOTHING * vy + (1.0f - VELOCITY_SMOOTHING) * velocityY;
+		}
+		lastXOff = newObjPosAndScale.getXOff();
+		lastYOff = newObjPosAndScale.getYOff();
+		lastTransformTime = eventTime;
+		publish(GestureEvent.TYPE_TRANSFORM, obj, newObjPosAndScale, eventTime, 0.0f, 0.0f);
+		return true;
+	}
+
+	public void selectObject(T obj, PointInfo touchPoint) {
+		if (canvas != null)
+			canvas.selectObject(obj, touchPoint);
+		long eventTime = touchPoint.getEventTime();
+		if (obj != null) {
+			getPositionAndScale(obj, mXform);
+			lastXOff = mXform.getXOff();
+			lastYOff = mXform.getYOff();
+			lastTransformTime = eventTime;
+			velocityX = velocityY = 0.0f;
+			publish(GestureEvent.TYPE_SELECT, obj, mXform, eventTime, 0.0f, 0.0f);
+		} else if (selectedObj != null) {
+			getPositionAndScale(selectedObj, mXform);
+			publish(GestureEvent.TYPE_RELEASE, selectedObj, mXform, eventTime, 0.0f, 0.0f);
+			if (eventTime - lastTransformTime <= MAX_FLING_IDLE_TIME
+					&& velocityX * velocityX + velocityY * velocityY >= MIN_FLING_VELOCITY * MIN_FLING_VELOCITY)
+				publish(GestureEvent.TYPE_FLING, selectedObj, mXform, eventTime, velocityX, velocityY);
+		}
+		selectedObj = obj;
+	}
+}
@@ -22,6 +22,20 @@ package org.metalev.multitouch.controller;
  *   </code>
  * 
  * Changelog:
+ *   2026-10-18 v1.7.3  Adaptive backpressure: intermediate samples are conflated while setPositionAndScale() is slower than the touch sensor
+ *   2026-10-18 v1.7.2  Drag/pinch transforms are computed as changes from the anchor, so they no longer creep over long gestures; SoakHarness
+ *   2026-10-18 v1.7.1  GestureListener: tap, double tap, long press and two-finger tap, recognized in the same pass as drag/pinch
+ *   2026-10-18 v1.7    setObjectCanvas(): a controller can be kept across a configuration change and handed to the recreated view
+ *   2026-10-18 v1.6.9  High-precision mode: drag/pinch anchor math in double, with double position and scale in PositionAndScale
+ *   2026-10-18 v1.6.8  GesturePublisher: a Flow-style stream of select/transform/release/fling events with demand-based backpressure
+ *   2026-10-18 v1.6.7  Optional gesture thread: samples are handed off through a lock-free ring and processed off the UI thread
+ *   2026-10-18 v1.6.6  No limit on the number of touch points: pointer arrays grow (rarely) instead of truncating at MAX_TOUCH_POINTS
+ *   2026-10-18 v1.6.5  Optional touch major/minor, orientation and tool type per pointer, read only if requested via setAxisMask()
+ *   2026-10-18 v1.6.4  Stroke mode: capture every raw sample (history included) per pointer, delivered in batches once per event
+ *   2026-10-18 v1.6.3  PointInfo objects are versioned and pooled, and can be retained by consumers instead of copied
+ *   2026-10-18 v1.6.2  Replaced DEBUG logging with MultiTouchTrace, a runtime-switchable binary trace ring buffer
+ *   2026-10-18 v1.6.1  Optional low-overhead metrics (event/sample counters, filter rejects, callback time) with a snapshot API
+ *   2026-10-18 v1.6    Optional frame-paced delivery of transforms, coalesced to one setPositionAndScale() call per display frame
  *   2010-06-09 v1.5.1  Some API changes to make it possible to selectively update or not update scale / rotation.
  *                      Fixed anisotropic zoom.  Cleaned up rotation code.  Added more comments.  Better var names. (LH)
  *   2010-06-09 v1.4    Added ability to track pinch rotation (Mickael Despesse, author of "Face Frenzy") and anisotropic pinch-zoom (LH)
@@ -61,8 +75,15 @@ package org.metalev.multitouch.controller;
  * DEALINGS IN THE SOFTWARE.
  */
 
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 
+import java.util.concurrent.locks.LockSupport;
+
+import android.os.Handler;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.MotionEvent;
 
@@ -94,15 +115,31 @@ public class MultiTouchController<T> {
 	/** The smallest possible distance between multitouch points (used to avoid div-by-zero errors and display glitches) */
 	private static final float MIN_MULTITOUCH_SEPARATION = 30.0f;
 
-	/** The max number of touch points that can be present on the screen at once */
+	/**
+	 * In frame-paced mode, the smallest change in object position (in pixels) and in scale or angle that is worth another call to
+	 * setPositionAndScale() -- smaller changes would not be visible.
+	 */
+	private static final float FRAME_PACED_POS_EPSILON = 0.05f, FRAME_PACED_SCALE_ANGLE_EPSILON = 1e-4f;
+
+	/** Frame interval to assume for frame-paced mode on Android versions before 4.1, which have no Choreographer */
+	private static final long FALLBACK_FRAME_INTERVAL = 16;
+
+	/**
+	 * The number of touch points that the controller and PointInfo have room for initially. More touch points than this are supported, but the
+	 * first event with more touch points causes the arrays holding them to grow (which allocates), so this should cover all normal use.
+	 */
 	public static final int MAX_TOUCH_POINTS = 20;
 
-	/** Generate tons of log entries for debugging */
+	/**
+	 * Generate tons of log entries for debugging. No longer used by the controller itself, which records a binary trace instead when tracing is
+	 * switched on at runtime, see setTrace().
+	 */
 	public static final boolean DEBUG = false;
 
 	// ----------------------------------------------------------------------------------------------------------------------
 
-	MultiTouchObjectCanvas<T> objectCanvas;
+	/** Volatile since it can be swapped by setObjectCanvas() while the gesture thread is calling it */
+	volatile MultiTouchObjectCanvas<T> objectCanvas;
 
 	/** The current touch point */
 	private PointInfo mCurrPt;
@@ -110,6 +147,15 @@ public class MultiTouchController<T> {
 	/** The previous touch point */
 	private PointInfo mPrevPt;
 
+	/**
+	 * All PointInfo objects that the controller fills in, including mCurrPt and mPrevPt. Any that are not mCurrPt, mPrevPt or retained by a consumer
+	 * (see PointInfo.retain()) can be reused for the next sample. Grows only if consumers retain more points than it holds.
+	 */
+	private PointInfo[] mPointInfoPool = new PointInfo[4];
+
+	/** Version number of the last sample, see PointInfo.getVersion() */
+	private long mLastVersion;
+
 	/** Fields extracted from mCurrPt */
 	private float mCurrPtX, mCurrPtY, mCurrPtDiam, mCurrPtWidth, mCurrPtHeight, mCurrPtAng;
 
@@ -142,14 +188,21 @@ public class MultiTouchController<T> {
 	/** Drag/pinch start time and time to ignore spurious events until (to smooth over event noise) */
 	private long mSettleStartTime, mSettleEndTime;
 
-	/** Conversion from object coords to screen coords */
-	private float startPosX, startPosY;
+	/** The touch position, and pinch diameter, width, height and angle (as far as they are used), when the drag/pinch was anchored */
+	private float startPtX, startPtY, startPtDiam, startPtWidth, startPtHeight, startPtAng;
+
+	/**
+	 * The object's position, scale and angle when the drag/pinch was anchored. Each new transform is worked out as a change from these, driven by
+	 * the change in the touch points since then, rather than through products like scale/diameter that round on the way in and out, so touch
+	 * points that return to where they were anchored give back exactly the start transform and long gestures don't creep.
+	 */
+	private float startXOff, startYOff, startScale, startScaleX, startScaleY, startAngle;
 
-	/** Conversion between scale and width, and object angle and start pinch angle */
-	private float startScaleOverPinchDiam, startAngleMinusPinchAngle;
+	/** High-precision mode: whether position and scale are computed in double, see setHighPrecision() */
+	private boolean highPrecision;
 
-	/** Conversion between X scale and width, and Y scale and height */
-	private float startScaleXOverPinchWidth, startScaleYOverPinchHeight;
+	/** High-precision mode: double versions of startXOff, startYOff and startScale */
+	private double startXOffPrecise, startYOffPrecise, startScalePrecise;
 
 	// ----------------------------------------------------------------------------------------------------------------------
 
@@ -162,8 +215,171 @@ public class MultiTouchController<T> {
 	/** Two or more touch points down, stretching/rotating an object using the first two touch points. */
 	public static final int MODE_PINCH = 2;
 
-	/** Current drag mode */
-	private int mMode = MODE_NOTHING;
+	/** Current drag mode. Volatile because it is read by the thread that receives touch events when there is a gesture thread. */
+	private volatile int mMode = MODE_NOTHING;
+
+	// ----------------------------------------------------------------------------------------------------------------------
+
+	/** Axis mask bit: read the length of the major axis of each touch ellipse, see PointInfo.getTouchMajors(). Android 2.3+. */
+	public static final int AXIS_TOUCH_MAJOR = 1;
+
+	/** Axis mask bit: read the length of the minor axis of each touch ellipse, see PointInfo.getTouchMinors(). Android 2.3+. */
+	public static final int AXIS_TOUCH_MINOR = 2;
+
+	/** Axis mask bit: read the orientation of each touch ellipse, see PointInfo.getOrientations(). Android 2.3+. */
+	public static final int AXIS_ORIENTATION = 4;
+
+	/** Axis mask bit: read the tool type (finger, stylus etc.) of each pointer, see PointInfo.getToolTypes(). Android 4.0+. */
+	public static final int AXIS_TOOL_TYPE = 8;
+
+	/** The AXIS_* values that were requested with setAxisMask() and are supported by this version of Android */
+	private int axisMask;
+
+	// ----------------------------------------------------------------------------------------------------------------------
+
+	/** Whether to coalesce transforms and deliver them at most once per display frame */
+	private boolean framePacedUpdates;
+
+	/** Delivers frame callbacks in frame-paced mode, created when frame-paced mode is first enabled */
+	private FrameScheduler frameScheduler;
+
+	/** Frame-paced mode: whether mCurrXform has changed since it was last passed to setPositionAndScale() */
+	private boolean xformPending;
+
+	/** Frame-paced mode: the transform that the selected object currently has, used to suppress updates that would not change anything */
+	private PositionAndScale mLastDeliveredXform = new PositionAndScale();
+
+	// ----------------------------------------------------------------------------------------------------------------------
+
+	/** Whether to update mMetrics. When false, the only cost of metrics is a test of this flag at each counting point. */
+	private boolean metricsEnabled;
+
+	/**
+	 * Counters, only updated if metricsEnabled is true. mMetrics holds the counters of the state machine, and is only touched by the thread that
+	 * runs it (the gesture thread, if there is one); mInputMetrics holds those of the thread that receives touch events (events, capacity growths,
+	 * dropped samples and producer waits).
+	 */
+	private final Metrics mMetrics = new Metrics(), mInputMetrics = new Metrics();
+
+	/** A copy of mMetrics, published by the gesture thread after each sample so that getMetrics() can read it safely; guarded by itself */
+	private final Metrics mPublishedMetrics = new Metrics();
+
+	/** Set by resetMetrics() to have the gesture thread clear mMetrics; only changed while holding mPublishedMetrics */
+	private volatile boolean metricsResetPending;
+
+	/** Where to record what the state machine does, or null if tracing is off. Read once into a local at each tracing point */
+	private volatile MultiTouchTrace mTrace;
+
+	// ----------------------------------------------------------------------------------------------------------------------
+
+	/** Stroke mode: receives all raw samples once per event, or null if not capturing strokes */
+	private StrokeListener strokeListener;
+
+	/** Stroke mode: strokes of pointers that are currently down */
+	private Stroke[] mActiveStrokes = new Stroke[MAX_TOUCH_POINTS];
+
+	private int mNumActiveStrokes;
+
+	/** Stroke mode: ended strokes whose buffers can be reused */
+	private Stroke[] mFreeStrokes = new Stroke[MAX_TOUCH_POINTS];
+
+	private int mNumFreeStrokes;
+
+	// ----------------------------------------------------------------------------------------------------------------------
+
+	/** Number of samples that can be queued for the gesture thread before MOVE samples start being dropped */
+	private static final int GESTURE_RING_CAPACITY = 256;
+
+	/** Runs the state machine and MultiTouchObjectCanvas callbacks off the thread that receives touch events, or null to run them inline */
+	private GestureThread gestureThread;
+
+	// ----------------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Adaptive backpressure: samples start being conflated when the average setPositionAndScale() call takes longer than this fraction of the
+	 * average time between samples, and stop being conflated when it drops below the (lower) exit fraction, so the mode doesn't flap
+	 */
+	private static final float BACKPRESSURE_ENTER_RATIO = 1.0f, BACKPRESSURE_EXIT_RATIO = 0.5f;
+
+	/** Adaptive backpressure: weight of each new measurement in the moving averages of callback time and sample interval */
+	private static final float BACKPRESSURE_AVERAGING_WEIGHT = 0.125f;
+
+	/** Adaptive backpressure: gaps between samples longer than this (in ms) are pauses in the input, not the sensor's sample interval */
+	private static final long MAX_SAMPLE_INTERVAL = 100;
+
+	/**
+	 * Whether to conflate intermediate samples while callbacks are slow, see setAdaptiveBackpressure(). Volatile since it is set on the thread that
+	 * receives touch events and read by the gesture thread, if there is one.
+	 */
+	private volatile boolean adaptiveBackpressure;
+
+	/**
+	 * Adaptive backpressure: whether a later sample is already waiting behind the one being processed (it is a historical sample of a MotionEvent,
+	 * or more samples are queued for the gesture thread), so its transform can be skipped while conflating
+	 */
+	private boolean moreSamplesWaiting;
+
+	/** Adaptive backpressure: moving averages of the time taken by setPositionAndScale() and of the time between samples, in ns */
+	private float avgCallbackNanos, avgSampleIntervalNanos;
+
+	/** Adaptive backpressure: event time of the previous sample, or -1 if none */
+	private long lastSampleTime = -1;
+
+	/** Adaptive backpressure: whether intermediate samples are being conflated. Volatile since it can be read by getMetrics() on another thread. */
+	private volatile boolean conflating;
+
+	// ----------------------------------------------------------------------------------------------------------------------
+
+	/** Longest time (ms) a touch can stay down and still be a tap; a single touch that stays down longer without moving is a long press */
+	private static final long LONG_PRESS_TIMEOUT = 500;
+
+	/** Longest time (ms) between the first tap going up and the second going down for a double tap */
+	private static final long DOUBLE_TAP_TIMEOUT = 300;
+
+	/** How far (in pixels) a touch can move, or two touch points can move apart or together, and still be a tap or long press */
+	private static final float TAP_SLOP = 20.0f;
+
+	/** How far apart (in pixels) two taps can be and still be a double tap */
+	private static final float DOUBLE_TAP_SLOP = 100.0f;
+
+	/** Gesture types recorded in TYPE_GESTURE trace records */
+	private static final int GESTURE_TAP = 1, GESTURE_DOUBLE_TAP = 2, GESTURE_LONG_PRESS = 3, GESTURE_TWO_FINGER_TAP = 4,
+			GESTURE_SINGLE_TAP_CONFIRMED = 5;
+
+	/** Receives taps, confirmed single taps, double taps, long presses and two-finger taps, or null if they are not being recognized */
+	private GestureListener gestureListener;
+
+	/** Gesture recognition: whether a touch is down, and whether it can no longer be a tap (it moved, was held, or was cancelled) */
+	private boolean tapDown, tapCancelled;
+
+	/** Gesture recognition: when the touch went down, where it went down, and the most touch points it has had */
+	private long tapDownTime;
+
+	private float tapDownX, tapDownY;
+
+	private int tapMaxPoints;
+
+	/** Gesture recognition: the number of touch points, and their midpoint and diameter, when the number of touch points last changed */
+	private int tapNumPoints;
+
+	private float tapRefX, tapRefY, tapRefDiam;
+
+	/** Gesture recognition: when and where the last tap that could start a double tap went up, or -1 if there is none */
+	private long lastTapUpTime = -1;
+
+	private float lastTapX, lastTapY;
+
+	/** Gesture recognition: when the current touch becomes a long press, or 0 if it can't */
+	private long longPressTime;
+
+	/** Gesture recognition: when the last tap is confirmed as a single tap because no other touch went down in time, or 0 if there is none pending */
+	private long singleTapTime;
+
+	/**
+	 * Gesture recognition: calls checkGestureTimeouts() when longPressTime or singleTapTime arrives, unless there is a gesture thread (which parks
+	 * until then instead)
+	 */
+	private GestureTimer gestureTimer;
 
 	// ----------------------------------------------------------------------------------------------------------------------
 
@@ -174,14 +390,30 @@ public class MultiTouchController<T> {
 
 	/** Full constructor */
 	public MultiTouchController(MultiTouchObjectCanvas<T> objectCanvas, boolean handleSingleTouchEvents) {
-		this.mCurrPt = new PointInfo();
-		this.mPrevPt = new PointInfo();
+		for (int i = 0; i < mPointInfoPool.length; i++)
+			mPointInfoPool[i] = new PointInfo();
+		this.mCurrPt = mPointInfoPool[0];
+		this.mPrevPt = mPointInfoPool[1];
 		this.handleSingleTouchEvents = handleSingleTouchEvents;
 		this.objectCanvas = objectCanvas;
 	}
 
 	// ------------------------------------------------------------------------------------
 
+	/**
+	 * Send callbacks to a different canvas from now on, e.g. to the view recreated after a configuration change, so that the controller (with its
+	 * settings, metrics and any gesture in progress) can be retained rather than rebuilt. The selected object, if any, is kept, so the new canvas
+	 * must recognize the objects of the old one. Takes effect from the next callback.
+	 */
+	public void setObjectCanvas(MultiTouchObjectCanvas<T> objectCanvas) {
+		this.objectCanvas = objectCanvas;
+	}
+
+	/** The canvas the controller sends callbacks to */
+	public MultiTouchObjectCanvas<T> getObjectCanvas() {
+		return objectCanvas;
+	}
+
 	/**
 	 * Whether to handle single-touch events/drags before multi-touch is initiated or not; if not, they are handled by subclasses. Default: true
 	 */
@@ -196,6 +428,305 @@ public class MultiTouchController<T> {
 		return handleSingleTouchEvents;
 	}
 
+	/**
+	 * Frame-paced mode: rather than calling setPositionAndScale() for every touch sample (touch sensors often report faster than the display
+	 * refreshes), keep only the latest transform and deliver it once per display frame, skipping transforms that have not visibly changed. Uses
+	 * Choreographer frame callbacks on Android 4.1+, or an approximate frame clock on earlier versions. Must be called on the thread that
+	 * receives touch events (normally the UI thread). Default: false
+	 */
+	public void setFramePacedUpdates(boolean framePacedUpdates) {
+		if (gestureThread == null) {
+			flushPendingXform();
+			setConflating(false);
+		}
+		// Otherwise the transform state belongs to the gesture thread, which doesn't use frame pacing
+		if (framePacedUpdates && frameScheduler == null)
+			frameScheduler = new FrameScheduler();
+		this.framePacedUpdates = framePacedUpdates;
+	}
+
+	/** Whether transforms are coalesced and delivered once per display frame, see setFramePacedUpdates(). */
+	public boolean getFramePacedUpdates() {
+		return framePacedUpdates;
+	}
+
+	/**
+	 * High-precision mode, for canvases that pan and zoom over huge coordinate ranges (e.g. maps): the object position and scale are read with
+	 * PositionAndScale.getXOffPrecise() etc. rather than as floats, and the drag/pinch is computed from them in double, so panning stays smooth at
+	 * offsets and zoom factors where float rounding would make the object jitter. The canvas should fill in the transform with
+	 * PositionAndScale.setPrecise() in getPositionAndScale(), and read it back with the *Precise() getters in setPositionAndScale(); the float
+	 * getters still work, rounded. Default: false
+	 */
+	public void setHighPrecision(boolean highPrecision) {
+		this.highPrecision = highPrecision;
+	}
+
+	public boolean getHighPrecision() {
+		return highPrecision;
+	}
+
+	/**
+	 * Whether to count events, samples, filter decisions and time spent in MultiTouchObjectCanvas callbacks (see Metrics). Cheap enough to leave on
+	 * in release builds, and almost free when off. Counters are kept (not reset) when metrics are disabled. Default: false
+	 */
+	public void setMetricsEnabled(boolean metricsEnabled) {
+		this.metricsEnabled = metricsEnabled;
+	}
+
+	public boolean getMetricsEnabled() {
+		return metricsEnabled;
+	}
+
+	/**
+	 * Copy the current metrics into metricsOut, without allocating. Must be called on the thread that receives touch events. With the gesture
+	 * thread, the counters of the state machine are taken from the copy it publishes after each sample, so they may be a few samples behind.
+	 */
+	public void getMetrics(Metrics metricsOut) {
+		if (gestureThread != null) {
+			synchronized (mPublishedMetrics) {
+				metricsOut.set(mPublishedMetrics);
+			}
+		} else {
+			metricsOut.set(mMetrics);
+		}
+		metricsOut.events = mInputMetrics.events;
+		metricsOut.capacityGrowths = mInputMetrics.capacityGrowths;
+		metricsOut.samplesDropped = mInputMetrics.samplesDropped;
+		metricsOut.producerWaits = mInputMetrics.producerWaits;
+		metricsOut.producerWaitNanos = mInputMetrics.producerWaitNanos;
+		metricsOut.conflating = conflating;
+	}
+
+	/** Reset all metrics to zero. Must be called on the thread that receives touch events. */
+	public void resetMetrics() {
+		mInputMetrics.clear();
+		if (gestureThread != null) {
+			synchronized (mPublishedMetrics) {
+				mPublishedMetrics.clear();
+				metricsResetPending = true;
+			}
+		} else {
+			mMetrics.clear();
+		}
+	}
+
+	/** Gesture thread: publish mMetrics for getMetrics(), first clearing it if resetMetrics() was called */
+	private void publishMetrics() {
+		synchronized (mPublishedMetrics) {
+			if (metricsResetPending) {
+				mMetrics.clear();
+				metricsResetPending = false;
+			}
+			mPublishedMetrics.set(mMetrics);
+		}
+	}
+
+	/**
+	 * Start recording state transitions, anchors, rejected samples etc. into the given trace buffer, or stop tracing if trace is null. Unlike DEBUG,
+	 * this can be switched on in the field, and costs one null check at each tracing point when off. Default: null
+	 * 
+	 * Call this on the thread that calls onTouchEvent(). If there is a gesture thread, this waits until it has finished the sample it is
+	 * processing, so once this returns the previous trace is no longer being recorded into, and can be read with MultiTouchTrace.writeTo().
+	 */
+	public void setTrace(MultiTouchTrace trace) {
+		MultiTouchTrace prevTrace = mTrace;
+		mTrace = trace;
+		GestureThread thread = gestureThread;
+		if (prevTrace != null && prevTrace != trace && thread != null)
+			thread.awaitTraceHandoff();
+	}
+
+	public MultiTouchTrace getTrace() {
+		return mTrace;
+	}
+
+	/**
+	 * Stroke mode: in addition to the usual drag/pinch processing, capture every raw sample of every pointer (including all historical samples) into
+	 * per-pointer Stroke buffers, and pass them to strokeListener once per MotionEvent. Set to null to stop capturing, which ends any strokes in
+	 * progress. Default: null
+	 */
+	public void setStrokeListener(StrokeListener strokeListener) {
+		if (strokeListener == null)
+			for (int i = mNumActiveStrokes - 1; i >= 0; i--)
+				endStroke(i);
+		this.strokeListener = strokeListener;
+	}
+
+	public StrokeListener getStrokeListener() {
+		return strokeListener;
+	}
+
+	/**
+	 * Choose which optional per-pointer values to read from each MotionEvent, as a combination of the AXIS_* bits. Positions and pressures are
+	 * always read; other axes cost extra calls per pointer per sample, so are only read if requested. Axes not supported by the running version of
+	 * Android are ignored, see getAxisMask(). Default: 0
+	 */
+	public void setAxisMask(int axisMask) {
+		int supportedMask = 0;
+		if (m_getHistoricalOrientation != null)
+			supportedMask |= AXIS_TOUCH_MAJOR | AXIS_TOUCH_MINOR | AXIS_ORIENTATION;
+		if (m_getToolType != null)
+			supportedMask |= AXIS_TOOL_TYPE;
+		this.axisMask = axisMask & supportedMask;
+	}
+
+	/** The axes that are being read from each MotionEvent: those requested with setAxisMask() that are supported by this version of Android. */
+	public int getAxisMask() {
+		return axisMask;
+	}
+
+	/**
+	 * Gesture thread mode: onTouchEvent() only reads the samples out of each MotionEvent and hands them to a dedicated thread through a lock-free
+	 * ring buffer; the state machine and all MultiTouchObjectCanvas callbacks then run on that thread, so slow callbacks no longer hold up event
+	 * delivery. The canvas must then hand its results to the UI thread itself (e.g. with postInvalidate(), or a lock-free handoff to a render
+	 * thread), and must not touch views from its callbacks. If the gesture thread falls behind by more than the ring's capacity, MOVE samples are
+	 * dropped (see Metrics.getSamplesDropped()); other samples wait for space, for at most as long as the gesture thread takes to process one sample
+	 * (see Metrics.getProducerWaits()). Frame-paced updates are not used in this mode, and TYPE_EVENT records
+	 * are not traced (so that only one thread writes to the trace). Must be called on the thread that receives touch events, while no touch points
+	 * are down. Disabling the mode waits for queued samples to be processed. Default: false
+	 */
+	public void setGestureThreadEnabled(boolean enabled) {
+		if (enabled && gestureThread == null) {
+			flushPendingXform();
+			synchronized (mPublishedMetrics) {
+				mPublishedMetrics.set(mMetrics);
+			}
+			// A single tap can still be waiting for confirmation. The gesture thread takes over its timeout, so the Handler must not also fire it
+			if (gestureTimer != null)
+				gestureTimer.schedule(0);
+			gestureThread = new GestureThread();
+			gestureThread.start();
+		} else if (!enabled && gestureThread != null) {
+			gestureThread.quit();
+			gestureThread = null;
+			// Hand any timeout the gesture thread was waiting for back to the Handler
+			if (gestureTimer != null)
+				gestureTimer.schedule(nextGestureTimeout());
+		}
+	}
+
+	/** Whether samples are processed on a gesture thread, see setGestureThreadEnabled(). */
+	public boolean getGestureThreadEnabled() {
+		return gestureThread != null;
+	}
+
+	/**
+	 * Recognize taps (and confirmed single taps), double taps, long presses and two-finger taps, and report them to gestureListener. Recognition
+	 * runs on each sample as part of the drag/pinch state machine, so it needs no separate GestureDetector with its own pass over the events, and
+	 * works whether or not the touch selected an object. Long presses and single tap confirmations are timed with a Handler (or by the gesture
+	 * thread, if there is one). With handleSingleTouchEvents false, single touches are not seen, so only two-finger taps are recognized. Must be
+	 * called on the thread that receives touch events, while no touch points are down. Set to null to stop recognizing gestures. Default: null
+	 */
+	public void setGestureListener(GestureListener gestureListener) {
+		if (gestureListener != null && gestureTimer == null)
+			gestureTimer = new GestureTimer();
+		this.gestureListener = gestureListener;
+	}
+
+	public GestureListener getGestureListener() {
+		return gestureListener;
+	}
+
+	/**
+	 * Adaptive backpressure: time each setPositionAndScale() call, and while calls take longer on average than the time between touch samples,
+	 * stop calling it for intermediate samples (the historical samples of a MotionEvent, or, with the gesture thread, samples that have more queued
+	 * behind them) and only deliver the transform of the latest one, so the object keeps up with the finger rather than working through stale
+	 * input. Every sample still goes through the state machine, so filtering is unchanged, and a skipped transform is still delivered before a
+	 * re-anchor or release. Goes back to calling it for every sample once calls take less than half the sample interval. The current state and the
+	 * number of samples skipped are in the metrics (Metrics.isConflating(), Metrics.getConflatedSamples()), and switches are traced. Has no effect
+	 * in frame-paced mode, which already delivers at most one transform per frame. Must be called on the thread that receives touch events.
+	 * Default: false
+	 */
+	public void setAdaptiveBackpressure(boolean adaptiveBackpressure) {
+		if (!adaptiveBackpressure && gestureThread == null) {
+			flushPendingXform();
+			setConflating(false);
+		}
+		// Otherwise the gesture thread stops conflating before its next sample
+		this.adaptiveBackpressure = adaptiveBackpressure;
+	}
+
+	public boolean getAdaptiveBackpressure() {
+		return adaptiveBackpressure;
+	}
+
+	/** Returns the start time to pass to callbackEnded(), if metrics or adaptive backpressure are enabled */
+	private long callbackStarted() {
+		return metricsEnabled || adaptiveBackpressure ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Add the time since startTime to the time spent in MultiTouchObjectCanvas callbacks, if metrics are enabled. Returns the time taken in ns, or
+	 * 0 if the callback was not timed.
+	 */
+	private long callbackEnded(long startTime) {
+		if (!metricsEnabled && !adaptiveBackpressure)
+			return 0L;
+		long nanos = System.nanoTime() - startTime;
+		if (metricsEnabled) {
+			mMetrics.callbackTimeNanos += nanos;
+			mMetrics.callbacks++;
+		}
+		return nanos;
+	}
+
+	/** Adaptive backpressure: fold the time between this sample and the last into the average sample interval */
+	private void measureSampleInterval(long eventTime) {
+		long interval = eventTime - lastSampleTime;
+		if (lastSampleTime >= 0 && interval > 0 && interval <= MAX_SAMPLE_INTERVAL) {
+			float intervalNanos = interval * 1e6f;
+			avgSampleIntervalNanos = avgSampleIntervalNanos == 0.0f ? intervalNanos : avgSampleIntervalNanos
+					+ (intervalNanos - avgSampleIntervalNanos) * BACKPRESSURE_AVERAGING_WEIGHT;
+		}
+		lastSampleTime = eventTime;
+	}
+
+	/** Adaptive backpressure: fold the time taken by a setPositionAndScale() call into the average, and start or stop conflating if needed */
+	private void measureCallback(long nanos) {
+		avgCallbackNanos = avgCallbackNanos == 0.0f ? nanos : avgCallbackNanos + (nanos - avgCallbackNanos) * BACKPRESSURE_AVERAGING_WEIGHT;
+		if (avgSampleIntervalNanos == 0.0f)
+			return;
+		if (!conflating && avgCallbackNanos > avgSampleIntervalNanos * BACKPRESSURE_ENTER_RATIO)
+			setConflating(true);
+		else if (conflating && avgCallbackNanos < avgSampleIntervalNanos * BACKPRESSURE_EXIT_RATIO)
+			setConflating(false);
+	}
+
+	/** Adaptive backpressure: start or stop conflating, recording the switch in the trace */
+	private void setConflating(boolean conflating) {
+		if (conflating == this.conflating)
+			return;
+		this.conflating = conflating;
+		MultiTouchTrace trace = mTrace;
+		if (trace != null)
+			trace.record(mCurrPt.getEventTime(), MultiTouchTrace.TYPE_BACKPRESSURE, conflating ? 1 : 0, avgCallbackNanos * 1e-6f,
+					avgSampleIntervalNanos * 1e-6f);
+	}
+
+	/** Record a settle-window re-anchor in the trace, if tracing */
+	private void traceSettle() {
+		MultiTouchTrace trace = mTrace;
+		if (trace != null)
+			trace.record(mCurrPt.getEventTime(), MultiTouchTrace.TYPE_SETTLE, mMode, mSettleEndTime - mCurrPt.getEventTime(), 0.0f);
+	}
+
+	/** Record a selection (obj != null) or deselection in the trace, if tracing */
+	private void traceSelect(T obj) {
+		MultiTouchTrace trace = mTrace;
+		if (trace != null)
+			trace.record(mCurrPt.getEventTime(), MultiTouchTrace.TYPE_SELECT, obj != null ? 1 : 0, 0.0f, 0.0f);
+	}
+
+	/** Switch to a new mode */
+	private void setMode(int mode) {
+		MultiTouchTrace trace = mTrace;
+		if (trace != null)
+			trace.record(mCurrPt.getEventTime(), MultiTouchTrace.TYPE_MODE, mode, mMode, 0.0f);
+		mMode = mode;
+		if (metricsEnabled)
+			mMetrics.modeTransitions++;
+	}
+
 	// ------------------------------------------------------------------------------------
 
 	public static final boolean multiTouchSupported;
@@ -209,6 +740,17 @@ public class MultiTouchController<T> {
 	private static Method m_getY;
 	private static int ACTION_POINTER_UP = 6;
 	private static int ACTION_POINTER_INDEX_SHIFT = 8;
+	private static Method m_getTouchMajor;
+	private static Method m_getTouchMinor;
+	private static Method m_getOrientation;
+	private static Method m_getHistoricalTouchMajor;
+	private static Method m_getHistoricalTouchMinor;
+	private static Method m_getHistoricalOrientation;
+	private static Method m_getToolType;
+	private static Class<?> c_FrameCallback;
+	private static Method m_Choreographer_getInstance;
+	private static Method m_postFrameCallback;
+	private static Method m_removeFrameCallback;
 
 	static {
 		boolean succeeded = false;
@@ -235,28 +777,99 @@ public class MultiTouchController<T> {
 				ACTION_POINTER_INDEX_SHIFT = MotionEvent.class.getField("ACTION_POINTER_INDEX_SHIFT").getInt(null);
 			} catch (Exception e) {
 			}
+			// Android 2.3+ stuff, only used if requested with setAxisMask() (m_getHistoricalOrientation is
+			// set last, and is used to check that all of these were found):
+			try {
+				m_getTouchMajor = MotionEvent.class.getMethod("getTouchMajor", Integer.TYPE);
+				m_getTouchMinor = MotionEvent.class.getMethod("getTouchMinor", Integer.TYPE);
+				m_getOrientation = MotionEvent.class.getMethod("getOrientation", Integer.TYPE);
+				m_getHistoricalTouchMajor = MotionEvent.class.getMethod("getHistoricalTouchMajor", Integer.TYPE, Integer.TYPE);
+				m_getHistoricalTouchMinor = MotionEvent.class.getMethod("getHistoricalTouchMinor", Integer.TYPE, Integer.TYPE);
+				m_getHistoricalOrientation = MotionEvent.class.getMethod("getHistoricalOrientation", Integer.TYPE, Integer.TYPE);
+			} catch (Exception e) {
+				m_getHistoricalOrientation = null;
+			}
+			// Android 4.0+ stuff, only used if requested with setAxisMask():
+			try {
+				m_getToolType = MotionEvent.class.getMethod("getToolType", Integer.TYPE);
+			} catch (Exception e) {
+				m_getToolType = null;
+			}
+		}
+		// Android 4.1+ stuff, only used in frame-paced mode:
+		try {
+			Class<?> c_Choreographer = Class.forName("android.view.Choreographer");
+			c_FrameCallback = Class.forName("android.view.Choreographer$FrameCallback");
+			m_Choreographer_getInstance = c_Choreographer.getMethod("getInstance");
+			m_postFrameCallback = c_Choreographer.getMethod("postFrameCallback", c_FrameCallback);
+			m_removeFrameCallback = c_Choreographer.getMethod("removeFrameCallback", c_FrameCallback);
+		} catch (Exception e) {
+			m_postFrameCallback = null;
 		}
 	}
 
 	// ------------------------------------------------------------------------------------
 
-	private static final float[] xVals = new float[MAX_TOUCH_POINTS];
-	private static final float[] yVals = new float[MAX_TOUCH_POINTS];
-	private static final float[] pressureVals = new float[MAX_TOUCH_POINTS];
-	private static final int[] pointerIds = new int[MAX_TOUCH_POINTS];
+	// Per-pointer values read from the current sample. These grow if an event has more pointers than they can hold.
+	private float[] xVals = new float[MAX_TOUCH_POINTS];
+	private float[] yVals = new float[MAX_TOUCH_POINTS];
+	private float[] pressureVals = new float[MAX_TOUCH_POINTS];
+	private int[] pointerIds = new int[MAX_TOUCH_POINTS];
+	private float[] touchMajorVals = new float[MAX_TOUCH_POINTS];
+	private float[] touchMinorVals = new float[MAX_TOUCH_POINTS];
+	private float[] orientationVals = new float[MAX_TOUCH_POINTS];
+	private int[] toolTypeVals = new int[MAX_TOUCH_POINTS];
+
+	/** Grow the per-pointer arrays to hold at least numPointers pointers. Doubles capacity, so this happens at most a few times. */
+	private void growPointerArrays(int numPointers) {
+		int capacity = grownCapacity(xVals.length, numPointers);
+		xVals = growArray(xVals, capacity);
+		yVals = growArray(yVals, capacity);
+		pressureVals = growArray(pressureVals, capacity);
+		pointerIds = growArray(pointerIds, capacity);
+		touchMajorVals = growArray(touchMajorVals, capacity);
+		touchMinorVals = growArray(touchMinorVals, capacity);
+		orientationVals = growArray(orientationVals, capacity);
+		toolTypeVals = growArray(toolTypeVals, capacity);
+		if (metricsEnabled)
+			mInputMetrics.capacityGrowths++;
+	}
+
+	/** Double capacity until it is at least minCapacity */
+	private static int grownCapacity(int capacity, int minCapacity) {
+		while (capacity < minCapacity)
+			capacity *= 2;
+		return capacity;
+	}
+
+	private static float[] growArray(float[] arr, int capacity) {
+		float[] newArr = new float[capacity];
+		System.arraycopy(arr, 0, newArr, 0, arr.length);
+		return newArr;
+	}
+
+	private static int[] growArray(int[] arr, int capacity) {
+		int[] newArr = new int[capacity];
+		System.arraycopy(arr, 0, newArr, 0, arr.length);
+		return newArr;
+	}
 
 	/** Process incoming touch events */
-	@SuppressWarnings("unused")
 	public boolean onTouchEvent(MotionEvent event) {
 		try {
 			int pointerCount = multiTouchSupported ? (Integer) m_getPointerCount.invoke(event) : 1;
-			if (DEBUG)
-				Log.i("MultiTouch", "Got here 1 - " + multiTouchSupported + " " + mMode + " " + handleSingleTouchEvents + " " + pointerCount);
+			if (metricsEnabled)
+				mInputMetrics.events++;
+			MultiTouchTrace trace = gestureThread == null ? mTrace : null;
+			if (trace != null)
+				trace.record(event.getEventTime(), MultiTouchTrace.TYPE_EVENT, event.getAction(), pointerCount, event.getHistorySize());
+			if (pointerCount > xVals.length)
+				growPointerArrays(pointerCount);
+			if (strokeListener != null)
+				captureStrokes(event, pointerCount);
 			if (mMode == MODE_NOTHING && !handleSingleTouchEvents && pointerCount == 1)
 				// Not handling initial single touch events, just pass them on
 				return false;
-			if (DEBUG)
-				Log.i("MultiTouch", "Got here 2");
 
 			// Handle history first (we sometimes get history with ACTION_MOVE events)
 			int action = event.getAction();
@@ -268,19 +881,12 @@ public class MultiTouchController<T> {
 					// Use single-pointer methods -- these are needed as a special case (for some weird reason) even if
 					// multitouch is supported but there's only one touch point down currently -- event.getX(0) etc. throw
 					// an exception if there's only one point down.
-					if (DEBUG)
-						Log.i("MultiTouch", "Got here 3");
 					xVals[0] = processingHist ? event.getHistoricalX(histIdx) : event.getX();
 					yVals[0] = processingHist ? event.getHistoricalY(histIdx) : event.getY();
 					pressureVals[0] = processingHist ? event.getHistoricalPressure(histIdx) : event.getPressure();
 				} else {
 					// Read x, y and pressure of each pointer
-					if (DEBUG)
-						Log.i("MultiTouch", "Got here 4");
-					int numPointers = Math.min(pointerCount, MAX_TOUCH_POINTS);
-					if (DEBUG && pointerCount > MAX_TOUCH_POINTS)
-						Log.i("MultiTouch", "Got more pointers than MAX_TOUCH_POINTS");
-					for (int ptrIdx = 0; ptrIdx < numPointers; ptrIdx++) {
+					for (int ptrIdx = 0; ptrIdx < pointerCount; ptrIdx++) {
 						int ptrId = (Integer) m_getPointerId.invoke(event, ptrIdx);
 						pointerIds[ptrIdx] = ptrId;
 						// N.B. if pointerCount == 1, then the following methods throw an array index out of range exception,
@@ -292,13 +898,22 @@ public class MultiTouchController<T> {
 								.invoke(event, ptrIdx));
 					}
 				}
-				// Decode event
-				decodeTouchEvent(pointerCount, xVals, yVals, pressureVals, pointerIds, //
-						/* action = */processingHist ? MotionEvent.ACTION_MOVE : action, //
-						/* down = */processingHist ? true : action != MotionEvent.ACTION_UP //
-								&& (action & ((1 << ACTION_POINTER_INDEX_SHIFT) - 1)) != ACTION_POINTER_UP //
-								&& action != MotionEvent.ACTION_CANCEL, //
-						processingHist ? event.getHistoricalEventTime(histIdx) : event.getEventTime());
+				if (axisMask != 0)
+					readAxes(event, pointerCount, processingHist, histIdx);
+				int sampleAction = processingHist ? MotionEvent.ACTION_MOVE : action;
+				boolean down = processingHist ? true : action != MotionEvent.ACTION_UP //
+						&& (action & ((1 << ACTION_POINTER_INDEX_SHIFT) - 1)) != ACTION_POINTER_UP //
+						&& action != MotionEvent.ACTION_CANCEL;
+				long eventTime = processingHist ? event.getHistoricalEventTime(histIdx) : event.getEventTime();
+				if (gestureThread != null) {
+					// Decode event on the gesture thread
+					gestureThread.offer(pointerCount, axisMask, sampleAction, down, eventTime);
+				} else {
+					// Decode event
+					moreSamplesWaiting = processingHist;
+					decodeTouchEvent(pointerCount, xVals, yVals, pressureVals, pointerIds, axisMask, touchMajorVals, touchMinorVals, orientationVals,
+							toolTypeVals, sampleAction, down, eventTime);
+				}
 			}
 
 			return true;
@@ -309,44 +924,189 @@ public class MultiTouchController<T> {
 		}
 	}
 
-	private void decodeTouchEvent(int pointerCount, float[] x, float[] y, float[] pressure, int[] pointerIds, int action, boolean down, long eventTime) {
-		if (DEBUG)
-			Log.i("MultiTouch", "Got here 5 - " + pointerCount + " " + action + " " + down);
+	/** Read the axes in axisMask for each pointer into touchMajorVals etc. */
+	private void readAxes(MotionEvent event, int numPointers, boolean processingHist, int histIdx) throws Exception {
+		for (int ptrIdx = 0; ptrIdx < numPointers; ptrIdx++) {
+			if ((axisMask & AXIS_TOUCH_MAJOR) != 0)
+				touchMajorVals[ptrIdx] = (Float) (processingHist ? m_getHistoricalTouchMajor.invoke(event, ptrIdx, histIdx) : m_getTouchMajor.invoke(
+						event, ptrIdx));
+			if ((axisMask & AXIS_TOUCH_MINOR) != 0)
+				touchMinorVals[ptrIdx] = (Float) (processingHist ? m_getHistoricalTouchMinor.invoke(event, ptrIdx, histIdx) : m_getTouchMinor.invoke(
+						event, ptrIdx));
+			if ((axisMask & AXIS_ORIENTATION) != 0)
+				orientationVals[ptrIdx] = (Float) (processingHist ? m_getHistoricalOrientation.invoke(event, ptrIdx, histIdx) : m_getOrientation
+						.invoke(event, ptrIdx));
+			if ((axisMask & AXIS_TOOL_TYPE) != 0)
+				// Tool type can't change during an event, so there is no historical version
+				toolTypeVals[ptrIdx] = (Integer) m_getToolType.invoke(event, ptrIdx);
+		}
+	}
+
+	/** Stroke mode: append all samples in the event to the strokes of their pointers, notify strokeListener, then end strokes of lifted pointers */
+	private void captureStrokes(MotionEvent event, int pointerCount) throws Exception {
+		int action = event.getAction();
+		int histSize = event.getHistorySize();
+		boolean singlePointer = !multiTouchSupported || pointerCount == 1;
+		for (int i = 0; i < mNumActiveStrokes; i++)
+			mActiveStrokes[i].startBatch();
+		boolean allUp = action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL;
+		int upPtrIdx = (action & ((1 << ACTION_POINTER_INDEX_SHIFT) - 1)) == ACTION_POINTER_UP ? action >> ACTION_POINTER_INDEX_SHIFT : -1;
+		int upPtrId = -1;
+		for (int ptrIdx = 0; ptrIdx < pointerCount; ptrIdx++) {
+			int ptrId = singlePointer ? getSinglePointerId(event) : (Integer) m_getPointerId.invoke(event, ptrIdx);
+			if (ptrIdx == upPtrIdx)
+				upPtrId = ptrId;
+			Stroke stroke = getActiveStroke(ptrId);
+			for (int histIdx = 0; histIdx <= histSize; histIdx++) {
+				boolean processingHist = histIdx < histSize;
+				long eventTime = processingHist ? event.getHistoricalEventTime(histIdx) : event.getEventTime();
+				if (singlePointer) {
+					stroke.add(processingHist ? event.getHistoricalX(histIdx) : event.getX(), //
+							processingHist ? event.getHistoricalY(histIdx) : event.getY(), //
+							processingHist ? event.getHistoricalPressure(histIdx) : event.getPressure(), eventTime);
+				} else {
+					stroke.add((Float) (processingHist ? m_getHistoricalX.invoke(event, ptrIdx, histIdx) : m_getX.invoke(event, ptrIdx)), //
+							(Float) (processingHist ? m_getHistoricalY.invoke(event, ptrIdx, histIdx) : m_getY.invoke(event, ptrIdx)), //
+							(Float) (processingHist ? m_getHistoricalPressure.invoke(event, ptrIdx, histIdx) : m_getPressure.invoke(event, ptrIdx)),
+							eventTime);
+				}
+			}
+		}
+
+		strokeListener.onStrokeSamples(mActiveStrokes, mNumActiveStrokes);
 
-		// Swap curr/prev points
-		PointInfo tmp = mPrevPt;
+		// End the strokes of pointers that went up in this event, or that have disappeared without an up event
+		for (int i = mNumActiveStrokes - 1; i >= 0; i--) {
+			Stroke stroke = mActiveStrokes[i];
+			if (allUp || stroke.getPointerId() == upPtrId || stroke.getNewSamplesStart() == stroke.getNumSamples())
+				endStroke(i);
+		}
+	}
+
+	/** Get the pointer id of the only pointer in an event, which is 0 unless the API to read it exists and works for single-pointer events */
+	private static int getSinglePointerId(MotionEvent event) {
+		if (!multiTouchSupported)
+			return 0;
+		try {
+			return (Integer) m_getPointerId.invoke(event, 0);
+		} catch (Exception e) {
+			// See the comment in onTouchEvent() about single-pointer events
+			return 0;
+		}
+	}
+
+	/** Stroke mode: get the stroke of the given pointer, starting a new one (reusing old buffers if possible) if the pointer just went down */
+	private Stroke getActiveStroke(int ptrId) {
+		for (int i = 0; i < mNumActiveStrokes; i++)
+			if (mActiveStrokes[i].getPointerId() == ptrId)
+				return mActiveStrokes[i];
+		Stroke stroke = mNumFreeStrokes > 0 ? mFreeStrokes[--mNumFreeStrokes] : new Stroke();
+		stroke.reset(ptrId);
+		if (mNumActiveStrokes == mActiveStrokes.length) {
+			Stroke[] newActiveStrokes = new Stroke[mActiveStrokes.length * 2];
+			System.arraycopy(mActiveStrokes, 0, newActiveStrokes, 0, mNumActiveStrokes);
+			mActiveStrokes = newActiveStrokes;
+		}
+		mActiveStrokes[mNumActiveStrokes++] = stroke;
+		return stroke;
+	}
+
+	/** Stroke mode: notify the listener that the stroke at the given index in mActiveStrokes has ended, and recycle it */
+	private void endStroke(int activeIdx) {
+		Stroke stroke = mActiveStrokes[activeIdx];
+		mActiveStrokes[activeIdx] = mActiveStrokes[--mNumActiveStrokes];
+		mActiveStrokes[mNumActiveStrokes] = null;
+		strokeListener.onStrokeEnded(stroke);
+		if (mNumFreeStrokes == mFreeStrokes.length) {
+			Stroke[] newFreeStrokes = new Stroke[mFreeStrokes.length * 2];
+			System.arraycopy(mFreeStrokes, 0, newFreeStrokes, 0, mNumFreeStrokes);
+			mFreeStrokes = newFreeStrokes;
+		}
+		mFreeStrokes[mNumFreeStrokes++] = stroke;
+	}
+
+	private void decodeTouchEvent(int pointerCount, float[] x, float[] y, float[] pressure, int[] pointerIds, int sampleAxisMask, float[] touchMajor,
+			float[] touchMinor, float[] orientation, int[] toolType, int action, boolean down, long eventTime) {
+		// Curr point becomes prev point, and a free point from the pool (normally the old prev point) becomes the curr point
+		PointInfo next = obtainPointInfo();
 		mPrevPt = mCurrPt;
-		mCurrPt = tmp;
-		// Overwrite old prev point
+		mCurrPt = next;
 		mCurrPt.set(pointerCount, x, y, pressure, pointerIds, action, down, eventTime);
+		mCurrPt.version = ++mLastVersion;
+		if (sampleAxisMask != 0)
+			mCurrPt.setAxes(sampleAxisMask, touchMajor, touchMinor, orientation, toolType);
+		if (metricsEnabled)
+			mMetrics.samples++;
+		MultiTouchTrace trace = mTrace;
+		if (trace != null)
+			trace.record(eventTime, MultiTouchTrace.TYPE_SAMPLE, down ? pointerCount : -pointerCount, mCurrPt.getX(), mCurrPt.getY());
+		if (adaptiveBackpressure)
+			measureSampleInterval(eventTime);
 		multiTouchController();
+		if (conflating && !moreSamplesWaiting)
+			// Adaptive backpressure: this was the latest sample, so deliver the last skipped transform even if this sample was filtered out
+			flushPendingXform();
+	}
+
+	/** Find a PointInfo that can be overwritten with the next sample */
+	private PointInfo obtainPointInfo() {
+		if (!mPrevPt.retained)
+			return mPrevPt;
+		PointInfo[] pool = mPointInfoPool;
+		for (int i = 0; i < pool.length; i++) {
+			PointInfo pt = pool[i];
+			if (pt != mCurrPt && pt != mPrevPt && !pt.retained)
+				return pt;
+		}
+		// Consumers are retaining all the spare points, grow the pool
+		PointInfo[] newPool = new PointInfo[pool.length * 2];
+		System.arraycopy(pool, 0, newPool, 0, pool.length);
+		for (int i = pool.length; i < newPool.length; i++)
+			newPool[i] = new PointInfo();
+		mPointInfoPool = newPool;
+		return newPool[pool.length];
 	}
 
 	// ------------------------------------------------------------------------------------
 
 	/** Start dragging/pinching, or reset drag/pinch to current point if something goes out of range */
 	private void anchorAtThisPositionAndScale() {
-        if (DEBUG)
-            Log.i("MulitTouch", "anchorAtThisPositionAndScale()");
 		if (selectedObject == null)
 			return;
 
+		// Make sure the object has caught up with the last transform before reading its position back
+		flushPendingXform();
+		MultiTouchTrace trace = mTrace;
+		if (trace != null)
+			trace.record(mCurrPt.getEventTime(), MultiTouchTrace.TYPE_ANCHOR, mMode, mCurrPt.getX(), mCurrPt.getY());
+
 		// Get selected object's current position and scale
+		long callbackStartTime = callbackStarted();
 		objectCanvas.getPositionAndScale(selectedObject, mCurrXform);
+		callbackEnded(callbackStartTime);
+		mLastDeliveredXform.set(mCurrXform);
 
-		// Figure out the object coords of the drag start point's screen coords.
-		// All stretching should be around this point in object-coord-space.
-		// Also figure out out ratio between object scale factor and multitouch
-		// diameter at beginning of drag; same for angle and optional anisotropic
-		// scale.
-		float currScaleInv = 1.0f / (!mCurrXform.updateScale ? 1.0f : mCurrXform.scale == 0.0f ? 1.0f : mCurrXform.scale);
+		// Remember the drag start point and the object's transform there. All stretching is around the start point in object-coord-space:
+		// the object point under it stays under the (moving) touch point. Scale, anisotropic scale and angle follow the ratios of the
+		// multitouch diameter, width and height, and the change in multitouch angle, since the start.
 		extractCurrPtInfo();
-		startPosX = (mCurrPtX - mCurrXform.xOff) * currScaleInv;
-		startPosY = (mCurrPtY - mCurrXform.yOff) * currScaleInv;
-		startScaleOverPinchDiam = mCurrXform.scale / mCurrPtDiam;
-		startScaleXOverPinchWidth = mCurrXform.scaleX / mCurrPtWidth;
-		startScaleYOverPinchHeight = mCurrXform.scaleY / mCurrPtHeight;
-		startAngleMinusPinchAngle = mCurrXform.angle - mCurrPtAng;
+		startPtX = mCurrPtX;
+		startPtY = mCurrPtY;
+		startPtDiam = mCurrPtDiam;
+		startPtWidth = mCurrPtWidth;
+		startPtHeight = mCurrPtHeight;
+		startPtAng = mCurrPtAng;
+		startXOff = mCurrXform.xOff;
+		startYOff = mCurrXform.yOff;
+		startScale = mCurrXform.scale;
+		startScaleX = mCurrXform.scaleX;
+		startScaleY = mCurrXform.scaleY;
+		startAngle = mCurrXform.angle;
+		if (highPrecision) {
+			startXOffPrecise = mCurrXform.preciseXOff;
+			startYOffPrecise = mCurrXform.preciseYOff;
+			startScalePrecise = mCurrXform.preciseScale;
+		}
 	}
 
 	/** Drag/stretch/rotate the selected object using the current touch position(s) relative to the anchor position(s). */
@@ -355,44 +1115,308 @@ public class MultiTouchController<T> {
 		if (selectedObject == null)
 			return;
 
-		// Calc new position of dragged object
-		float currScale = !mCurrXform.updateScale ? 1.0f : mCurrXform.scale == 0.0f ? 1.0f : mCurrXform.scale;
+		// Calc new position of dragged object: the start position, moved with the touch point, plus the movement of the start point's object
+		// coords away from the touch point as the object scales up or down (by the current scale, as in earlier versions). A zero start scale is
+		// treated as no scaling, as earlier versions treated a zero current scale as 1, rather than relying on PositionAndScale never holding 0.
+		float scaleChange = !mCurrXform.updateScale || startScale == 0.0f ? 0.0f : (mCurrXform.scale - startScale) / startScale;
 		extractCurrPtInfo();
-		float newPosX = mCurrPtX - startPosX * currScale;
-		float newPosY = mCurrPtY - startPosY * currScale;
-		float newScale = startScaleOverPinchDiam * mCurrPtDiam;
-		float newScaleX = startScaleXOverPinchWidth * mCurrPtWidth;
-		float newScaleY = startScaleYOverPinchHeight * mCurrPtHeight;
-		float newAngle = startAngleMinusPinchAngle + mCurrPtAng;
+		float newPosX = startXOff + (mCurrPtX - startPtX) - (startPtX - startXOff) * scaleChange;
+		float newPosY = startYOff + (mCurrPtY - startPtY) - (startPtY - startYOff) * scaleChange;
+		float newScale = startScale * (mCurrPtDiam / startPtDiam);
+		float newScaleX = startScaleX * (mCurrPtWidth / startPtWidth);
+		float newScaleY = startScaleY * (mCurrPtHeight / startPtHeight);
+		float newAngle = startAngle + (mCurrPtAng - startPtAng);
 
 		// Set the new obj coords, scale, and angle as appropriate (notifying the subclass of the change).
-		mCurrXform.set(newPosX, newPosY, newScale, newScaleX, newScaleY, newAngle);
+		if (highPrecision) {
+			double scaleChangePrecise = !mCurrXform.updateScale || startScalePrecise == 0.0 ? 0.0 : (mCurrXform.preciseScale - startScalePrecise)
+					/ startScalePrecise;
+			mCurrXform.setPrecise(startXOffPrecise + ((double) mCurrPtX - startPtX) - (startPtX - startXOffPrecise) * scaleChangePrecise,
+					startYOffPrecise + ((double) mCurrPtY - startPtY) - (startPtY - startYOffPrecise) * scaleChangePrecise, startScalePrecise
+							* ((double) mCurrPtDiam / startPtDiam), newScaleX, newScaleY, newAngle);
+		} else {
+			mCurrXform.set(newPosX, newPosY, newScale, newScaleX, newScaleY, newAngle);
+		}
 
+		if (framePacedUpdates && gestureThread == null) {
+			// Deliver on the next frame, along with any other samples that arrive before then
+			if (!xformPending) {
+				xformPending = true;
+				frameScheduler.schedule();
+			}
+			return;
+		}
+
+		if (conflating && moreSamplesWaiting) {
+			// Adaptive backpressure: the consumer can't keep up, and a later sample will supersede this one, so only deliver that
+			xformPending = true;
+			if (metricsEnabled)
+				mMetrics.conflatedSamples++;
+			return;
+		}
+
+		xformPending = false;
+		long callbackStartTime = callbackStarted();
 		boolean success = objectCanvas.setPositionAndScale(selectedObject, mCurrXform, mCurrPt);
+		long callbackNanos = callbackEnded(callbackStartTime);
+		if (adaptiveBackpressure)
+			measureCallback(callbackNanos);
 		if (!success)
 			; // If we could't set those params, do nothing currently
 	}
 
+	/**
+	 * Frame-paced mode: deliver the latest transform, if any, and if it differs visibly from the last one delivered. Also delivers the last
+	 * transform skipped by adaptive backpressure.
+	 */
+	private void deliverPendingXform() {
+		if (!xformPending)
+			return;
+		xformPending = false;
+		if (selectedObject == null)
+			return;
+		boolean framePaced = framePacedUpdates && gestureThread == null;
+		if (framePaced) {
+			// (mLastDeliveredXform is only kept up to date in frame-paced mode)
+			if (mCurrXform.isCloseTo(mLastDeliveredXform)) {
+				if (metricsEnabled)
+					mMetrics.xformsSuppressed++;
+				return;
+			}
+			mLastDeliveredXform.set(mCurrXform);
+		}
+		long callbackStartTime = callbackStarted();
+		objectCanvas.setPositionAndScale(selectedObject, mCurrXform, mCurrPt);
+		long callbackNanos = callbackEnded(callbackStartTime);
+		if (adaptiveBackpressure && !framePaced)
+			measureCallback(callbackNanos);
+	}
+
+	/**
+	 * Deliver the latest transform now if it is being held back (until the next frame, or by adaptive backpressure), e.g. before the object is
+	 * released or re-anchored.
+	 */
+	private void flushPendingXform() {
+		if (xformPending) {
+			if (frameScheduler != null)
+				frameScheduler.cancel();
+			deliverPendingXform();
+		}
+	}
+
+	/**
+	 * Gesture thread mode: processes samples taken from a SampleRing, which is filled by the thread that receives touch events. Parks while the ring
+	 * is empty; the producer unparks it after each sample.
+	 */
+	private class GestureThread extends Thread {
+		private final SampleRing ring = new SampleRing(GESTURE_RING_CAPACITY, xVals.length);
+
+		private final SampleRing.Sample sample = new SampleRing.Sample();
+
+		private volatile boolean running = true;
+
+		/** Set by awaitTraceHandoff(), and cleared by this thread between samples once it can no longer be recording into the old trace */
+		private volatile boolean traceHandoffPending;
+
+		private GestureThread() {
+			super("MultiTouchController gestures");
+		}
+
+		/**
+		 * Producer: queue the sample in xVals etc., dropping it if it is a MOVE and the ring is full, otherwise waiting for space. This thread
+		 * frees a slot before it processes each sample, so the wait lasts at most as long as the sample being processed, i.e. the slowest
+		 * MultiTouchObjectCanvas callback (a callback that waits for the thread that receives touch events would never return, hence the rule
+		 * that callbacks must not touch views). Waits are counted in Metrics.getProducerWaits().
+		 */
+		private void offer(int pointerCount, int sampleAxisMask, int action, boolean down, long eventTime) {
+			long waitStart = 0;
+			while (!ring.offer(pointerCount, xVals, yVals, pressureVals, pointerIds, sampleAxisMask, touchMajorVals, touchMinorVals, orientationVals,
+					toolTypeVals, action, down, eventTime)) {
+				if (action == MotionEvent.ACTION_MOVE || !isAlive()) {
+					// A later MOVE will supersede this one, so it is better to lose it than to hold up the thread that receives touch events.
+					// If this thread was killed by an Error, nothing will ever free a slot.
+					if (metricsEnabled)
+						mInputMetrics.samplesDropped++;
+					return;
+				}
+				if (waitStart == 0 && metricsEnabled) {
+					waitStart = System.nanoTime();
+					mInputMetrics.producerWaits++;
+				}
+				LockSupport.unpark(this);
+				Thread.yield();
+			}
+			if (waitStart != 0)
+				mInputMetrics.producerWaitNanos += System.nanoTime() - waitStart;
+			LockSupport.unpark(this);
+		}
+
+		/**
+		 * Wait until this thread has seen a change of mTrace. This takes at most as long as the sample being processed, since the flag is
+		 * checked before each sample and before parking.
+		 */
+		private void awaitTraceHandoff() {
+			traceHandoffPending = true;
+			LockSupport.unpark(this);
+			while (traceHandoffPending && isAlive())
+				Thread.yield();
+		}
+
+		/** Stop the thread once it has processed all queued samples, and wait for it to do so */
+		private void quit() {
+			running = false;
+			LockSupport.unpark(this);
+			try {
+				join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+			while (true) {
+				if (traceHandoffPending)
+					// Nothing is being recorded between samples, and later tracing points will read the new mTrace
+					traceHandoffPending = false;
+				if (ring.poll(sample)) {
+					moreSamplesWaiting = !ring.isEmpty();
+					if (metricsResetPending)
+						// Apply the reset before counting another sample
+						publishMetrics();
+					if (conflating && !adaptiveBackpressure) {
+						// Adaptive backpressure was turned off by the thread that receives touch events
+						flushPendingXform();
+						setConflating(false);
+					}
+					try {
+						decodeTouchEvent(sample.numPointers, sample.xs, sample.ys, sample.pressures, sample.pointerIds, sample.axisMask,
+								sample.touchMajors, sample.touchMinors, sample.orientations, sample.toolTypes, sample.action, sample.down,
+								sample.eventTime);
+					} catch (Exception e) {
+						// Don't let one bad callback kill gesture processing for the rest of the app's lifetime
+						Log.e("MultiTouchController", "decodeTouchEvent() failed", e);
+					}
+					if (metricsEnabled)
+						publishMetrics();
+				} else if (!running) {
+					// Apply any pending reset, since mMetrics is read directly again once this thread has exited
+					publishMetrics();
+					break;
+				} else if (nextGestureTimeout() != 0) {
+					// Wake up in time to report a long press or confirm a single tap if no more samples arrive
+					long delay = nextGestureTimeout() - SystemClock.uptimeMillis();
+					if (delay > 0) {
+						LockSupport.parkNanos(this, delay * 1000000L);
+					} else {
+						checkGestureTimeouts();
+						if (metricsEnabled)
+							publishMetrics();
+					}
+				} else {
+					LockSupport.park(this);
+				}
+			}
+		}
+	}
+
+	/** Calls deliverPendingXform() once per display frame on the thread that created it. */
+	private class FrameScheduler implements Runnable, InvocationHandler {
+		private final Handler handler = new Handler();
+
+		/** The Choreographer of the current thread and a Choreographer.FrameCallback proxy that calls run(), or null before Android 4.1 */
+		private Object choreographer, frameCallback;
+
+		private boolean scheduled;
+
+		FrameScheduler() {
+			if (m_postFrameCallback != null) {
+				try {
+					choreographer = m_Choreographer_getInstance.invoke(null);
+					frameCallback = Proxy.newProxyInstance(c_FrameCallback.getClassLoader(), new Class<?>[] { c_FrameCallback }, this);
+				} catch (Exception e) {
+					Log.e("MultiTouchController", "Could not get Choreographer, falling back to approximate frame timing", e);
+					choreographer = null;
+				}
+			}
+		}
+
+		void schedule() {
+			if (scheduled)
+				return;
+			scheduled = true;
+			if (choreographer != null) {
+				try {
+					m_postFrameCallback.invoke(choreographer, frameCallback);
+					return;
+				} catch (Exception e) {
+					Log.e("MultiTouchController", "postFrameCallback() failed, falling back to approximate frame timing", e);
+					choreographer = null;
+				}
+			}
+			// Round up to the next frame boundary of an approximate frame clock
+			long now = SystemClock.uptimeMillis();
+			handler.postAtTime(this, now - now % FALLBACK_FRAME_INTERVAL + FALLBACK_FRAME_INTERVAL);
+		}
+
+		void cancel() {
+			if (!scheduled)
+				return;
+			scheduled = false;
+			if (choreographer != null) {
+				try {
+					m_removeFrameCallback.invoke(choreographer, frameCallback);
+				} catch (Exception e) {
+					Log.e("MultiTouchController", "removeFrameCallback() failed", e);
+				}
+			}
+			handler.removeCallbacks(this);
+		}
+
+		public void run() {
+			scheduled = false;
+			deliverPendingXform();
+		}
+
+		/** Implements Choreographer.FrameCallback.doFrame(long) for the proxy, plus the Object methods */
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			String name = method.getName();
+			if (name.equals("doFrame")) {
+				run();
+				return null;
+			} else if (name.equals("equals")) {
+				return proxy == args[0];
+			} else if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			} else if (name.equals("toString")) {
+				return "MultiTouchController.FrameScheduler";
+			}
+			return null;
+		}
+	}
+
 	/**
 	 * State-based controller for tracking switches between no-touch, single-touch and multi-touch situations. Includes logic for cleaning up the
 	 * event stream, as events around touch up/down are noisy at least on early Synaptics sensors.
 	 */
 	private void multiTouchController() {
-		if (DEBUG)
-			Log.i("MultiTouch", "Got here 6 - " + mMode + " " + mCurrPt.getNumTouchPoints() + " " + mCurrPt.isDown() + mCurrPt.isMultiTouch());
 
 		switch (mMode) {
 		case MODE_NOTHING:
-            if (DEBUG)
-                Log.i("MultiTouch", "MODE_NOTHING");
 			// Not doing anything currently
 			if (mCurrPt.isDown()) {
 				// Start a new single-point drag
+				long callbackStartTime = callbackStarted();
 				selectedObject = objectCanvas.getDraggableObjectAtPoint(mCurrPt);
+				callbackEnded(callbackStartTime);
 				if (selectedObject != null) {
 					// Started a new single-point drag
-					mMode = MODE_DRAG;
+					setMode(MODE_DRAG);
+					traceSelect(selectedObject);
+					callbackStartTime = callbackStarted();
 					objectCanvas.selectObject(selectedObject, mCurrPt);
+					callbackEnded(callbackStartTime);
 					anchorAtThisPositionAndScale();
 					// Don't need any settling time if just placing one finger, there is no noise
 					mSettleStartTime = mSettleEndTime = mCurrPt.getEventTime();
@@ -401,17 +1425,19 @@ public class MultiTouchController<T> {
 			break;
 
 		case MODE_DRAG:
-            if (DEBUG)
-                Log.i("MultiTouch", "MODE_DRAG");
 			// Currently in a single-point drag
 			if (!mCurrPt.isDown()) {
 				// First finger was released, stop dragging
-				mMode = MODE_NOTHING;
+				setMode(MODE_NOTHING);
+				flushPendingXform();
+				traceSelect(null);
+				long callbackStartTime = callbackStarted();
 				objectCanvas.selectObject((selectedObject = null), mCurrPt);
+				callbackEnded(callbackStartTime);
 
 			} else if (mCurrPt.isMultiTouch()) {
 				// Point 1 was already down and point 2 was just placed down
-				mMode = MODE_PINCH;
+				setMode(MODE_PINCH);
 				// Restart the drag with the new drag position (that is at the midpoint between the touchpoints)
 				anchorAtThisPositionAndScale();
 				// Need to let events settle before moving things, to help with event noise on touchdown
@@ -423,6 +1449,9 @@ public class MultiTouchController<T> {
 				if (mCurrPt.getEventTime() < mSettleEndTime) {
 					// Ignore the first few events if we just stopped stretching, because if finger 2 was kept down while
 					// finger 1 is lifted, then point 1 gets mapped to finger 2. Restart the drag from the new position.
+					traceSettle();
+					if (metricsEnabled)
+						mMetrics.settleReanchors++;
 					anchorAtThisPositionAndScale();
 				} else {
 					// Keep dragging, move to new point
@@ -432,20 +1461,22 @@ public class MultiTouchController<T> {
 			break;
 
 		case MODE_PINCH:
-            if (DEBUG)
-                Log.i("MultiTouch", "MODE_PINCH");
 			// Two-point pinch-scale/rotate/translate
 			if (!mCurrPt.isMultiTouch() || !mCurrPt.isDown()) {
 				// Dropped one or both points, stop stretching
 
 				if (!mCurrPt.isDown()) {
 					// Dropped both points, go back to doing nothing
-					mMode = MODE_NOTHING;
+					setMode(MODE_NOTHING);
+					flushPendingXform();
+					traceSelect(null);
+					long callbackStartTime = callbackStarted();
 					objectCanvas.selectObject((selectedObject = null), mCurrPt);
+					callbackEnded(callbackStartTime);
 
 				} else {
 					// Just dropped point 2, downgrade to a single-point drag
-					mMode = MODE_DRAG;
+					setMode(MODE_DRAG);
 					// Restart the pinch with the single-finger position
 					anchorAtThisPositionAndScale();
 					// Ignore the first few events after the drop, in case we dropped finger 1 and left finger 2 down
@@ -460,12 +1491,21 @@ public class MultiTouchController<T> {
 						|| Math.abs(mCurrPt.getMultiTouchWidth() - mPrevPt.getMultiTouchWidth()) * .5f > MAX_MULTITOUCH_DIM_JUMP_SIZE
 						|| Math.abs(mCurrPt.getMultiTouchHeight() - mPrevPt.getMultiTouchHeight()) * .5f > MAX_MULTITOUCH_DIM_JUMP_SIZE) {
 					// Jumped too far, probably event noise, reset and ignore events for a bit
+					if (metricsEnabled)
+						mMetrics.samplesRejected++;
+					MultiTouchTrace trace = mTrace;
+					if (trace != null)
+						trace.record(mCurrPt.getEventTime(), MultiTouchTrace.TYPE_REJECT, mMode, mCurrPt.getX() - mPrevPt.getX(), mCurrPt.getY()
+								- mPrevPt.getY());
 					anchorAtThisPositionAndScale();
 					mSettleStartTime = mCurrPt.getEventTime();
 					mSettleEndTime = mSettleStartTime + EVENT_SETTLE_TIME_INTERVAL;
 
 				} else if (mCurrPt.eventTime < mSettleEndTime) {
 					// Events have not yet settled, reset
+					traceSettle();
+					if (metricsEnabled)
+						mMetrics.settleReanchors++;
 					anchorAtThisPositionAndScale();
 				} else {
 					// Stretch to new position and size
@@ -474,15 +1514,179 @@ public class MultiTouchController<T> {
 			}
 			break;
 		}
-		if (DEBUG)
-			Log.i("MultiTouch", "Got here 7 - " + mMode + " " + mCurrPt.getNumTouchPoints() + " " + mCurrPt.isDown() + mCurrPt.isMultiTouch());
+
+		if (gestureListener != null)
+			recognizeGestures();
+	}
+
+	/**
+	 * Gesture recognition: track the current touch from mCurrPt and report a tap, double tap or two-finger tap when it goes up, if it was short and
+	 * did not move. Long presses and confirmed single taps are reported by checkGestureTimeouts().
+	 */
+	private void recognizeGestures() {
+		PointInfo pt = mCurrPt;
+		long eventTime = pt.getEventTime();
+		int numPoints = pt.getNumTouchPoints();
+		if (pt.isDown()) {
+			if (!tapDown) {
+				// New touch
+				tapDown = true;
+				tapCancelled = false;
+				tapDownTime = eventTime;
+				tapDownX = pt.getX();
+				tapDownY = pt.getY();
+				tapMaxPoints = numPoints;
+				setTapReference(pt);
+				scheduleLongPress(numPoints == 1 ? eventTime + LONG_PRESS_TIMEOUT : 0);
+				// The last tap may be the first of a double tap, or is not followed by one after all; either way it is not a single tap
+				scheduleSingleTap(0);
+			} else if (numPoints != tapNumPoints) {
+				// A touch point went down or up: measure movement from here (the midpoint jumps), and a long press is only for one finger
+				tapMaxPoints = Math.max(tapMaxPoints, numPoints);
+				setTapReference(pt);
+				scheduleLongPress(0);
+			} else if (!tapCancelled
+					&& (Math.abs(pt.getX() - tapRefX) > TAP_SLOP || Math.abs(pt.getY() - tapRefY) > TAP_SLOP || (numPoints > 1 && Math.abs(pt
+							.getMultiTouchDiameter() - tapRefDiam) > TAP_SLOP))) {
+				// Moved too far to be a tap: it is a drag or pinch
+				tapCancelled = true;
+				scheduleLongPress(0);
+			}
+
+		} else if (tapDown && (pt.getAction() & ((1 << ACTION_POINTER_INDEX_SHIFT) - 1)) == ACTION_POINTER_UP) {
+			// One of several touch points went up; the next sample has one point fewer
+			scheduleLongPress(0);
+
+		} else if (tapDown) {
+			// Last touch point went up, or the gesture was cancelled
+			tapDown = false;
+			scheduleLongPress(0);
+			if (tapCancelled || pt.getAction() == MotionEvent.ACTION_CANCEL || eventTime - tapDownTime > LONG_PRESS_TIMEOUT)
+				return;
+			if (tapMaxPoints == 2) {
+				traceGesture(GESTURE_TWO_FINGER_TAP);
+				gestureListener.onTwoFingerTap(pt);
+			} else if (tapMaxPoints == 1) {
+				if (lastTapUpTime >= 0 && tapDownTime - lastTapUpTime <= DOUBLE_TAP_TIMEOUT && Math.abs(tapDownX - lastTapX) <= DOUBLE_TAP_SLOP
+						&& Math.abs(tapDownY - lastTapY) <= DOUBLE_TAP_SLOP) {
+					// Second tap of a double tap; it can't also be the first tap of another one
+					lastTapUpTime = -1;
+					traceGesture(GESTURE_DOUBLE_TAP);
+					gestureListener.onDoubleTap(pt);
+				} else {
+					lastTapUpTime = eventTime;
+					lastTapX = tapDownX;
+					lastTapY = tapDownY;
+					scheduleSingleTap(eventTime + DOUBLE_TAP_TIMEOUT);
+					traceGesture(GESTURE_TAP);
+					gestureListener.onTap(pt);
+				}
+			}
+		}
+		tapNumPoints = numPoints;
+	}
+
+	/** Gesture recognition: measure tap movement from the given point */
+	private void setTapReference(PointInfo pt) {
+		tapRefX = pt.getX();
+		tapRefY = pt.getY();
+		tapRefDiam = pt.isMultiTouch() ? pt.getMultiTouchDiameter() : 0.0f;
+	}
+
+	/** Gesture recognition: make the current touch a long press at the given time, or never if time is 0 */
+	private void scheduleLongPress(long time) {
+		if (time == longPressTime)
+			return;
+		longPressTime = time;
+		scheduleGestureTimer();
+	}
+
+	/** Gesture recognition: confirm the last tap as a single tap at the given time, or never if time is 0 */
+	private void scheduleSingleTap(long time) {
+		if (time == singleTapTime)
+			return;
+		singleTapTime = time;
+		scheduleGestureTimer();
+	}
+
+	/** Gesture recognition: the earlier of longPressTime and singleTapTime, or 0 if neither is pending */
+	private long nextGestureTimeout() {
+		if (longPressTime == 0 || (singleTapTime != 0 && singleTapTime < longPressTime))
+			return singleTapTime;
+		return longPressTime;
+	}
+
+	private void scheduleGestureTimer() {
+		if (gestureThread == null)
+			gestureTimer.schedule(nextGestureTimeout());
+		// Otherwise the gesture thread picks up the new time the next time it parks
+	}
+
+	/**
+	 * Gesture recognition: confirm the last tap as a single tap if no other touch has gone down by singleTapTime, and report a long press if the
+	 * current touch has been held still until longPressTime
+	 */
+	private void checkGestureTimeouts() {
+		long now = SystemClock.uptimeMillis();
+		// Clear due timeouts even without a listener, so the gesture thread does not keep waking up for them
+		boolean singleTap = singleTapTime != 0 && now >= singleTapTime;
+		if (singleTap)
+			singleTapTime = 0;
+		boolean longPress = longPressTime != 0 && now >= longPressTime;
+		if (longPress) {
+			longPressTime = 0;
+			// Held too long to be a tap
+			tapCancelled = true;
+		}
+		if (gestureThread == null)
+			gestureTimer.schedule(nextGestureTimeout());
+		if (gestureListener == null)
+			return;
+		if (singleTap) {
+			traceGesture(GESTURE_SINGLE_TAP_CONFIRMED);
+			gestureListener.onSingleTapConfirmed(mCurrPt);
+		}
+		if (longPress) {
+			traceGesture(GESTURE_LONG_PRESS);
+			gestureListener.onLongPress(mCurrPt);
+		}
+	}
+
+	/** Record a recognized gesture in the trace, if tracing */
+	private void traceGesture(int gesture) {
+		MultiTouchTrace trace = mTrace;
+		if (trace != null)
+			trace.record(mCurrPt.getEventTime(), MultiTouchTrace.TYPE_GESTURE, gesture, mCurrPt.getX(), mCurrPt.getY());
+	}
+
+	/** Gesture recognition: calls checkGestureTimeouts() at the next gesture timeout on the thread that set the gesture listener */
+	private class GestureTimer implements Runnable {
+		private final Handler handler = new Handler();
+
+		/** Run at the given uptime, or cancel if time is 0 */
+		void schedule(long time) {
+			handler.removeCallbacks(this);
+			if (time != 0)
+				handler.postAtTime(this, time);
+		}
+
+		public void run() {
+			checkGestureTimeouts();
+		}
 	}
 
     public int getMode() {
         return mMode;
     }
 
-	/** A class that packages up all MotionEvent information with all derived multitouch information (if available) */
+	/**
+	 * A class that packages up all MotionEvent information with all derived multitouch information (if available).
+	 * 
+	 * The PointInfo objects passed to MultiTouchObjectCanvas methods belong to the controller, which reuses them for later samples. To keep one
+	 * beyond the callback without copying it, call retain(): the controller will then not overwrite it until release() is called, so it can be
+	 * held across a frame or handed to another thread by reference. Retained points must be treated as read-only. release() may be called from any
+	 * thread. Alternatively, copy the fields with set(PointInfo).
+	 */
 	public static class PointInfo {
 		// Multitouch information
 		private int numPoints;
@@ -491,6 +1695,13 @@ public class MultiTouchController<T> {
 		private float[] pressures = new float[MAX_TOUCH_POINTS];
 		private int[] pointerIds = new int[MAX_TOUCH_POINTS];
 
+		// Optional per-pointer axes, only filled in if the corresponding bit of axisMask is set
+		private int axisMask;
+		private float[] touchMajors = new float[MAX_TOUCH_POINTS];
+		private float[] touchMinors = new float[MAX_TOUCH_POINTS];
+		private float[] orientations = new float[MAX_TOUCH_POINTS];
+		private int[] toolTypes = new int[MAX_TOUCH_POINTS];
+
 		// Midpoint of pinch operations
 		private float xMid, yMid, pressureMid;
 
@@ -507,16 +1718,34 @@ public class MultiTouchController<T> {
 		private int action;
 		private long eventTime;
 
+		// Sample number, and whether a consumer is holding onto this object (see retain())
+		private long version;
+		private volatile boolean retained;
+
 		// -------------------------------------------------------------------------------------------------------------------------------------------
 
+		/** Make sure the arrays can hold numPoints points. The contents of the arrays are not kept. */
+		private void ensureCapacity(int numPoints) {
+			if (numPoints > xs.length) {
+				int capacity = grownCapacity(xs.length, numPoints);
+				xs = new float[capacity];
+				ys = new float[capacity];
+				pressures = new float[capacity];
+				pointerIds = new int[capacity];
+				touchMajors = new float[capacity];
+				touchMinors = new float[capacity];
+				orientations = new float[capacity];
+				toolTypes = new int[capacity];
+			}
+		}
+
 		/** Set all point info */
 		private void set(int numPoints, float[] x, float[] y, float[] pressure, int[] pointerIds, int action, boolean isDown, long eventTime) {
-			if (DEBUG)
-				Log.i("MultiTouch", "Got here 8 - " + +numPoints + " " + x[0] + " " + y[0] + " " + (numPoints > 1 ? x[1] : x[0]) + " "
-						+ (numPoints > 1 ? y[1] : y[0]) + " " + action + " " + isDown);
+			ensureCapacity(numPoints);
 			this.eventTime = eventTime;
 			this.action = action;
 			this.numPoints = numPoints;
+			this.axisMask = 0;
 			for (int i = 0; i < numPoints; i++) {
 				this.xs[i] = x[i];
 				this.ys[i] = y[i];
@@ -544,11 +1773,29 @@ public class MultiTouchController<T> {
 			diameterSqIsCalculated = diameterIsCalculated = angleIsCalculated = false;
 		}
 
+		/** Set the optional axes given by axisMask, after calling set() */
+		private void setAxes(int axisMask, float[] touchMajors, float[] touchMinors, float[] orientations, int[] toolTypes) {
+			this.axisMask = axisMask;
+			copyAxes(axisMask, touchMajors, touchMinors, orientations, toolTypes);
+		}
+
+		private void copyAxes(int axisMask, float[] touchMajors, float[] touchMinors, float[] orientations, int[] toolTypes) {
+			if ((axisMask & AXIS_TOUCH_MAJOR) != 0)
+				System.arraycopy(touchMajors, 0, this.touchMajors, 0, numPoints);
+			if ((axisMask & AXIS_TOUCH_MINOR) != 0)
+				System.arraycopy(touchMinors, 0, this.touchMinors, 0, numPoints);
+			if ((axisMask & AXIS_ORIENTATION) != 0)
+				System.arraycopy(orientations, 0, this.orientations, 0, numPoints);
+			if ((axisMask & AXIS_TOOL_TYPE) != 0)
+				System.arraycopy(toolTypes, 0, this.toolTypes, 0, numPoints);
+		}
+
 		/**
-		 * Copy all fields from one PointInfo class to another. PointInfo objects are volatile so you should use this if you want to keep track of the
-		 * last touch event in your own code.
+		 * Copy all fields from one PointInfo class to another. The controller reuses its PointInfo objects for later samples, so use this (or
+		 * retain()) if you want to keep track of the last touch event in your own code.
 		 */
 		public void set(PointInfo other) {
+			ensureCapacity(other.numPoints);
 			this.numPoints = other.numPoints;
 			for (int i = 0; i < numPoints; i++) {
 				this.xs[i] = other.xs[i];
@@ -571,6 +1818,31 @@ public class MultiTouchController<T> {
 			this.diameterSqIsCalculated = other.diameterSqIsCalculated;
 			this.angleIsCalculated = other.angleIsCalculated;
 			this.eventTime = other.eventTime;
+			this.version = other.version;
+			this.axisMask = other.axisMask;
+			copyAxes(other.axisMask, other.touchMajors, other.touchMinors, other.orientations, other.toolTypes);
+		}
+
+		/**
+		 * Stop the controller from reusing this object for later samples until release() is called, so that it can be kept (read-only) instead of
+		 * copied. Only one holder is tracked, i.e. retain() and release() calls are not counted. Has no effect on PointInfo objects that were not
+		 * obtained from the controller.
+		 */
+		public void retain() {
+			retained = true;
+		}
+
+		/** Allow the controller to reuse this object again, see retain(). Safe to call from any thread. */
+		public void release() {
+			retained = false;
+		}
+
+		/**
+		 * The number of the sample held in this object, which increases by one for each sample processed by the controller. Can be used to tell
+		 * whether a retained point has been superseded by a newer one.
+		 */
+		public long getVersion() {
+			return version;
 		}
 
 		// -------------------------------------------------------------------------------------------------------------------------------------------
@@ -695,6 +1967,43 @@ public class MultiTouchController<T> {
 			return pressures;
 		}
 
+		/** The optional axes (MultiTouchController.AXIS_* bits) that were read for this point, see MultiTouchController.setAxisMask(). */
+		public int getAxisMask() {
+			return axisMask;
+		}
+
+		/**
+		 * Return the array of touch ellipse major axis lengths, as returned by MotionEvent.getTouchMajor() -- only the first getNumTouchPoints() of
+		 * these is defined, and only if getAxisMask() includes AXIS_TOUCH_MAJOR.
+		 */
+		public float[] getTouchMajors() {
+			return touchMajors;
+		}
+
+		/**
+		 * Return the array of touch ellipse minor axis lengths, as returned by MotionEvent.getTouchMinor() -- only the first getNumTouchPoints() of
+		 * these is defined, and only if getAxisMask() includes AXIS_TOUCH_MINOR.
+		 */
+		public float[] getTouchMinors() {
+			return touchMinors;
+		}
+
+		/**
+		 * Return the array of touch ellipse orientations in radians, as returned by MotionEvent.getOrientation() -- only the first
+		 * getNumTouchPoints() of these is defined, and only if getAxisMask() includes AXIS_ORIENTATION.
+		 */
+		public float[] getOrientations() {
+			return orientations;
+		}
+
+		/**
+		 * Return the array of tool types (MotionEvent.TOOL_TYPE_FINGER, TOOL_TYPE_STYLUS etc.) -- only the first getNumTouchPoints() of these is
+		 * defined, and only if getAxisMask() includes AXIS_TOOL_TYPE.
+		 */
+		public int[] getToolTypes() {
+			return toolTypes;
+		}
+
 		// -------------------------------------------------------------------------------------------------------------------------------------------
 
 		public boolean isDown() {
@@ -712,6 +2021,115 @@ public class MultiTouchController<T> {
 
 	// ------------------------------------------------------------------------------------
 
+	/**
+	 * A snapshot of the controller's counters, see setMetricsEnabled() and getMetrics(). All counts are cumulative since the controller was created
+	 * or resetMetrics() was called, and only cover the time during which metrics were enabled.
+	 */
+	public static class Metrics {
+		private long events, samples, samplesRejected, samplesDropped, settleReanchors, modeTransitions, capacityGrowths, xformsSuppressed,
+				callbacks, callbackTimeNanos, conflatedSamples, producerWaits, producerWaitNanos;
+
+		/** Not a counter: whether adaptive backpressure was conflating samples when the snapshot was taken */
+		private boolean conflating;
+
+		private void set(Metrics other) {
+			this.events = other.events;
+			this.samples = other.samples;
+			this.samplesRejected = other.samplesRejected;
+			this.samplesDropped = other.samplesDropped;
+			this.settleReanchors = other.settleReanchors;
+			this.modeTransitions = other.modeTransitions;
+			this.capacityGrowths = other.capacityGrowths;
+			this.xformsSuppressed = other.xformsSuppressed;
+			this.callbacks = other.callbacks;
+			this.callbackTimeNanos = other.callbackTimeNanos;
+			this.conflatedSamples = other.conflatedSamples;
+			this.producerWaits = other.producerWaits;
+			this.producerWaitNanos = other.producerWaitNanos;
+			this.conflating = other.conflating;
+		}
+
+		private void clear() {
+			events = samples = samplesRejected = samplesDropped = settleReanchors = modeTransitions = capacityGrowths = xformsSuppressed = callbacks = callbackTimeNanos
+					= conflatedSamples = producerWaits = producerWaitNanos = 0;
+		}
+
+		/** Number of MotionEvents passed to onTouchEvent() */
+		public long getEvents() {
+			return events;
+		}
+
+		/** Number of samples processed by the state machine, counting each historical sample in a MotionEvent separately */
+		public long getSamples() {
+			return samples;
+		}
+
+		/** Number of pinch samples that were rejected because the touch points jumped too far since the previous sample */
+		public long getSamplesRejected() {
+			return samplesRejected;
+		}
+
+		/** Number of MOVE samples dropped because the gesture thread had fallen too far behind, see setGestureThreadEnabled() */
+		public long getSamplesDropped() {
+			return samplesDropped;
+		}
+
+		/** Number of samples that re-anchored the drag/pinch instead of moving the object because they fell in a settle window */
+		public long getSettleReanchors() {
+			return settleReanchors;
+		}
+
+		/** Number of transitions between MODE_NOTHING, MODE_DRAG and MODE_PINCH */
+		public long getModeTransitions() {
+			return modeTransitions;
+		}
+
+		/** Number of times the controller's per-pointer arrays had to grow because more touch points were down than ever before */
+		public long getCapacityGrowths() {
+			return capacityGrowths;
+		}
+
+		/** Number of transforms not delivered in frame-paced mode because they were not visibly different from the last one */
+		public long getXformsSuppressed() {
+			return xformsSuppressed;
+		}
+
+		/** Number of calls to MultiTouchObjectCanvas methods */
+		public long getCallbacks() {
+			return callbacks;
+		}
+
+		/** Total time spent inside MultiTouchObjectCanvas methods, in nanoseconds */
+		public long getCallbackTimeNanos() {
+			return callbackTimeNanos;
+		}
+
+		/** Number of samples whose transform was not delivered because adaptive backpressure was conflating, see setAdaptiveBackpressure() */
+		public long getConflatedSamples() {
+			return conflatedSamples;
+		}
+
+		/**
+		 * Number of non-MOVE samples for which onTouchEvent() had to wait because the gesture thread's ring was full. Each wait lasts at most as
+		 * long as the gesture thread takes to process one sample, see setGestureThreadEnabled().
+		 */
+		public long getProducerWaits() {
+			return producerWaits;
+		}
+
+		/** Total time onTouchEvent() spent in the waits counted by getProducerWaits(), in nanoseconds */
+		public long getProducerWaitNanos() {
+			return producerWaitNanos;
+		}
+
+		/** Whether adaptive backpressure was conflating samples (because setPositionAndScale() was too slow) when this snapshot was taken */
+		public boolean isConflating() {
+			return conflating;
+		}
+	}
+
+	// ------------------------------------------------------------------------------------
+
 	/**
 	 * A class that is used to store scroll offsets and scale information for objects that are managed by the multitouch controller
 	 */
@@ -719,6 +2137,9 @@ public class MultiTouchController<T> {
 		private float xOff, yOff, scale, scaleX, scaleY, angle;
 		private boolean updateScale, updateScaleXY, updateAngle;
 
+		/** Double versions of xOff, yOff and scale, always in step with the float versions; only more precise if set with setPrecise() */
+		private double preciseXOff, preciseYOff, preciseScale = 1.0;
+
 		/**
 		 * Set position and optionally scale, anisotropic scale, and/or angle. Where if the corresponding "update" flag is set to false, the field's
 		 * value will not be changed during a pinch operation. If the value is not being updated *and* the value is not used by the client
@@ -737,6 +2158,18 @@ public class MultiTouchController<T> {
 			this.scaleY = scaleY == 0.0f ? 1.0f : scaleY;
 			this.updateAngle = updateAngle;
 			this.angle = angle;
+			this.preciseXOff = xOff;
+			this.preciseYOff = yOff;
+			this.preciseScale = this.scale;
+		}
+
+		/** As set(), but with position and scale in double, for use with MultiTouchController.setHighPrecision(). */
+		public void setPrecise(double xOff, double yOff, boolean updateScale, double scale, boolean updateScaleXY, float scaleX, float scaleY,
+				boolean updateAngle, float angle) {
+			set((float) xOff, (float) yOff, updateScale, (float) scale, updateScaleXY, scaleX, scaleY, updateAngle, angle);
+			this.preciseXOff = xOff;
+			this.preciseYOff = yOff;
+			this.preciseScale = scale == 0.0 ? 1.0 : scale;
 		}
 
 		/** Set position and optionally scale, anisotropic scale, and/or angle, without changing the "update" flags. */
@@ -747,6 +2180,43 @@ public class MultiTouchController<T> {
 			this.scaleX = scaleX == 0.0f ? 1.0f : scaleX;
 			this.scaleY = scaleY == 0.0f ? 1.0f : scaleY;
 			this.angle = angle;
+			this.preciseXOff = xOff;
+			this.preciseYOff = yOff;
+			this.preciseScale = this.scale;
+		}
+
+		/** As set(float, float, float, float, float, float), but with position and scale in double */
+		private void setPrecise(double xOff, double yOff, double scale, float scaleX, float scaleY, float angle) {
+			set((float) xOff, (float) yOff, (float) scale, scaleX, scaleY, angle);
+			this.preciseXOff = xOff;
+			this.preciseYOff = yOff;
+			this.preciseScale = scale == 0.0 ? 1.0 : scale;
+		}
+
+		/** Copy all fields from another PositionAndScale */
+		public void set(PositionAndScale other) {
+			this.xOff = other.xOff;
+			this.yOff = other.yOff;
+			this.scale = other.scale;
+			this.scaleX = other.scaleX;
+			this.scaleY = other.scaleY;
+			this.angle = other.angle;
+			this.updateScale = other.updateScale;
+			this.updateScaleXY = other.updateScaleXY;
+			this.updateAngle = other.updateAngle;
+			this.preciseXOff = other.preciseXOff;
+			this.preciseYOff = other.preciseYOff;
+			this.preciseScale = other.preciseScale;
+		}
+
+		/** Whether the two transforms are close enough that there would be no visible difference between them */
+		private boolean isCloseTo(PositionAndScale other) {
+			return Math.abs(preciseXOff - other.preciseXOff) < FRAME_PACED_POS_EPSILON
+					&& Math.abs(preciseYOff - other.preciseYOff) < FRAME_PACED_POS_EPSILON
+					&& Math.abs(preciseScale - other.preciseScale) < FRAME_PACED_SCALE_ANGLE_EPSILON * Math.abs(preciseScale)
+					&& Math.abs(scaleX - other.scaleX) < FRAME_PACED_SCALE_ANGLE_EPSILON * Math.abs(scaleX)
+					&& Math.abs(scaleY - other.scaleY) < FRAME_PACED_SCALE_ANGLE_EPSILON * Math.abs(scaleY)
+					&& Math.abs(angle - other.angle) < FRAME_PACED_SCALE_ANGLE_EPSILON;
 		}
 
 		public float getXOff() {
@@ -774,6 +2244,77 @@ public class MultiTouchController<T> {
 		public float getAngle() {
 			return !updateAngle ? 0.0f : angle;
 		}
+
+		/** The X offset in double, see MultiTouchController.setHighPrecision() */
+		public double getXOffPrecise() {
+			return preciseXOff;
+		}
+
+		/** The Y offset in double, see MultiTouchController.setHighPrecision() */
+		public double getYOffPrecise() {
+			return preciseYOff;
+		}
+
+		/** The scale in double, see MultiTouchController.setHighPrecision() */
+		public double getScalePrecise() {
+			return !updateScale ? 1.0 : preciseScale;
+		}
+	}
+
+	// ------------------------------------------------------------------------------------
+
+	/** Receives raw samples in stroke mode, see setStrokeListener(). Both methods are called on the thread that calls onTouchEvent(). */
+	public static interface StrokeListener {
+
+		/**
+		 * Called once per MotionEvent with the strokes of all pointers that are down. The samples added by this event in each stroke are those from
+		 * stroke.getNewSamplesStart() to stroke.getNumSamples()-1.
+		 * 
+		 * @param strokes
+		 *            The active strokes. Only the first numStrokes entries are defined, and the array is reused for the next event.
+		 */
+		public void onStrokeSamples(Stroke[] strokes, int numStrokes);
+
+		/**
+		 * Called when a pointer goes up (or the gesture is cancelled), after the stroke's final samples have been passed to onStrokeSamples(). The
+		 * stroke's buffers are reused for a later stroke after this method returns, so copy anything that needs to be kept.
+		 */
+		public void onStrokeEnded(Stroke stroke);
+	}
+
+	// ------------------------------------------------------------------------------------
+
+	/**
+	 * Receives gestures recognized by the controller, see setGestureListener(). Called on the thread that runs the state machine (the thread that
+	 * calls onTouchEvent(), or the gesture thread if there is one), after the MultiTouchObjectCanvas callbacks for the same sample. The touch point
+	 * passed is the controller's current sample, see PointInfo.retain().
+	 * 
+	 * There is no separate scroll callback: a single touch point that moves further than a tap is a drag, reported through the
+	 * MultiTouchObjectCanvas (setPositionAndScale()) like any other drag.
+	 */
+	public static interface GestureListener {
+
+		/**
+		 * One touch point went down and up again within LONG_PRESS_TIMEOUT without moving. Called as soon as it goes up, so also for the first tap
+		 * of a double tap; use onSingleTapConfirmed() instead for actions that a double tap should not trigger. Not called for the second tap of a
+		 * double tap.
+		 */
+		public void onTap(PointInfo touchPoint);
+
+		/**
+		 * A tap reported by onTap() was not followed by another touch going down within DOUBLE_TAP_TIMEOUT, so it is not the first tap of a double
+		 * tap. Called DOUBLE_TAP_TIMEOUT after the tap went up, once per tap. The touch point is the tap's last sample.
+		 */
+		public void onSingleTapConfirmed(PointInfo touchPoint);
+
+		/** A tap went down within DOUBLE_TAP_TIMEOUT of and close to the previous tap. Called when the second tap goes up, instead of onTap(). */
+		public void onDoubleTap(PointInfo touchPoint);
+
+		/** One touch point has been held down without moving for LONG_PRESS_TIMEOUT. Called while it is still down; no tap follows. */
+		public void onLongPress(PointInfo touchPoint);
+
+		/** Two touch points went down and up again within LONG_PRESS_TIMEOUT without moving. */
+		public void onTwoFingerTap(PointInfo touchPoint);
 	}
 
 	// ------------------------------------------------------------------------------------
@@ -814,8 +2355,8 @@ public class MultiTouchController<T> {
 		 *            The new position and scale of the object, in object coordinates. Use this to move/resize the object before returning.
 		 * @param touchPoint
 		 *            Info about the current touch point, including multitouch information and utilities to calculate and cache multitouch pinch
-		 *            diameter etc. (Note: touchPoint is volatile, if you want to keep any fields of touchPoint, you must copy them before the method
-		 *            body exits.)
+		 *            diameter etc. (Note: the controller reuses touchPoint for later samples. To keep it beyond this call, retain() it and release()
+		 *            it when done, or copy it with PointInfo.set(PointInfo) before the method body exits.)
 		 * @return true if setting the position and scale of the object was successful, or false if the position or scale parameters are out of range
 		 *         for this object.
 		 */
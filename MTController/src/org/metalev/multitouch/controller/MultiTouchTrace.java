@@ -0,0 +1,165 @@
+package org.metalev.multitouch.controller;
+
+/**
+ * MultiTouchTrace.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * A fixed-capacity in-memory ring buffer of what the MultiTouchController state machine did, for diagnosing glitches in the field. Records are
+ * stored in parallel primitive arrays, so recording a trace record never allocates, and when the buffer is full the oldest records are overwritten.
+ *
+ * Usage:
+ *   <code>
+ *   MultiTouchTrace trace = new MultiTouchTrace(4096);
+ *   multiTouchController.setTrace(trace);   // start tracing
+ *   ...
+ *   multiTouchController.setTrace(null);    // on demand, e.g. when the user reports a glitch: stop tracing,
+ *   trace.writeTo(file);                   // then write out what was recorded
+ *   multiTouchController.setTrace(trace);   // and resume, if wanted
+ *   </code>
+ *
+ * Binary format written by writeTo() (big-endian, as written by DataOutputStream):
+ *   int magic ("MTTR"), int version, int number of records, then for each record from oldest to newest:
+ *   long event time (ms, SystemClock.uptimeMillis() time base), byte record type, int i, float a, float b
+ * where the meaning of i, a and b depends on the record type, see the TYPE_* constants.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class MultiTouchTrace {
+
+	private static final int MAGIC = 0x4d545452; // "MTTR"
+
+	private static final int VERSION = 1;
+
+	/** A MotionEvent was received. i = action, a = pointer count, b = number of historical samples */
+	public static final byte TYPE_EVENT = 1;
+
+	/** A sample was decoded. i = number of touch points, negated if no point is down, a = x, b = y (midpoint of the first two points) */
+	public static final byte TYPE_SAMPLE = 2;
+
+	/** The mode changed. i = new mode, a = old mode */
+	public static final byte TYPE_MODE = 3;
+
+	/** The drag/pinch was anchored at the current point. i = mode, a = x, b = y */
+	public static final byte TYPE_ANCHOR = 4;
+
+	/** A pinch sample was rejected by the jump filter. i = mode, a = jump in x, b = jump in y */
+	public static final byte TYPE_REJECT = 5;
+
+	/** A sample re-anchored the drag/pinch because it was within a settle window. i = mode, a = ms left in the settle window */
+	public static final byte TYPE_SETTLE = 6;
+
+	/** An object was selected (i = 1) or deselected (i = 0) */
+	public static final byte TYPE_SELECT = 7;
+
+	/**
+	 * A gesture was recognized, see MultiTouchController.setGestureListener(). i = 1 tap, 2 double tap, 3 long press, 4 two-finger tap,
+	 * 5 single tap confirmed
+	 */
+	public static final byte TYPE_GESTURE = 8;
+
+	/** Adaptive backpressure started (i = 1) or stopped (i = 0) conflating samples. a = average callback time, b = average sample interval (ms) */
+	public static final byte TYPE_BACKPRESSURE = 9;
+
+	private final long[] times;
+
+	private final byte[] types;
+
+	private final int[] is;
+
+	private final float[] as, bs;
+
+	private final int mask;
+
+	/** Total number of records ever written; the next record goes at index (count & mask) */
+	private long count;
+
+	/** Create a trace that holds the most recent capacity records. capacity is rounded up to a power of two. */
+	public MultiTouchTrace(int capacity) {
+		int size = 1;
+		while (size < capacity)
+			size <<= 1;
+		times = new long[size];
+		types = new byte[size];
+		is = new int[size];
+		as = new float[size];
+		bs = new float[size];
+		mask = size - 1;
+	}
+
+	/** Add a record, overwriting the oldest one if the buffer is full */
+	void record(long time, byte type, int i, float a, float b) {
+		int idx = (int) (count++ & mask);
+		times[idx] = time;
+		types[idx] = type;
+		is[idx] = i;
+		as[idx] = a;
+		bs[idx] = b;
+	}
+
+	/** Discard all records */
+	public void clear() {
+		count = 0;
+	}
+
+	/** The number of records currently held, at most the capacity */
+	public int size() {
+		return (int) Math.min(count, mask + 1);
+	}
+
+	/**
+	 * Write the records, oldest first, in the binary format described at the top of this file. Stop tracing first by calling the controller's
+	 * setTrace(null) (or setTrace() with another trace) on the thread that calls its onTouchEvent(): that waits for the controller's gesture
+	 * thread, if it has one, to stop recording into this trace. Otherwise records may be overwritten while they are being written.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+		int n = size();
+		dataOut.writeInt(MAGIC);
+		dataOut.writeInt(VERSION);
+		dataOut.writeInt(n);
+		for (long seq = count - n; seq < count; seq++) {
+			int idx = (int) (seq & mask);
+			dataOut.writeLong(times[idx]);
+			dataOut.writeByte(types[idx]);
+			dataOut.writeInt(is[idx]);
+			dataOut.writeFloat(as[idx]);
+			dataOut.writeFloat(bs[idx]);
+		}
+		dataOut.flush();
+	}
+
+	/** Write the records to a file, see writeTo(OutputStream) */
+	public void writeTo(File file) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			writeTo(out);
+		} finally {
+			out.close();
+		}
+	}
+}
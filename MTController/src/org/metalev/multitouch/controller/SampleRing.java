@@ -0,0 +1,175 @@
+package org.metalev.multitouch.controller;
+
+/**
+ * SampleRing.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * A lock-free single-producer/single-consumer ring buffer of touch samples, used by MultiTouchController to hand samples from the thread that
+ * receives touch events to the gesture thread (see MultiTouchController.setGestureThreadEnabled()). Samples are copied into preallocated primitive
+ * arrays, so neither side allocates in steady state.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class SampleRing {
+
+	/** Per-pointer storage for every slot, stride pointers per slot. Replaced (only while the ring is empty) when more pointers are needed. */
+	private static class Slots {
+		private final int stride;
+		private final float[] xs, ys, pressures, touchMajors, touchMinors, orientations;
+		private final int[] pointerIds, toolTypes;
+
+		private Slots(int capacity, int stride) {
+			this.stride = stride;
+			int size = capacity * stride;
+			xs = new float[size];
+			ys = new float[size];
+			pressures = new float[size];
+			touchMajors = new float[size];
+			touchMinors = new float[size];
+			orientations = new float[size];
+			pointerIds = new int[size];
+			toolTypes = new int[size];
+		}
+	}
+
+	/** A sample as read back out of the ring by poll(). Owned by the consumer. */
+	static class Sample {
+		int numPointers, axisMask, action;
+		boolean down;
+		long eventTime;
+		float[] xs = new float[0], ys = new float[0], pressures = new float[0], touchMajors = new float[0], touchMinors = new float[0],
+				orientations = new float[0];
+		int[] pointerIds = new int[0], toolTypes = new int[0];
+
+		private void ensureCapacity(int stride) {
+			if (xs.length < stride) {
+				xs = new float[stride];
+				ys = new float[stride];
+				pressures = new float[stride];
+				touchMajors = new float[stride];
+				touchMinors = new float[stride];
+				orientations = new float[stride];
+				pointerIds = new int[stride];
+				toolTypes = new int[stride];
+			}
+		}
+	}
+
+	private final int mask;
+
+	// Per-slot values
+	private final int[] numPointers, axisMasks, actions;
+	private final boolean[] downs;
+	private final long[] eventTimes;
+
+	private volatile Slots slots;
+
+	/** Sequence number of the next slot to write (written only by the producer) and to read (written only by the consumer) */
+	private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+
+	/** capacity is rounded up to a power of two; stride is the initial number of pointers per sample that there is room for */
+	SampleRing(int capacity, int stride) {
+		int size = 1;
+		while (size < capacity)
+			size <<= 1;
+		mask = size - 1;
+		numPointers = new int[size];
+		axisMasks = new int[size];
+		actions = new int[size];
+		downs = new boolean[size];
+		eventTimes = new long[size];
+		slots = new Slots(size, stride);
+	}
+
+	/**
+	 * Producer: append a sample. Returns false if the ring is full, or if the sample has more pointers than a slot holds and the consumer has not
+	 * yet drained the ring (the slots can only be reallocated while the consumer is not reading them).
+	 */
+	boolean offer(int n, float[] x, float[] y, float[] pressure, int[] pointerIds, int axisMask, float[] touchMajor, float[] touchMinor,
+			float[] orientation, int[] toolType, int action, boolean down, long eventTime) {
+		long h = head.get();
+		if (h - tail.get() > mask)
+			return false;
+		Slots sl = slots;
+		if (n > sl.stride) {
+			if (tail.get() != h)
+				return false;
+			int stride = sl.stride;
+			while (stride < n)
+				stride *= 2;
+			sl = slots = new Slots(mask + 1, stride);
+		}
+		int idx = (int) (h & mask), base = idx * sl.stride;
+		System.arraycopy(x, 0, sl.xs, base, n);
+		System.arraycopy(y, 0, sl.ys, base, n);
+		System.arraycopy(pressure, 0, sl.pressures, base, n);
+		System.arraycopy(pointerIds, 0, sl.pointerIds, base, n);
+		if (axisMask != 0) {
+			System.arraycopy(touchMajor, 0, sl.touchMajors, base, n);
+			System.arraycopy(touchMinor, 0, sl.touchMinors, base, n);
+			System.arraycopy(orientation, 0, sl.orientations, base, n);
+			System.arraycopy(toolType, 0, sl.toolTypes, base, n);
+		}
+		numPointers[idx] = n;
+		axisMasks[idx] = axisMask;
+		actions[idx] = action;
+		downs[idx] = down;
+		eventTimes[idx] = eventTime;
+		// Publish the slot (volatile write, so everything above is visible to the consumer once it sees the new head)
+		head.set(h + 1);
+		return true;
+	}
+
+	/** Consumer: whether there are no samples waiting */
+	boolean isEmpty() {
+		return tail.get() == head.get();
+	}
+
+	/** Consumer: copy the oldest sample into out and remove it from the ring. Returns false if the ring is empty. */
+	boolean poll(Sample out) {
+		long t = tail.get();
+		if (t == head.get())
+			return false;
+		Slots sl = slots;
+		out.ensureCapacity(sl.stride);
+		int idx = (int) (t & mask), base = idx * sl.stride, n = numPointers[idx];
+		System.arraycopy(sl.xs, base, out.xs, 0, n);
+		System.arraycopy(sl.ys, base, out.ys, 0, n);
+		System.arraycopy(sl.pressures, base, out.pressures, 0, n);
+		System.arraycopy(sl.pointerIds, base, out.pointerIds, 0, n);
+		out.axisMask = axisMasks[idx];
+		if (out.axisMask != 0) {
+			System.arraycopy(sl.touchMajors, base, out.touchMajors, 0, n);
+			System.arraycopy(sl.touchMinors, base, out.touchMinors, 0, n);
+			System.arraycopy(sl.orientations, base, out.orientations, 0, n);
+			System.arraycopy(sl.toolTypes, base, out.toolTypes, 0, n);
+		}
+		out.numPointers = n;
+		out.action = actions[idx];
+		out.down = downs[idx];
+		out.eventTime = eventTimes[idx];
+		// Free the slot
+		tail.set(t + 1);
+		return true;
+	}
+}
@@ -0,0 +1,121 @@
+package org.metalev.multitouch.controller;
+
+/**
+ * Stroke.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Every raw sample of one pointer from the time it goes down until it goes up, as captured by MultiTouchController in stroke mode (see
+ * MultiTouchController.setStrokeListener()). Samples are stored in growable primitive arrays, which are recycled for later strokes once the stroke
+ * has ended, so steady-state capture does not allocate.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+public class Stroke {
+	private static final int INITIAL_CAPACITY = 64;
+
+	private int pointerId;
+
+	private int numSamples, numNewSamples;
+
+	private float[] xs = new float[INITIAL_CAPACITY];
+	private float[] ys = new float[INITIAL_CAPACITY];
+	private float[] pressures = new float[INITIAL_CAPACITY];
+	private long[] eventTimes = new long[INITIAL_CAPACITY];
+
+	Stroke() {
+	}
+
+	/** Start a new stroke, reusing the arrays of the previous one */
+	void reset(int pointerId) {
+		this.pointerId = pointerId;
+		numSamples = numNewSamples = 0;
+	}
+
+	/** Called at the start of each MotionEvent, so that the samples added for that event can be told apart */
+	void startBatch() {
+		numNewSamples = 0;
+	}
+
+	void add(float x, float y, float pressure, long eventTime) {
+		if (numSamples == xs.length)
+			grow();
+		xs[numSamples] = x;
+		ys[numSamples] = y;
+		pressures[numSamples] = pressure;
+		eventTimes[numSamples] = eventTime;
+		numSamples++;
+		numNewSamples++;
+	}
+
+	/** Double the capacity. The arrays are kept when the stroke is recycled, so this only happens for the longest strokes seen so far. */
+	private void grow() {
+		int newCapacity = xs.length * 2;
+		float[] newXs = new float[newCapacity];
+		float[] newYs = new float[newCapacity];
+		float[] newPressures = new float[newCapacity];
+		long[] newEventTimes = new long[newCapacity];
+		System.arraycopy(xs, 0, newXs, 0, numSamples);
+		System.arraycopy(ys, 0, newYs, 0, numSamples);
+		System.arraycopy(pressures, 0, newPressures, 0, numSamples);
+		System.arraycopy(eventTimes, 0, newEventTimes, 0, numSamples);
+		xs = newXs;
+		ys = newYs;
+		pressures = newPressures;
+		eventTimes = newEventTimes;
+	}
+
+	// -------------------------------------------------------------------------------------------------------------------------------------------
+
+	/** The pointer id (as returned by MotionEvent.getPointerId()) of the pointer that drew this stroke */
+	public int getPointerId() {
+		return pointerId;
+	}
+
+	/** The total number of samples in this stroke so far */
+	public int getNumSamples() {
+		return numSamples;
+	}
+
+	/** The index of the first sample added by the most recent MotionEvent. Samples from here to getNumSamples()-1 are new. */
+	public int getNewSamplesStart() {
+		return numSamples - numNewSamples;
+	}
+
+	/** Return the array of X coords -- only the first getNumSamples() of these are defined. The array may be replaced when the stroke grows. */
+	public float[] getXs() {
+		return xs;
+	}
+
+	/** Return the array of Y coords -- only the first getNumSamples() of these are defined. The array may be replaced when the stroke grows. */
+	public float[] getYs() {
+		return ys;
+	}
+
+	/** Return the array of pressures -- only the first getNumSamples() of these are defined. The array may be replaced when the stroke grows. */
+	public float[] getPressures() {
+		return pressures;
+	}
+
+	/** Return the array of sample times in ms, in the SystemClock.uptimeMillis() time base -- only the first getNumSamples() of these are defined. */
+	public long[] getEventTimes() {
+		return eventTimes;
+	}
+}
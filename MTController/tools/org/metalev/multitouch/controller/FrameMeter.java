@@ -0,0 +1,132 @@
+package org.metalev.multitouch.controller;
+
+/**
+ * FrameMeter.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Times the frames of a benchmark that drives a view through onTouchEvent() and draw(), and counts the bytes allocated on the benchmark's thread
+ * while it runs, for the draw benchmarks in the sample apps' tools directories. The allocation counter is the JVM's per-thread one
+ * (com.sun.management.ThreadMXBean.getThreadAllocatedBytes()), found by reflection so that this builds without it; where there is no such
+ * counter, as on Android, only times are reported.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+public class FrameMeter {
+
+	/** The thread MXBean and its getThreadAllocatedBytes(long), or null if the JVM has no per-thread allocation counter */
+	private static Object sThreadBean;
+
+	private static Method sGetThreadAllocatedBytes;
+
+	static {
+		try {
+			Object bean = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+			Class<?> c_ThreadMXBean = Class.forName("com.sun.management.ThreadMXBean");
+			if (c_ThreadMXBean.isInstance(bean)) {
+				sGetThreadAllocatedBytes = c_ThreadMXBean.getMethod("getThreadAllocatedBytes", long.class);
+				sThreadBean = bean;
+			}
+		} catch (Exception e) {
+			sGetThreadAllocatedBytes = null;
+		}
+	}
+
+	/** The time of each frame (ns) since start(), sorted by stop() */
+	private final long[] frameNanos;
+
+	private int frames;
+
+	private long frameStartNanos, totalNanos;
+
+	/** The thread's allocation counter at start(), and the bytes allocated between start() and stop(), or -1 if there is no counter */
+	private long startBytes, allocatedBytes;
+
+	/** A meter for up to maxFrames frames between start() and stop() */
+	public FrameMeter(int maxFrames) {
+		frameNanos = new long[maxFrames];
+	}
+
+	/** Start measuring, forgetting any earlier frames */
+	public void start() {
+		frames = 0;
+		totalNanos = 0;
+		startBytes = threadAllocatedBytes();
+	}
+
+	public void startFrame() {
+		frameStartNanos = System.nanoTime();
+	}
+
+	public void endFrame() {
+		long nanos = System.nanoTime() - frameStartNanos;
+		if (frames == frameNanos.length)
+			throw new IllegalStateException("more than " + frameNanos.length + " frames");
+		frameNanos[frames++] = nanos;
+		totalNanos += nanos;
+	}
+
+	/** Stop measuring. Allocations between start() and stop() are counted, including any outside startFrame()/endFrame(). */
+	public void stop() {
+		long endBytes = threadAllocatedBytes();
+		allocatedBytes = startBytes < 0 || endBytes < 0 ? -1 : endBytes - startBytes;
+		Arrays.sort(frameNanos, 0, frames);
+	}
+
+	public int getFrames() {
+		return frames;
+	}
+
+	public double getMeanMillis() {
+		return frames == 0 ? 0.0 : totalNanos / 1e6 / frames;
+	}
+
+	/** The frame time (ms) that the given fraction of frames took at most, e.g. 0.5 for the median. Call after stop(). */
+	public double getPercentileMillis(double fraction) {
+		return frames == 0 ? 0.0 : frameNanos[Math.min(frames - 1, (int) (fraction * frames))] / 1e6;
+	}
+
+	/** Bytes allocated on the measuring thread per frame between start() and stop(), or -1 if they can't be counted */
+	public double getAllocatedBytesPerFrame() {
+		return allocatedBytes < 0 ? -1.0 : frames == 0 ? 0.0 : (double) allocatedBytes / frames;
+	}
+
+	/** The frame times and allocations as one line of text */
+	public String summary() {
+		String allocs = allocatedBytes < 0 ? "allocations not counted on this VM" : String.format("%.1f bytes/frame allocated",
+				getAllocatedBytesPerFrame());
+		return String.format("%.3f ms/frame (p50 %.3f, p99 %.3f, max %.3f), %s", getMeanMillis(), getPercentileMillis(0.5),
+				getPercentileMillis(0.99), getPercentileMillis(1.0), allocs);
+	}
+
+	/** The bytes allocated by the current thread since it started, or -1 if there is no counter */
+	private static long threadAllocatedBytes() {
+		if (sGetThreadAllocatedBytes == null)
+			return -1;
+		try {
+			return ((Long) sGetThreadAllocatedBytes.invoke(sThreadBean, Thread.currentThread().getId())).longValue();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
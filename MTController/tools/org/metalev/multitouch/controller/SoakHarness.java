@@ -0,0 +1,584 @@
+package org.metalev.multitouch.controller;
+
+/**
+ * SoakHarness.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Soak test of the controller's state machine: feeds a long run of synthetic gestures through MultiTouchController.onTouchEvent() and checks
+ * invariants after every event. Run it with main() on a JVM with tools/run.sh, or on a device (see below).
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+import java.util.Random;
+
+import org.metalev.multitouch.controller.MultiTouchController.MultiTouchObjectCanvas;
+import org.metalev.multitouch.controller.MultiTouchController.PointInfo;
+import org.metalev.multitouch.controller.MultiTouchController.PositionAndScale;
+
+import android.view.MotionEvent;
+
+/**
+ * Feeds a long run of synthetic gestures to the controller, one sample per MotionEvent, through onTouchEvent() (no views are needed), and checks
+ * invariants after every event. The events are built with SyntheticEvents, so it needs the plain-Java Android stand-in in tools/android-standin
+ * (tools/run.sh compiles it in), or a device (or emulator) running Android 4.0 or later, e.g. run with app_process from a dex file of
+ * MTController's src and tools directories.
+ *
+ * Three kinds of gesture are mixed at random:
+ * <ul>
+ * <li>Open paths: one or two fingers go down on an object with a random transform and wander about with jitter. After every sample, the
+ * object's transform is compared with one computed independently, in double, from the finger positions and the object's transform when the
+ * drag/pinch was anchored: scale follows the ratio of pinch diameters, angle the change in pinch angle, and position the movement of the
+ * fingers' midpoint, plus the movement of the anchor point's object coords as the object scales (by the previous sample's scale, as in the
+ * controller, see performDragOrPinch()). The pinch diameter is rounded down to 1/16 pixel, as the controller deliberately does, so any other
+ * difference is numerical drift.</li>
+ * <li>Closed loops: likewise, but the fingers then retrace their paths exactly to where they started, so the object they hold must end up
+ * exactly where it started. The same object is used for every closed loop, so drift that accumulates over a long session shows up too.
+ * (Closed loops on their own can hide drift that cancels out on the way back, hence the open paths.)</li>
+ * <li>Chaos gestures on a third object: up to MAX_CHAOS_POINTERS fingers going down and up in random order, jitter, single-sample jumps (as
+ * produced by noisy sensors) and cancels, all within CHAOS_FINGER_RANGE of CHAOS_START. Jumps are rejected by design, so there is no transform
+ * to compare with; instead the object, which starts each gesture at CHAOS_START with scale 1, must not run away from the fingers (see
+ * checkChaosBound()).</li>
+ * </ul>
+ * Invariants: transforms passed to setPositionAndScale() are finite with a positive scale, an object is selected whenever a touch point is down
+ * and nothing is selected (MODE_NOTHING) after the last touch point goes up or the gesture is cancelled, path errors stay within MAX_POS_ERROR,
+ * MAX_SCALE_ERROR and MAX_ANGLE_ERROR, session drift stays within MAX_POS_DRIFT, MAX_SCALE_DRIFT and
+ * MAX_ANGLE_DRIFT, and chaos gestures stay within their bound.
+ */
+public class SoakHarness {
+
+	/** MotionEvent actions and shift from Android 2.0, which the controller builds below */
+	private static final int ACTION_POINTER_DOWN = 5, ACTION_POINTER_UP = 6, ACTION_POINTER_INDEX_SHIFT = 8;
+
+	/** Time between samples (ms), as for a 125Hz touch sensor */
+	private static final long SAMPLE_INTERVAL = 8;
+
+	/** Samples to hold still after the number of touch points changes, to get past the controller's settle window */
+	private static final int SETTLE_SAMPLES = 4;
+
+	/** Most fingers down at once in a chaos gesture */
+	private static final int MAX_CHAOS_POINTERS = 5;
+
+	/** Chaos gestures: the x and y position of the object at the start of each gesture */
+	private static final float CHAOS_START = 400;
+
+	/** Chaos gestures: the fingers, including jumps, stay within this distance (in pixels) of CHAOS_START in x and y */
+	private static final float CHAOS_FINGER_RANGE = 400;
+
+	/** Largest drift allowed, accumulated over the whole run: in pixels, as a fraction of the scale, and in radians */
+	private static final double MAX_POS_DRIFT = 0.01, MAX_SCALE_DRIFT = 1e-5, MAX_ANGLE_DRIFT = 1e-5;
+
+	/** Largest difference allowed between a path gesture's transform and the one computed independently: in pixels, as a fraction, in radians */
+	private static final double MAX_POS_ERROR = 0.01, MAX_SCALE_ERROR = 1e-5, MAX_ANGLE_ERROR = 1e-5;
+
+	/** Smallest pinch diameter the controller uses (MIN_MULTITOUCH_SEPARATION * .71), which is also the diameter of a single touch point */
+	private static final float MIN_DIAM = 30.0f * .71f;
+
+	/** The canvas refuses to scale objects beyond this range, as real canvases do */
+	private static final double MIN_SCALE = 0.01, MAX_SCALE = 100.0;
+
+	/** How many failures to describe in Result.getFailureMessages() */
+	private static final int MAX_FAILURE_MESSAGES = 10;
+
+	/** The results of a run */
+	public static class Result {
+		private long gestures, samples, twoFingerSamples, elapsedNanos, twoFingerNanos, failures;
+
+		private double posDrift, scaleDrift, angleDrift, posError, scaleError, angleError, chaosOffset;
+
+		private final StringBuilder failureMessages = new StringBuilder();
+
+		public long getGestures() {
+			return gestures;
+		}
+
+		/** Total number of samples fed to the controller */
+		public long getSamples() {
+			return samples;
+		}
+
+		/** Samples per second over the whole run, including the harness's own overhead */
+		public double getSamplesPerSecond() {
+			return elapsedNanos == 0 ? 0.0 : samples * 1e9 / elapsedNanos;
+		}
+
+		/** Samples per second during 2-finger pinches (closed loops and open paths) */
+		public double getTwoFingerSamplesPerSecond() {
+			return twoFingerNanos == 0 ? 0.0 : twoFingerSamples * 1e9 / twoFingerNanos;
+		}
+
+		/** Number of invariant violations */
+		public long getFailures() {
+			return failures;
+		}
+
+		/** Descriptions of the first few invariant violations, one per line */
+		public String getFailureMessages() {
+			return failureMessages.toString();
+		}
+
+		/** How far (in pixels) the closed-loop object ended up from where it started */
+		public double getPosDrift() {
+			return posDrift;
+		}
+
+		/** How far the closed-loop object's scale ended up from its starting scale, as a fraction of it */
+		public double getScaleDrift() {
+			return scaleDrift;
+		}
+
+		/** How far (in radians) the closed-loop object's angle ended up from its starting angle */
+		public double getAngleDrift() {
+			return angleDrift;
+		}
+
+		/** The largest difference (in pixels) between a path gesture's position and the one computed independently */
+		public double getPosError() {
+			return posError;
+		}
+
+		/** The largest difference between a path gesture's scale and the one computed independently, as a fraction of it */
+		public double getScaleError() {
+			return scaleError;
+		}
+
+		/** The largest difference (in radians) between a path gesture's angle and the one computed independently */
+		public double getAngleError() {
+			return angleError;
+		}
+
+		/** The furthest (in pixels) a chaos gesture moved its object from CHAOS_START */
+		public double getChaosOffset() {
+			return chaosOffset;
+		}
+
+		private void fail(long gesture, String message) {
+			if (failures++ < MAX_FAILURE_MESSAGES)
+				failureMessages.append("gesture ").append(gesture).append(": ").append(message).append('\n');
+		}
+
+		@Override
+		public String toString() {
+			return gestures + " gestures, " + samples + " samples, " + (long) getSamplesPerSecond() + " samples/s (2-finger: "
+					+ (long) getTwoFingerSamplesPerSecond() + " samples/s), drift: pos " + posDrift + " px, scale " + scaleDrift + ", angle "
+					+ angleDrift + " rad, path error: pos " + posError + " px, scale " + scaleError + ", angle " + angleError
+					+ " rad, chaos offset: " + chaosOffset + " px, " + failures + " failures";
+		}
+	}
+
+	/** Run numGestures gestures chosen with the given random seed, with the controller in high-precision mode or not */
+	public static Result run(long numGestures, long seed, boolean highPrecision) {
+		return new SoakHarness(seed, highPrecision).run(numGestures);
+	}
+
+	/** Usage: SoakHarness [numGestures [seed]]. Runs in float and in high-precision mode, and exits with status 1 if any invariant failed. */
+	public static void main(String[] args) {
+		long numGestures = args.length > 0 ? Long.parseLong(args[0]) : 1000000L;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+		boolean ok = true;
+		for (int i = 0; i < 2; i++) {
+			boolean highPrecision = i == 1;
+			Result result = run(numGestures, seed, highPrecision);
+			System.out.println((highPrecision ? "high precision: " : "float:          ") + result);
+			System.out.print(result.getFailureMessages());
+			ok &= result.getFailures() == 0;
+		}
+		System.exit(ok ? 0 : 1);
+	}
+
+	// ------------------------------------------------------------------------------------
+
+	private final Random random;
+
+	private final SoakCanvas canvas = new SoakCanvas();
+
+	private final MultiTouchController<Object> controller = new MultiTouchController<Object>(canvas);
+
+	private final Result result = new Result();
+
+	private final SyntheticEvents events = new SyntheticEvents();
+
+	/** The current sample, and the ids of the pointers that are down */
+	private float[] xs = new float[MAX_CHAOS_POINTERS], ys = new float[MAX_CHAOS_POINTERS], pressures = new float[MAX_CHAOS_POINTERS];
+
+	private int[] ptrIds = new int[MAX_CHAOS_POINTERS];
+
+	private int numPointers, nextPtrId;
+
+	private long eventTime, gesture;
+
+	/** Path gestures: the path of each finger, retraced backwards to return to the start for closed loops */
+	private float[][] pathXs = new float[2][], pathYs = new float[2][];
+
+	/** Path gestures: the fingers' midpoint, pinch diameter and pinch angle, and the object's transform, when the drag/pinch was anchored */
+	private double anchorMidX, anchorMidY, anchorDiam, anchorAng, anchorX, anchorY, anchorScale, anchorAngle;
+
+	/** Path gestures: the scale computed for the previous sample */
+	private double prevScale;
+
+	/** Chaos gestures: the object's distance (in x or y) from the fingers' midpoint, and its scale, when the controller last anchored */
+	private double chaosAnchorDist, chaosAnchorScale;
+
+	private SoakHarness(long seed, boolean highPrecision) {
+		random = new Random(seed);
+		controller.setHighPrecision(highPrecision);
+		canvas.highPrecision = highPrecision;
+		for (int i = 0; i < MAX_CHAOS_POINTERS; i++)
+			pressures[i] = 1.0f;
+	}
+
+	private Result run(long numGestures) {
+		long startTime = System.nanoTime();
+		SoakObject loopObj = canvas.loopObj;
+		double x0 = loopObj.x, y0 = loopObj.y, scale0 = loopObj.scale, angle0 = loopObj.angle;
+		for (gesture = 0; gesture < numGestures; gesture++) {
+			int kind = random.nextInt(20);
+			if (kind < 10) {
+				long twoFingerStart = System.nanoTime();
+				long samplesBefore = result.samples;
+				pathGesture(2, kind < 7);
+				result.twoFingerNanos += System.nanoTime() - twoFingerStart;
+				result.twoFingerSamples += result.samples - samplesBefore;
+			} else if (kind < 14) {
+				pathGesture(1, kind < 13);
+			} else {
+				chaosGesture();
+			}
+			// Leave a gap between gestures
+			eventTime += 200;
+		}
+		result.elapsedNanos = System.nanoTime() - startTime;
+		result.gestures = numGestures;
+		result.posDrift = Math.max(Math.abs(loopObj.x - x0), Math.abs(loopObj.y - y0));
+		result.scaleDrift = Math.abs(loopObj.scale / scale0 - 1.0);
+		result.angleDrift = Math.abs(Math.IEEEremainder(loopObj.angle - angle0, 2 * Math.PI));
+		if (result.posDrift > MAX_POS_DRIFT || result.scaleDrift > MAX_SCALE_DRIFT || result.angleDrift > MAX_ANGLE_DRIFT)
+			result.fail(gesture, "drift too large: pos " + result.posDrift + ", scale " + result.scaleDrift + ", angle " + result.angleDrift);
+		return result;
+	}
+
+	/**
+	 * Fingers go down one at a time, wander along random paths, for closed loops retrace them to where they started, and go up one at a time. Open
+	 * paths start on an object with a random transform.
+	 */
+	private void pathGesture(int fingers, boolean closed) {
+		SoakObject obj = closed ? canvas.loopObj : canvas.openObj;
+		if (!closed) {
+			// Start from values that are exact in float, so that the float controller starts from the same transform
+			obj.x = 100 + random.nextInt(600);
+			obj.y = 100 + random.nextInt(600);
+			obj.scale = 0.5f + random.nextFloat() * 1.5f;
+			obj.angle = (random.nextFloat() - 0.5f) * 6.0f;
+		}
+		canvas.target = obj;
+		int steps = 10 + random.nextInt(60);
+		for (int f = 0; f < fingers; f++) {
+			if (pathXs[f] == null || pathXs[f].length < steps + 1) {
+				pathXs[f] = new float[steps + 1];
+				pathYs[f] = new float[steps + 1];
+			}
+			// Start the fingers well apart, so that the pinch is not clamped to MIN_MULTITOUCH_SEPARATION
+			pathXs[f][0] = 100 + random.nextInt(200) + f * 300;
+			pathYs[f][0] = 100 + random.nextInt(600);
+			for (int i = 1; i <= steps; i++) {
+				pathXs[f][i] = pathXs[f][i - 1] + (random.nextFloat() - 0.5f) * 8;
+				pathYs[f][i] = pathYs[f][i - 1] + (random.nextFloat() - 0.5f) * 8;
+			}
+		}
+		for (int f = 0; f < fingers; f++) {
+			addPointer(pathXs[f][0], pathYs[f][0]);
+			hold(SETTLE_SAMPLES);
+		}
+		// The fingers have not moved since the controller last anchored (in the settle window), so the object is still where it was then
+		anchorPath(obj);
+		int numSteps = closed ? 2 * steps : steps;
+		for (int i = 1; i <= numSteps; i++) {
+			int step = i <= steps ? i : 2 * steps - i;
+			for (int f = 0; f < fingers; f++) {
+				// Jitter, except at the end of the path, which must be exactly where the fingers started
+				float jitter = step == 0 ? 0.0f : (random.nextFloat() - 0.5f) * 2;
+				xs[f] = pathXs[f][step] + jitter;
+				ys[f] = pathYs[f][step] + jitter;
+			}
+			sample(MotionEvent.ACTION_MOVE, true);
+			checkPath(obj);
+		}
+		// Hold still at the end, as real fingers do before lifting
+		for (int i = 0; i < 2; i++) {
+			sample(MotionEvent.ACTION_MOVE, true);
+			checkPath(obj);
+		}
+		while (numPointers > 0)
+			removePointer(numPointers - 1);
+	}
+
+	/** Path gestures: record the anchor of the drag/pinch, from the current sample and the object's transform */
+	private void anchorPath(SoakObject obj) {
+		anchorMidX = midX();
+		anchorMidY = midY();
+		anchorDiam = diam();
+		anchorAng = ang();
+		anchorX = obj.x;
+		anchorY = obj.y;
+		anchorScale = obj.scale;
+		anchorAngle = obj.angle;
+		prevScale = anchorScale;
+	}
+
+	/** Path gestures: compare the object's transform with the one computed from the anchor and the current sample */
+	private void checkPath(SoakObject obj) {
+		double midX = midX(), midY = midY(), diam = diam();
+		double scale = anchorScale * diam / anchorDiam;
+		double scaleChange = prevScale / anchorScale - 1.0;
+		double x = anchorX + (midX - anchorMidX) - (anchorMidX - anchorX) * scaleChange;
+		double y = anchorY + (midY - anchorMidY) - (anchorMidY - anchorY) * scaleChange;
+		double angle = anchorAngle + (ang() - anchorAng);
+		prevScale = scale;
+
+		double posError = Math.max(Math.abs(obj.x - x), Math.abs(obj.y - y));
+		double scaleError = Math.abs(obj.scale / scale - 1.0);
+		double angleError = Math.abs(Math.IEEEremainder(obj.angle - angle, 2 * Math.PI));
+		result.posError = Math.max(result.posError, posError);
+		result.scaleError = Math.max(result.scaleError, scaleError);
+		result.angleError = Math.max(result.angleError, angleError);
+		if (posError > MAX_POS_ERROR || scaleError > MAX_SCALE_ERROR || angleError > MAX_ANGLE_ERROR)
+			result.fail(gesture, "path error: pos " + posError + " px (x " + obj.x + ", expected " + x + "), scale " + scaleError + " (" + obj.scale
+					+ ", expected " + scale + "), angle " + angleError + " rad");
+	}
+
+	/** The midpoint of the first two fingers, or the position of the only one, as PointInfo.getX() and getY() compute it */
+	private double midX() {
+		return numPointers == 1 ? xs[0] : (xs[0] + xs[1]) * .5f;
+	}
+
+	private double midY() {
+		return numPointers == 1 ? ys[0] : (ys[0] + ys[1]) * .5f;
+	}
+
+	/**
+	 * The distance between the first two fingers, no less than the controller's MIN_DIAM, and rounded down to 1/16 pixel (but no less than the
+	 * distance in x or y) as PointInfo.getMultiTouchDiameter() does with its fixed-point square root
+	 */
+	private double diam() {
+		if (numPointers == 1)
+			return MIN_DIAM;
+		float dx = Math.abs(xs[1] - xs[0]), dy = Math.abs(ys[1] - ys[0]);
+		double diam = Math.floor(Math.sqrt((int) (256 * (dx * dx + dy * dy)))) / 16.0;
+		return Math.max(MIN_DIAM, Math.max(diam, Math.max(dx, dy)));
+	}
+
+	/** The angle of the line from the first finger to the second, or 0 for one finger */
+	private double ang() {
+		return numPointers == 1 ? 0.0 : Math.atan2(ys[1] - ys[0], xs[1] - xs[0]);
+	}
+
+	/** Random numbers of fingers going down and up, with jitter, jumps and cancels */
+	private void chaosGesture() {
+		SoakObject chaosObj = canvas.chaosObj;
+		chaosObj.x = chaosObj.y = CHAOS_START;
+		chaosObj.scale = 1.0;
+		chaosObj.angle = 0.0f;
+		canvas.target = chaosObj;
+		canvas.anchored = false;
+		addPointer(randomChaosCoord(), randomChaosCoord());
+		int steps = 20 + random.nextInt(100);
+		for (int i = 0; i < steps && numPointers > 0; i++) {
+			int r = random.nextInt(100);
+			if (r < 5 && numPointers < MAX_CHAOS_POINTERS) {
+				addPointer(randomChaosCoord(), randomChaosCoord());
+			} else if (r < 9 && numPointers > 1) {
+				removePointer(random.nextInt(numPointers));
+			} else if (r < 10) {
+				// Cancel, which ends the gesture
+				sample(MotionEvent.ACTION_CANCEL, false);
+				numPointers = 0;
+				checkReleased("cancel");
+				return;
+			} else {
+				for (int f = 0; f < numPointers; f++) {
+					xs[f] = clampToChaosRange(xs[f] + (random.nextFloat() - 0.5f) * 16);
+					ys[f] = clampToChaosRange(ys[f] + (random.nextFloat() - 0.5f) * 16);
+				}
+				if (r < 13) {
+					// One pointer jumps for one sample, then comes back
+					int f = random.nextInt(numPointers);
+					float x = xs[f], y = ys[f];
+					xs[f] = clampToChaosRange(x + (random.nextFloat() - 0.5f) * 600);
+					ys[f] = clampToChaosRange(y + (random.nextFloat() - 0.5f) * 600);
+					sample(MotionEvent.ACTION_MOVE, true);
+					xs[f] = x;
+					ys[f] = y;
+				}
+				sample(MotionEvent.ACTION_MOVE, true);
+			}
+		}
+		while (numPointers > 0)
+			removePointer(numPointers - 1);
+	}
+
+	/** A random starting coordinate for a chaos finger, well inside the range */
+	private float randomChaosCoord() {
+		return CHAOS_START - 300 + random.nextInt(600);
+	}
+
+	private static float clampToChaosRange(float coord) {
+		return Math.max(CHAOS_START - CHAOS_FINGER_RANGE, Math.min(CHAOS_START + CHAOS_FINGER_RANGE, coord));
+	}
+
+	/** Put down a new finger at the given point */
+	private void addPointer(float x, float y) {
+		int idx = numPointers++;
+		xs[idx] = x;
+		ys[idx] = y;
+		ptrIds[idx] = nextPtrId++;
+		sample(idx == 0 ? MotionEvent.ACTION_DOWN : ACTION_POINTER_DOWN | (idx << ACTION_POINTER_INDEX_SHIFT), true);
+	}
+
+	/** Lift the finger at the given index */
+	private void removePointer(int idx) {
+		sample(numPointers == 1 ? MotionEvent.ACTION_UP : ACTION_POINTER_UP | (idx << ACTION_POINTER_INDEX_SHIFT), false);
+		for (int i = idx; i < numPointers - 1; i++) {
+			xs[i] = xs[i + 1];
+			ys[i] = ys[i + 1];
+			ptrIds[i] = ptrIds[i + 1];
+		}
+		numPointers--;
+		if (numPointers == 0)
+			checkReleased("last pointer up");
+	}
+
+	/** Send the current positions again for the given number of samples */
+	private void hold(int numSamples) {
+		for (int i = 0; i < numSamples; i++)
+			sample(MotionEvent.ACTION_MOVE, true);
+	}
+
+	/** Feed the current sample to the controller and check the invariants that must hold after it. down must be false for the up actions. */
+	private void sample(int action, boolean down) {
+		eventTime += SAMPLE_INTERVAL;
+		result.samples++;
+		double prevChaosScale = canvas.chaosObj.scale;
+		MotionEvent event = events.obtain(action, eventTime, numPointers, ptrIds, xs, ys, pressures);
+		if (!controller.onTouchEvent(event))
+			result.fail(gesture, "onTouchEvent() failed");
+		event.recycle();
+		if (canvas.badXform != null) {
+			result.fail(gesture, canvas.badXform);
+			canvas.badXform = null;
+		}
+		if (down && (controller.getMode() == MultiTouchController.MODE_NOTHING || canvas.selected == null))
+			result.fail(gesture, "nothing selected with " + numPointers + " pointers down");
+		if (canvas.target == canvas.chaosObj)
+			checkChaosBound(canvas.chaosObj, prevChaosScale);
+	}
+
+	/**
+	 * Chaos gestures: check that the object has not run away from the fingers. Between anchors (fingers going down or up, settle windows and
+	 * rejected jumps, each of which reads the object's transform back with getPositionAndScale()), the controller keeps the object's offset from
+	 * the fingers' midpoint equal to its offset at the anchor times the change in scale since then (by the previous sample's scale, see
+	 * performDragOrPinch()), so the distance may only grow as fast as the scale. With the fingers within CHAOS_FINGER_RANGE of CHAOS_START and the
+	 * scale below MAX_SCALE, that keeps the object within reach of the screen. Transforms that the canvas refuses would break the relation, but
+	 * chaos gestures stay well inside MIN_SCALE to MAX_SCALE. Only checked while the object is held.
+	 */
+	private void checkChaosBound(SoakObject obj, double prevScale) {
+		double dist = Math.max(Math.abs(obj.x - midX()), Math.abs(obj.y - midY()));
+		if (canvas.anchored) {
+			canvas.anchored = false;
+			chaosAnchorDist = dist;
+			chaosAnchorScale = obj.scale;
+		}
+		result.chaosOffset = Math.max(result.chaosOffset, Math.max(Math.abs(obj.x - CHAOS_START), Math.abs(obj.y - CHAOS_START)));
+		if (controller.getMode() == MultiTouchController.MODE_NOTHING)
+			// Released (the fingers may still be down after a pointer went up, but they no longer hold the object until it is picked up again)
+			return;
+		double bound = chaosAnchorDist * Math.max(obj.scale, prevScale) / chaosAnchorScale + MAX_POS_ERROR;
+		if (dist > bound)
+			result.fail(gesture, "chaos gesture moved object away from the fingers: " + dist + " px from their midpoint, bound " + bound + " px");
+	}
+
+	private void checkReleased(String when) {
+		if (controller.getMode() != MultiTouchController.MODE_NOTHING || canvas.selected != null)
+			result.fail(gesture, "still in mode " + controller.getMode() + " after " + when);
+	}
+
+	// ------------------------------------------------------------------------------------
+
+	/** A draggable object; position and scale in double, so that the canvas itself adds no rounding in high-precision mode */
+	private static class SoakObject {
+		double x = 400, y = 400, scale = 1.0;
+
+		float angle;
+	}
+
+	/**
+	 * A canvas with three objects, any of which is grabbed by any touch depending on the gesture being run. Checks each transform it is given,
+	 * then, like a real canvas, refuses it if the scale is out of range.
+	 */
+	private static class SoakCanvas implements MultiTouchObjectCanvas<Object> {
+		private final SoakObject loopObj = new SoakObject(), openObj = new SoakObject(), chaosObj = new SoakObject();
+
+		private SoakObject target, selected;
+
+		private boolean highPrecision;
+
+		/** Description of the last invalid transform passed to setPositionAndScale(), or null */
+		private String badXform;
+
+		/** Whether getPositionAndScale() has been called, i.e. the controller has anchored the drag/pinch, since this was last cleared */
+		private boolean anchored;
+
+		public Object getDraggableObjectAtPoint(PointInfo touchPoint) {
+			return target;
+		}
+
+		public void getPositionAndScale(Object obj, PositionAndScale objPosAndScaleOut) {
+			SoakObject o = (SoakObject) obj;
+			anchored = true;
+			if (highPrecision)
+				objPosAndScaleOut.setPrecise(o.x, o.y, true, o.scale, false, (float) o.scale, (float) o.scale, true, o.angle);
+			else
+				objPosAndScaleOut.set((float) o.x, (float) o.y, true, (float) o.scale, false, (float) o.scale, (float) o.scale, true, o.angle);
+		}
+
+		public boolean setPositionAndScale(Object obj, PositionAndScale newObjPosAndScale, PointInfo touchPoint) {
+			SoakObject o = (SoakObject) obj;
+			double x = highPrecision ? newObjPosAndScale.getXOffPrecise() : newObjPosAndScale.getXOff();
+			double y = highPrecision ? newObjPosAndScale.getYOffPrecise() : newObjPosAndScale.getYOff();
+			double scale = highPrecision ? newObjPosAndScale.getScalePrecise() : newObjPosAndScale.getScale();
+			float angle = newObjPosAndScale.getAngle();
+			if (Double.isNaN(x) || Double.isInfinite(x) || Double.isNaN(y) || Double.isInfinite(y) || Double.isNaN(scale)
+					|| Double.isInfinite(scale) || !(scale > 0.0) || Float.isNaN(angle) || Float.isInfinite(angle)) {
+				badXform = "bad transform: x " + x + ", y " + y + ", scale " + scale + ", angle " + angle;
+				return false;
+			}
+			if (scale < MIN_SCALE || scale > MAX_SCALE)
+				return false;
+			o.x = x;
+			o.y = y;
+			o.scale = scale;
+			o.angle = angle;
+			return true;
+		}
+
+		public void selectObject(Object obj, PointInfo touchPoint) {
+			selected = (SoakObject) obj;
+		}
+	}
+}
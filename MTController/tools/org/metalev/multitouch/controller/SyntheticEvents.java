@@ -0,0 +1,89 @@
+package org.metalev.multitouch.controller;
+
+/**
+ * SyntheticEvents.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Builds MotionEvents from arrays of pointer ids and coordinates, for the tools that drive MultiTouchController, or the sample views built on it,
+ * through onTouchEvent() without a touch screen. Needs Android 4.0 (API level 14) or later for MotionEvent.obtain() with PointerProperties, even
+ * though the controller itself does not, or the plain-Java stand-in for MotionEvent in tools/android-standin.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.MotionEvent.PointerCoords;
+import android.view.MotionEvent.PointerProperties;
+
+public class SyntheticEvents {
+	private PointerProperties[] props = new PointerProperties[0];
+
+	private PointerCoords[] coords = new PointerCoords[0];
+
+	/** Event time of the last ACTION_DOWN */
+	private long downTime;
+
+	/**
+	 * Obtain an event with one sample of numPointers pointers. action is a MotionEvent action, with the pointer index shifted in for
+	 * ACTION_POINTER_DOWN and ACTION_POINTER_UP. The caller should recycle() the event once it has been dispatched.
+	 */
+	public MotionEvent obtain(int action, long eventTime, int numPointers, int[] ptrIds, float[] xs, float[] ys, float[] pressures) {
+		if (action == MotionEvent.ACTION_DOWN)
+			downTime = eventTime;
+		ensureCapacity(numPointers);
+		for (int i = 0; i < numPointers; i++) {
+			props[i].id = ptrIds[i];
+			props[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+		}
+		setCoords(numPointers, xs, ys, pressures);
+		return MotionEvent.obtain(downTime, eventTime, action, numPointers, props, coords, 0, 0, 1.0f, 1.0f, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+	}
+
+	/** Add a later sample of the same pointers to an ACTION_MOVE event, pushing its current sample into the event's history */
+	public void addBatch(MotionEvent event, long eventTime, int numPointers, float[] xs, float[] ys, float[] pressures) {
+		ensureCapacity(numPointers);
+		setCoords(numPointers, xs, ys, pressures);
+		event.addBatch(eventTime, coords, 0);
+	}
+
+	private void setCoords(int numPointers, float[] xs, float[] ys, float[] pressures) {
+		for (int i = 0; i < numPointers; i++) {
+			coords[i].x = xs[i];
+			coords[i].y = ys[i];
+			coords[i].pressure = pressures[i];
+		}
+	}
+
+	private void ensureCapacity(int numPointers) {
+		if (numPointers > props.length) {
+			PointerProperties[] newProps = new PointerProperties[numPointers];
+			PointerCoords[] newCoords = new PointerCoords[numPointers];
+			System.arraycopy(props, 0, newProps, 0, props.length);
+			System.arraycopy(coords, 0, newCoords, 0, coords.length);
+			for (int i = props.length; i < numPointers; i++) {
+				newProps[i] = new PointerProperties();
+				newCoords[i] = new PointerCoords();
+			}
+			props = newProps;
+			coords = newCoords;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package org.metalev.multitouch.controller;
+
+/**
+ * TwoFingerBenchmark.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Measures the per-event cost of a 2-finger pinch in MultiTouchController.onTouchEvent(), the path that every real MotionEvent takes: builds a
+ * pinch of ACTION_MOVE events, each batching several samples as the touch screen does, and replays it many times against a canvas that does
+ * nothing but store the transform. Only the controller's public API is used, so the same file can be run against an older version of the
+ * controller to compare the two: tools/run.sh runs it on a JVM, built against this controller or, with CONTROLLER_SRC set, another one. It can
+ * also be run on a device (see SoakHarness), which is the place to measure absolute costs.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+import org.metalev.multitouch.controller.MultiTouchController.MultiTouchObjectCanvas;
+import org.metalev.multitouch.controller.MultiTouchController.PointInfo;
+import org.metalev.multitouch.controller.MultiTouchController.PositionAndScale;
+
+import android.view.MotionEvent;
+
+public class TwoFingerBenchmark {
+
+	/** ACTION_MOVE events in the pinch, and samples batched into each, as for a 240Hz touch sensor read at 60Hz */
+	private static final int MOVE_EVENTS = 1000, SAMPLES_PER_EVENT = 4;
+
+	/** Time between samples (ms) */
+	private static final long SAMPLE_INTERVAL = 4;
+
+	/** Time (ms) to wait after the second finger goes down, to get past the controller's settle window */
+	private static final long SETTLE_TIME = 40;
+
+	/** Number of timed runs; the fastest is reported */
+	private static final int RUNS = 5;
+
+	/** Usage: TwoFingerBenchmark [replaysPerRun]. Prints the fastest of RUNS runs, after an untimed warm-up run. */
+	public static void main(String[] args) {
+		int replays = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		TwoFingerBenchmark benchmark = new TwoFingerBenchmark();
+		benchmark.run(replays);
+		long bestNanos = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++)
+			bestNanos = Math.min(bestNanos, benchmark.run(replays));
+		long events = (long) replays * benchmark.events.length;
+		System.out.println("2-finger onTouchEvent(): " + (double) bestNanos / events + " ns/event (" + SAMPLES_PER_EVENT + " samples each), "
+				+ (long) (events * 1e9 / bestNanos) + " events/s, best of " + RUNS + " runs of " + events + " events");
+	}
+
+	// ------------------------------------------------------------------------------------
+
+	private final BenchmarkCanvas canvas = new BenchmarkCanvas();
+
+	private final MultiTouchController<Object> controller = new MultiTouchController<Object>(canvas);
+
+	/** The pinch: ACTION_DOWN, ACTION_POINTER_DOWN, MOVE_EVENTS ACTION_MOVEs, ACTION_POINTER_UP, ACTION_UP */
+	private final MotionEvent[] events = new MotionEvent[MOVE_EVENTS + 4];
+
+	private TwoFingerBenchmark() {
+		SyntheticEvents synth = new SyntheticEvents();
+		int[] ptrIds = { 0, 1 };
+		float[] xs = new float[2], ys = new float[2], pressures = { 1.0f, 1.0f };
+		long eventTime = 0;
+		int n = 0;
+		setFingers(0, xs, ys);
+		events[n++] = synth.obtain(MotionEvent.ACTION_DOWN, eventTime, 1, ptrIds, xs, ys, pressures);
+		eventTime += SAMPLE_INTERVAL;
+		events[n++] = synth.obtain(MotionEvent.ACTION_POINTER_DOWN | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT), eventTime, 2, ptrIds, xs, ys,
+				pressures);
+		eventTime += SETTLE_TIME;
+		int sample = 0;
+		for (int i = 0; i < MOVE_EVENTS; i++) {
+			MotionEvent event = null;
+			for (int j = 0; j < SAMPLES_PER_EVENT; j++, eventTime += SAMPLE_INTERVAL) {
+				setFingers(++sample, xs, ys);
+				if (event == null)
+					event = synth.obtain(MotionEvent.ACTION_MOVE, eventTime, 2, ptrIds, xs, ys, pressures);
+				else
+					synth.addBatch(event, eventTime, 2, xs, ys, pressures);
+			}
+			events[n++] = event;
+		}
+		events[n++] = synth.obtain(MotionEvent.ACTION_POINTER_UP | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT), eventTime, 2, ptrIds, xs, ys,
+				pressures);
+		events[n++] = synth.obtain(MotionEvent.ACTION_UP, eventTime + SAMPLE_INTERVAL, 1, ptrIds, xs, ys, pressures);
+	}
+
+	/** Two fingers circling and pinching in and out slowly, so that no sample is rejected as a jump or clamped to the minimum separation */
+	private static void setFingers(int sample, float[] xs, float[] ys) {
+		double t = sample * 0.01;
+		float r = (float) (150 + 50 * Math.sin(t * 0.3));
+		float cx = 400 + (float) (100 * Math.cos(t * 0.1)), cy = 400;
+		xs[0] = cx + r * (float) Math.cos(t);
+		ys[0] = cy + r * (float) Math.sin(t);
+		xs[1] = cx - r * (float) Math.cos(t);
+		ys[1] = cy - r * (float) Math.sin(t);
+	}
+
+	/** Replay the pinch the given number of times, returning the elapsed time in ns */
+	private long run(int replays) {
+		long startTime = System.nanoTime();
+		for (int i = 0; i < replays; i++)
+			for (int j = 0; j < events.length; j++)
+				controller.onTouchEvent(events[j]);
+		long elapsedNanos = System.nanoTime() - startTime;
+		if (canvas.xforms == 0)
+			throw new IllegalStateException("the controller did not move the object");
+		return elapsedNanos;
+	}
+
+	// ------------------------------------------------------------------------------------
+
+	/** A canvas with one object covering the whole screen, which just stores the transforms it is given */
+	private static class BenchmarkCanvas implements MultiTouchObjectCanvas<Object> {
+		private final Object obj = new Object();
+
+		private float x, y, scale = 1.0f, angle;
+
+		private long xforms;
+
+		public Object getDraggableObjectAtPoint(PointInfo touchPoint) {
+			return obj;
+		}
+
+		public void getPositionAndScale(Object obj, PositionAndScale objPosAndScaleOut) {
+			objPosAndScaleOut.set(x, y, true, scale, false, scale, scale, true, angle);
+		}
+
+		public boolean setPositionAndScale(Object obj, PositionAndScale newObjPosAndScale, PointInfo touchPoint) {
+			x = newObjPosAndScale.getXOff();
+			y = newObjPosAndScale.getYOff();
+			scale = newObjPosAndScale.getScale();
+			angle = newObjPosAndScale.getAngle();
+			xforms++;
+			return true;
+		}
+
+		public void selectObject(Object obj, PointInfo touchPoint) {
+			if (obj != null) {
+				// Start every replay from the same transform, so the scale doesn't run away
+				x = y = angle = 0.0f;
+				scale = 1.0f;
+			}
+		}
+	}
+}
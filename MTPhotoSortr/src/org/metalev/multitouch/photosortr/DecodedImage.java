@@ -0,0 +1,119 @@
+/**
+ * DecodedImage.java
+ *
+ * (c) Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.metalev.multitouch.photosortr;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+/**
+ * An image resource decoded once and shared by every Img that shows it, together with a chain of mip levels (each half the size of the one
+ * before), so that small or fast-moving images can be drawn from a bitmap close to their size on screen rather than from the full image, and a
+ * low-resolution 1-bit mask of which parts of the image are opaque, for hit testing without reading bitmap pixels.
+ */
+class DecodedImage {
+	/** The mip chain stops once both dimensions are at most this many pixels */
+	private static final int MIN_MIP_SIZE = 32;
+
+	/** The occupancy mask is built from the smallest mip level that is at least this many pixels in both dimensions */
+	private static final int MASK_SIZE = 64;
+
+	/** Pixels with at least this alpha count as opaque in the occupancy mask */
+	private static final int MASK_ALPHA_THRESHOLD = 128;
+
+	/** mips[0] is the full-size image */
+	private final Bitmap[] mips;
+
+	/** One bit per mask pixel, row by row, set where the image is opaque; null if the image has no alpha channel */
+	private final long[] mask;
+
+	private final int maskWidth, maskHeight;
+
+	DecodedImage(Resources res, int resId) {
+		Bitmap full = BitmapFactory.decodeResource(res, resId);
+		int numLevels = 1;
+		for (int w = full.getWidth(), h = full.getHeight(); w > MIN_MIP_SIZE || h > MIN_MIP_SIZE; w /= 2, h /= 2)
+			numLevels++;
+		mips = new Bitmap[numLevels];
+		mips[0] = full;
+		for (int i = 1; i < numLevels; i++)
+			mips[i] = Bitmap.createScaledBitmap(mips[i - 1], Math.max(1, mips[i - 1].getWidth() / 2), Math.max(1, mips[i - 1].getHeight() / 2),
+					true);
+
+		if (full.hasAlpha()) {
+			int level = mips.length - 1;
+			while (level > 0 && (mips[level].getWidth() < MASK_SIZE || mips[level].getHeight() < MASK_SIZE))
+				level--;
+			Bitmap maskSource = mips[level];
+			maskWidth = maskSource.getWidth();
+			maskHeight = maskSource.getHeight();
+			int[] pixels = new int[maskWidth * maskHeight];
+			maskSource.getPixels(pixels, 0, maskWidth, 0, 0, maskWidth, maskHeight);
+			mask = new long[(pixels.length + 63) / 64];
+			for (int i = 0; i < pixels.length; i++)
+				if ((pixels[i] >>> 24) >= MASK_ALPHA_THRESHOLD)
+					mask[i >> 6] |= 1L << (i & 63);
+		} else {
+			mask = null;
+			maskWidth = maskHeight = 0;
+		}
+	}
+
+	/**
+	 * Whether the image is opaque at the given point, in coords relative to the image (0,0 is the top left corner and 1,1 the bottom right).
+	 * Points outside the image are not opaque.
+	 */
+	boolean isOpaqueAt(float u, float v) {
+		if (u < 0.0f || u >= 1.0f || v < 0.0f || v >= 1.0f)
+			return false;
+		if (mask == null)
+			return true;
+		int i = (int) (v * maskHeight) * maskWidth + (int) (u * maskWidth);
+		return (mask[i >> 6] & (1L << (i & 63))) != 0;
+	}
+
+	/** Width of the full-size image */
+	int getWidth() {
+		return mips[0].getWidth();
+	}
+
+	/** Height of the full-size image */
+	int getHeight() {
+		return mips[0].getHeight();
+	}
+
+	/** The smallest mip level that is at least drawnWidth pixels wide, or the full-size image if none is smaller */
+	Bitmap getMip(float drawnWidth) {
+		for (int i = mips.length - 1; i > 0; i--)
+			if (mips[i].getWidth() >= drawnWidth)
+				return mips[i];
+		return mips[0];
+	}
+
+	/** Free the bitmaps. The image must not be drawn after this. */
+	void recycle() {
+		for (int i = 0; i < mips.length; i++)
+			mips[i].recycle();
+	}
+}
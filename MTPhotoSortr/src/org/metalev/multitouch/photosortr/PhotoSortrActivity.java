@@ -23,6 +23,8 @@
  */
 package org.metalev.multitouch.photosortr;
 
+import java.lang.reflect.Method;
+
 import android.app.Activity;
 import android.os.Bundle;
 import android.view.KeyEvent;
@@ -31,14 +33,35 @@ public class PhotoSortrActivity extends Activity {
 	
 	PhotoSortrView photoSorter;
 	
+	/** Whether the scene has been handed over for the next instance, so must not be closed in onDestroy() */
+	private boolean sceneRetained;
+	
+	/** Activity.isChangingConfigurations(), which is only available on Android 3.0+ */
+	private static Method m_isChangingConfigurations;
+	
+	static {
+		try {
+			m_isChangingConfigurations = Activity.class.getMethod("isChangingConfigurations");
+		} catch (Exception e) {
+			// Older Android: images are decoded again after a rotation, but the scene is still retained
+		}
+	}
+	
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 		this.setTitle(R.string.instructions);
-		photoSorter = new PhotoSortrView(this);
+		// Carry on with the scene of the instance destroyed by a configuration change, if any
+		photoSorter = new PhotoSortrView(this, (PhotoSortrView.RetainedScene) getLastNonConfigurationInstance());
 		setContentView(photoSorter);
 	}
 	
+	@Override
+	public Object onRetainNonConfigurationInstance() {
+		sceneRetained = true;
+		return photoSorter.retainScene();
+	}
+	
 	@Override
 	protected void onResume() {
 		super.onResume();
@@ -48,7 +71,29 @@ public class PhotoSortrActivity extends Activity {
 	@Override
 	protected void onPause() {
 		super.onPause();
-		photoSorter.unloadImages();
+		// Keep the decoded images if they are about to be handed to the next instance
+		if (!isChangingConfigurationsCompat())
+			photoSorter.unloadImages();
+	}
+	
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		// Unless the scene is about to be handed to the next instance, write out the last changes and stop the scene writer thread. The retained
+		// scene (and its store) is closed when the last instance using it is destroyed. sceneRetained covers Android versions before 3.0, which
+		// have no isChangingConfigurations().
+		if (!sceneRetained && !isChangingConfigurationsCompat())
+			photoSorter.close();
+	}
+	
+	private boolean isChangingConfigurationsCompat() {
+		if (m_isChangingConfigurations == null)
+			return false;
+		try {
+			return (Boolean) m_isChangingConfigurations.invoke(this);
+		} catch (Exception e) {
+			return false;
+		}
 	}
 	
 	@Override
@@ -56,6 +101,19 @@ public class PhotoSortrActivity extends Activity {
 		if (keyCode == KeyEvent.KEYCODE_DPAD_CENTER) {
 			photoSorter.trackballClicked();
 			return true;
+		} else if (keyCode == KeyEvent.KEYCODE_MENU) {
+			photoSorter.toggleLassoMode();
+			return true;
+		} else if (keyCode == KeyEvent.KEYCODE_DPAD_LEFT) {
+			photoSorter.undo();
+			return true;
+		} else if (keyCode == KeyEvent.KEYCODE_DPAD_RIGHT) {
+			photoSorter.redo();
+			return true;
+		} else if (keyCode >= KeyEvent.KEYCODE_0 && keyCode <= KeyEvent.KEYCODE_9) {
+			// Number keys scrub through the history, from 0 (oldest) to 9 (newest)
+			photoSorter.scrubHistory((keyCode - KeyEvent.KEYCODE_0) / 9.0f);
+			return true;
 		}
 		return super.onKeyDown(keyCode, event);
 	}
@@ -0,0 +1,63 @@
+/**
+ * PhotoSortrSurfaceActivity.java
+ * 
+ * (c) Luke Hutchison (luke.hutch@mit.edu)
+ * 
+ * --
+ * 
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ * 
+ * MIT license: http://www.opensource.org/licenses/MIT
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.metalev.multitouch.photosortr;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.KeyEvent;
+
+/** Variant of PhotoSortrActivity that draws on a dedicated render thread, see PhotoSortrSurfaceView */
+public class PhotoSortrSurfaceActivity extends Activity {
+	
+	PhotoSortrSurfaceView photoSorter;
+	
+	@Override
+	public void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		this.setTitle(R.string.instructions);
+		photoSorter = new PhotoSortrSurfaceView(this);
+		setContentView(photoSorter);
+	}
+	
+	@Override
+	protected void onResume() {
+		super.onResume();
+		photoSorter.loadImages(this);
+	}
+	
+	@Override
+	protected void onPause() {
+		super.onPause();
+		photoSorter.unloadImages();
+	}
+	
+	@Override
+	public boolean onKeyDown(int keyCode, KeyEvent event) {
+		if (keyCode == KeyEvent.KEYCODE_DPAD_CENTER) {
+			photoSorter.trackballClicked();
+			return true;
+		}
+		return super.onKeyDown(keyCode, event);
+	}
+}
\ No newline at end of file
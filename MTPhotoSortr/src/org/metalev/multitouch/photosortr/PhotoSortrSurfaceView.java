@@ -0,0 +1,373 @@
+/**
+ * PhotoSortrSurfaceView.java
+ *
+ * (c) Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * A version of PhotoSortrView that renders on a dedicated render thread into a SurfaceView, rather than in View.onDraw() on the UI thread. Touch
+ * events are processed by the MultiTouchController on the UI thread as usual; the resulting scene is published to the render thread through a
+ * lock-free triple buffer, so a slow frame never delays input handling, and touch processing overlaps with drawing.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.metalev.multitouch.photosortr;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.metalev.multitouch.controller.MultiTouchController;
+import org.metalev.multitouch.controller.MultiTouchController.MultiTouchObjectCanvas;
+import org.metalev.multitouch.controller.MultiTouchController.PointInfo;
+import org.metalev.multitouch.controller.MultiTouchController.PositionAndScale;
+import org.metalev.multitouch.photosortr.PhotoSortrView.Img;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Paint.Style;
+import android.graphics.drawable.Drawable;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+public class PhotoSortrSurfaceView extends SurfaceView implements SurfaceHolder.Callback, MultiTouchObjectCanvas<Img> {
+
+	private ArrayList<Img> mImages = new ArrayList<Img>();
+
+	// --
+
+	private MultiTouchController<Img> multiTouchController = new MultiTouchController<Img>(this);
+
+	// --
+
+	private PointInfo currTouchPoint = new PointInfo();
+
+	private boolean mShowDebugInfo = true;
+
+	private int mUIMode = PhotoSortrView.UI_MODE_ROTATE;
+
+	// --
+
+	/**
+	 * Triple buffer of scene snapshots. The UI thread fills mFrames[mBackFrameIdx] and then swaps it with the middle frame; the render thread swaps
+	 * the middle frame with mFrames[mFrontFrameIdx] whenever the FRAME_DIRTY bit is set. Neither thread ever waits for the other.
+	 */
+	private final Frame[] mFrames = { new Frame(), new Frame(), new Frame() };
+
+	/** Index of the frame owned by the UI thread */
+	private int mBackFrameIdx = 0;
+
+	/** Index of the frame owned by the render thread */
+	private int mFrontFrameIdx = 1;
+
+	/** Index of the frame in transit between the two threads, ORed with FRAME_DIRTY if it has not yet been drawn */
+	private final AtomicInteger mMiddleFrameIdx = new AtomicInteger(2);
+
+	private static final int FRAME_IDX_MASK = 3, FRAME_DIRTY = 4;
+
+	private RenderThread mRenderThread;
+
+	// --
+
+	/** Only accessed by the render thread */
+	private Paint mLinePaintTouchPointCircle = new Paint();
+
+	// ---------------------------------------------------------------------------------------------------
+
+	public PhotoSortrSurfaceView(Context context) {
+		this(context, null);
+	}
+
+	public PhotoSortrSurfaceView(Context context, AttributeSet attrs) {
+		this(context, attrs, 0);
+	}
+
+	public PhotoSortrSurfaceView(Context context, AttributeSet attrs, int defStyle) {
+		super(context, attrs, defStyle);
+		init(context);
+	}
+
+	private void init(Context context) {
+		Resources res = context.getResources();
+		for (int i = 0; i < PhotoSortrView.IMAGES.length; i++)
+			mImages.add(new Img(PhotoSortrView.IMAGES[i], res));
+
+		mLinePaintTouchPointCircle.setColor(Color.YELLOW);
+		mLinePaintTouchPointCircle.setStrokeWidth(5);
+		mLinePaintTouchPointCircle.setStyle(Style.STROKE);
+		mLinePaintTouchPointCircle.setAntiAlias(true);
+
+		getHolder().addCallback(this);
+	}
+
+	/** Called by activity's onResume() method to load the images */
+	public void loadImages(Context context) {
+		Resources res = context.getResources();
+		int n = mImages.size();
+		for (int i = 0; i < n; i++)
+			mImages.get(i).load(res);
+		publishFrame();
+	}
+
+	/**
+	 * Called by activity's onPause() method to free memory used for loading the images. The render thread keeps its own references to the drawables
+	 * in the last frame it was handed, so this is safe to call while it is still running.
+	 */
+	public void unloadImages() {
+		int n = mImages.size();
+		for (int i = 0; i < n; i++)
+			mImages.get(i).unload();
+	}
+
+	public void trackballClicked() {
+		mUIMode = (mUIMode + 1) % 3;
+		publishFrame();
+	}
+
+	// ---------------------------------------------------------------------------------------------------
+
+	public void surfaceCreated(SurfaceHolder holder) {
+		mRenderThread = new RenderThread(holder);
+		mRenderThread.start();
+		publishFrame();
+	}
+
+	public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+		// The new surface has no content yet, so force a redraw
+		publishFrame();
+	}
+
+	public void surfaceDestroyed(SurfaceHolder holder) {
+		// The surface must not be touched after this method returns, so wait for the render thread to exit
+		RenderThread renderThread = mRenderThread;
+		mRenderThread = null;
+		renderThread.quit();
+		boolean interrupted = false;
+		while (renderThread.isAlive()) {
+			try {
+				renderThread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	// ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * Snapshot the scene into the back frame and hand it to the render thread. This replaces invalidate(): it is cheap enough to call on every touch
+	 * event, and if the render thread is busy, intermediate frames are simply overwritten rather than queued.
+	 */
+	private void publishFrame() {
+		Frame frame = mFrames[mBackFrameIdx];
+		frame.setScene(mImages, mShowDebugInfo ? currTouchPoint : null);
+		mBackFrameIdx = mMiddleFrameIdx.getAndSet(mBackFrameIdx | FRAME_DIRTY) & FRAME_IDX_MASK;
+		RenderThread renderThread = mRenderThread;
+		if (renderThread != null)
+			LockSupport.unpark(renderThread);
+	}
+
+	/** Called on the render thread */
+	private void drawFrame(Canvas canvas, Frame frame) {
+		canvas.drawColor(Color.BLACK);
+		float[] bounds = frame.bounds;
+		for (int i = 0, j = 0; i < frame.numImages; i++, j += Frame.BOUNDS_STRIDE) {
+			Drawable drawable = frame.drawables[i];
+			if (drawable == null)
+				continue;
+			float minX = bounds[j], minY = bounds[j + 1], maxX = bounds[j + 2], maxY = bounds[j + 3], angle = bounds[j + 4];
+			float dx = (maxX + minX) / 2;
+			float dy = (maxY + minY) / 2;
+			canvas.save();
+			drawable.setBounds((int) minX, (int) minY, (int) maxX, (int) maxY);
+			canvas.translate(dx, dy);
+			canvas.rotate(angle * 180.0f / (float) Math.PI);
+			canvas.translate(-dx, -dy);
+			drawable.draw(canvas);
+			canvas.restore();
+		}
+		if (frame.isDown) {
+			int numPoints = frame.numPoints;
+			for (int i = 0; i < numPoints; i++)
+				canvas.drawCircle(frame.xs[i], frame.ys[i], 50 + frame.pressures[i] * 80, mLinePaintTouchPointCircle);
+			if (numPoints == 2)
+				canvas.drawLine(frame.xs[0], frame.ys[0], frame.xs[1], frame.ys[1], mLinePaintTouchPointCircle);
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------------------
+
+	/** Hold onto the controller's touch point for drawing the debug marks. The point is retained rather than copied. */
+	private void setCurrTouchPoint(PointInfo touchPoint) {
+		if (touchPoint != currTouchPoint) {
+			currTouchPoint.release();
+			touchPoint.retain();
+			currTouchPoint = touchPoint;
+		}
+	}
+
+	/** Pass touch events to the MT controller */
+	@Override
+	public boolean onTouchEvent(MotionEvent event) {
+		return multiTouchController.onTouchEvent(event);
+	}
+
+	/** Get the image that is under the single-touch point, or return null (canceling the drag op) if none */
+	public Img getDraggableObjectAtPoint(PointInfo pt) {
+		float x = pt.getX(), y = pt.getY();
+		int n = mImages.size();
+		for (int i = n - 1; i >= 0; i--) {
+			Img im = mImages.get(i);
+			if (im.containsPoint(x, y))
+				return im;
+		}
+		return null;
+	}
+
+	/** Select an object for dragging, or deselect it when img == null */
+	public void selectObject(Img img, PointInfo touchPoint) {
+		setCurrTouchPoint(touchPoint);
+		if (img != null) {
+			// Move image to the top of the stack when selected
+			mImages.remove(img);
+			mImages.add(img);
+		}
+		publishFrame();
+	}
+
+	/** Get the current position and scale of the selected image. Called whenever a drag starts or is reset. */
+	public void getPositionAndScale(Img img, PositionAndScale objPosAndScaleOut) {
+		objPosAndScaleOut.set(img.getCenterX(), img.getCenterY(), (mUIMode & PhotoSortrView.UI_MODE_ANISOTROPIC_SCALE) == 0,
+				(img.getScaleX() + img.getScaleY()) / 2, (mUIMode & PhotoSortrView.UI_MODE_ANISOTROPIC_SCALE) != 0, img.getScaleX(), img
+						.getScaleY(), (mUIMode & PhotoSortrView.UI_MODE_ROTATE) != 0, img.getAngle());
+	}
+
+	/** Set the position and scale of the dragged/stretched image. */
+	public boolean setPositionAndScale(Img img, PositionAndScale newImgPosAndScale, PointInfo touchPoint) {
+		setCurrTouchPoint(touchPoint);
+		boolean ok = img.setPos(newImgPosAndScale, mUIMode);
+		if (ok)
+			publishFrame();
+		return ok;
+	}
+
+	// ----------------------------------------------------------------------------------------------
+
+	/** An immutable-once-published snapshot of everything the render thread needs to draw one frame */
+	private static class Frame {
+		private static final int BOUNDS_STRIDE = 5;
+
+		private int numImages;
+
+		private Drawable[] drawables = new Drawable[0];
+
+		/** minX, minY, maxX, maxY, angle for each image, in drawing order */
+		private float[] bounds = new float[0];
+
+		private boolean isDown;
+
+		private int numPoints;
+
+		private float[] xs = new float[2], ys = new float[2], pressures = new float[2];
+
+		/** Called on the UI thread while this frame is owned by the UI thread. touchPoint is null if touch marks should not be drawn. */
+		private void setScene(ArrayList<Img> images, PointInfo touchPoint) {
+			int n = images.size();
+			if (drawables.length < n) {
+				// Only happens the first time a frame is filled
+				drawables = new Drawable[n];
+				bounds = new float[n * BOUNDS_STRIDE];
+			}
+			for (int i = 0, j = 0; i < n; i++, j += BOUNDS_STRIDE) {
+				Img img = images.get(i);
+				drawables[i] = img.getDrawable();
+				bounds[j] = img.getMinX();
+				bounds[j + 1] = img.getMinY();
+				bounds[j + 2] = img.getMaxX();
+				bounds[j + 3] = img.getMaxY();
+				bounds[j + 4] = img.getAngle();
+			}
+			numImages = n;
+			isDown = touchPoint != null && touchPoint.isDown();
+			if (isDown) {
+				numPoints = Math.min(touchPoint.getNumTouchPoints(), 2);
+				for (int i = 0; i < numPoints; i++) {
+					xs[i] = touchPoint.getXs()[i];
+					ys[i] = touchPoint.getYs()[i];
+					pressures[i] = touchPoint.getPressures()[i];
+				}
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------
+
+	/**
+	 * Draws the most recently published frame. Paced to the display refresh by lockCanvas()/unlockCanvasAndPost(), which block once the surface's
+	 * buffer queue is full, and parked while there is nothing new to draw.
+	 */
+	private class RenderThread extends Thread {
+		/** How long to wait before trying again when the surface can't be locked, e.g. while it is being resized */
+		private static final long LOCK_RETRY_NANOS = 10000000L;
+
+		private final SurfaceHolder holder;
+
+		private volatile boolean running = true;
+
+		RenderThread(SurfaceHolder holder) {
+			super("PhotoSortrRender");
+			this.holder = holder;
+		}
+
+		void quit() {
+			running = false;
+			LockSupport.unpark(this);
+		}
+
+		@Override
+		public void run() {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+			while (running) {
+				if ((mMiddleFrameIdx.get() & FRAME_DIRTY) == 0) {
+					// Nothing new to draw -- wait for publishFrame() or quit()
+					LockSupport.park(this);
+					continue;
+				}
+				// Lock the surface before taking the frame, so that the frame stays dirty (and is drawn on the next try) if the surface isn't ready
+				Canvas canvas = holder.lockCanvas();
+				if (canvas == null) {
+					LockSupport.parkNanos(this, LOCK_RETRY_NANOS);
+					continue;
+				}
+				mFrontFrameIdx = mMiddleFrameIdx.getAndSet(mFrontFrameIdx) & FRAME_IDX_MASK;
+				try {
+					drawFrame(canvas, mFrames[mFrontFrameIdx]);
+				} finally {
+					holder.unlockCanvasAndPost(canvas);
+				}
+			}
+		}
+	}
+}
@@ -25,7 +25,9 @@
  */
 package org.metalev.multitouch.photosortr;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.metalev.multitouch.controller.MultiTouchController;
 import org.metalev.multitouch.controller.MultiTouchController.MultiTouchObjectCanvas;
@@ -35,25 +37,118 @@ import org.metalev.multitouch.controller.MultiTouchController.PositionAndScale;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Paint.Style;
+import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
+import android.util.SparseArray;
 import android.view.MotionEvent;
 import android.view.View;
 
-public class PhotoSortrView extends View implements MultiTouchObjectCanvas<PhotoSortrView.Img> {
+public class PhotoSortrView extends View implements MultiTouchObjectCanvas<Object>, TransformJournal.Target, SceneStore.Receiver {
 
-	private static final int[] IMAGES = { R.drawable.m74hubble, R.drawable.catarina, R.drawable.tahiti, R.drawable.sunset, R.drawable.lake };
+	static final int[] IMAGES = { R.drawable.m74hubble, R.drawable.catarina, R.drawable.tahiti, R.drawable.sunset, R.drawable.lake };
 
+	/** Number of images in the scene; the images in IMAGES are used over and over */
+	private static final int SCENE_SIZE = 1000;
+
+	/** Width and height of the (square) world, in multiples of the larger screen dimension */
+	private static final int WORLD_SIZE_IN_SCREENS = 12;
+
+	/** Size of the cells of the grid used to find the images near the viewport or a touch point, in world coords */
+	private static final float GRID_CELL_SIZE = 512;
+
+	/** The range of camera zoom factors */
+	private static final float MIN_CAMERA_SCALE = 0.05f, MAX_CAMERA_SCALE = 4.0f;
+
+	/** A dragged image snaps to an edge or center line of a nearby image if it comes within this many screen pixels of it */
+	private static final float SNAP_DISTANCE = 24;
+
+	/** At most this many rounds of pushing a dropped image out of its neighbours, since a push can move it into another neighbour */
+	private static final int MAX_COLLIDE_PASSES = 4;
+
+	/** Lasso points closer together than this many screen pixels are skipped */
+	private static final float MIN_LASSO_SEGMENT = 8;
+
+	/** The images in the scene, indexed by id. Drawing order is given by mZOrders, not by position in this list. */
 	private ArrayList<Img> mImages = new ArrayList<Img>();
 
+	/** The z-order of each image, indexed by id; higher is drawn on top. Selecting an image gives it the next value of mNextZOrder. */
+	private int[] mZOrders = new int[0];
+
+	private int mNextZOrder;
+
+	/** Spatial index of the images in world coords */
+	private SceneGrid mGrid;
+
+	/** The pan and zoom of the whole scene, dragged by the controller when a touch does not hit any image */
+	private Camera mCamera = new Camera();
+
+	/** Lasso mode: dragging draws a lasso around a group of images, which can then be dragged, pinched and rotated together */
+	private boolean mLassoMode;
+
+	/** Lasso mode: the points of the lasso being drawn, in world coords (x0, y0, x1, y1, ...), and the number of floats used */
+	private float[] mLassoPoints = new float[256];
+
+	private int mLassoLength;
+
+	/** Marker object returned by getDraggableObjectAtPoint() while a lasso is being drawn */
+	private Object mLasso = new Object();
+
+	/** Lasso mode: the images selected by the last lasso */
+	private Group mGroup = new Group();
+
+	/** Memory used by the undo/redo journal */
+	private static final int JOURNAL_BYTE_BUDGET = 64 * 1024;
+
+	/**
+	 * During a gesture, the moved images' transforms are journaled this often (ms), so that seeking can show gestures in progress, until the
+	 * gesture has used up its share of the journal (see TransformJournal.canKeyframe())
+	 */
+	private static final long JOURNAL_KEYFRAME_INTERVAL = 250;
+
+	/** History of image moves, for undo/redo */
+	private TransformJournal mJournal = new TransformJournal(JOURNAL_BYTE_BUDGET, SystemClock.uptimeMillis());
+
+	/** The image or group whose gesture is being journaled, or null */
+	private Object mJournaledObj;
+
+	private long mLastKeyframeTime;
+
+	/** The file the layout of the scene is saved in, in the app's private files dir */
+	private static final String SCENE_FILE_NAME = "scene.bin";
+
+	/** Saves the layout of the scene as images are moved, and restores it on startup */
+	private SceneStore mSceneStore;
+
+	/** Whether every image has been written to mSceneStore (or restored from it), so that only moved images need saving */
+	private boolean mSceneSaved;
+
+	/** Sort keys (z-order in the high word, id in the low word) of the images found by the last grid query */
+	private long[] mSortKeys = new long[64];
+
+	/** Decoded bitmaps and mip levels, shared by all images with the same resource id */
+	private SparseArray<DecodedImage> mDecodedImages = new SparseArray<DecodedImage>();
+
+	/**
+	 * While a gesture is in progress, images are drawn from a mip level this many times smaller than their size on screen, without bitmap
+	 * filtering, and the debug marks are drawn without anti-aliasing. Full quality is restored on the first frame after the gesture ends.
+	 */
+	private static final float LOW_DETAIL_MIP_SCALE = 0.5f;
+
+	private Paint mBitmapPaint = new Paint(), mFastBitmapPaint = new Paint();
+
+	private RectF mDrawRect = new RectF();
+
 	// --
 
-	private MultiTouchController<Img> multiTouchController = new MultiTouchController<Img>(this);
+	private MultiTouchController<Object> multiTouchController = new MultiTouchController<Object>(this);
 
 	// --
 
@@ -61,7 +156,7 @@ public class PhotoSortrView extends View implements MultiTouchObjectCanvas<Photo
 
 	private boolean mShowDebugInfo = true;
 
-	private static final int UI_MODE_ROTATE = 1, UI_MODE_ANISOTROPIC_SCALE = 2;
+	static final int UI_MODE_ROTATE = 1, UI_MODE_ANISOTROPIC_SCALE = 2;
 
 	private int mUIMode = UI_MODE_ROTATE;
 
@@ -72,7 +167,7 @@ public class PhotoSortrView extends View implements MultiTouchObjectCanvas<Photo
 	// ---------------------------------------------------------------------------------------------------
 
 	public PhotoSortrView(Context context) {
-		this(context, null);
+		this(context, (AttributeSet) null);
 	}
 
 	public PhotoSortrView(Context context, AttributeSet attrs) {
@@ -81,34 +176,244 @@ public class PhotoSortrView extends View implements MultiTouchObjectCanvas<Photo
 
 	public PhotoSortrView(Context context, AttributeSet attrs, int defStyle) {
 		super(context, attrs, defStyle);
-		init(context);
+		init(context, null, SCENE_SIZE);
+	}
+
+	/**
+	 * A view that takes over the scene of a view destroyed by a configuration change (see retainScene()), rather than building a new one, or
+	 * builds a new one if retained is null.
+	 */
+	public PhotoSortrView(Context context, RetainedScene retained) {
+		super(context, null, 0);
+		init(context, retained, SCENE_SIZE);
 	}
 
-	private void init(Context context) {
+	/** A view with a new scene of sceneSize images rather than SCENE_SIZE, for benchmarking the drawing of small and large scenes */
+	PhotoSortrView(Context context, int sceneSize) {
+		super(context, null, 0);
+		init(context, null, sceneSize);
+	}
+
+	private void init(Context context, RetainedScene retained, int sceneSize) {
 		Resources res = context.getResources();
-		for (int i = 0; i < IMAGES.length; i++)
-			mImages.add(new Img(IMAGES[i], res));
+		DisplayMetrics metrics = res.getDisplayMetrics();
+		if (retained != null) {
+			adoptScene(retained, metrics);
+		} else {
+			float screenSize = Math.max(metrics.widthPixels, metrics.heightPixels);
+			float worldSize = screenSize * WORLD_SIZE_IN_SCREENS;
+			mGrid = new SceneGrid(worldSize, worldSize, GRID_CELL_SIZE);
+			populateScene(res, sceneSize, worldSize);
+			// Put the images back where they were when the app was last run, if the scene was saved
+			mSceneStore = new SceneStore(new File(context.getFilesDir(), SCENE_FILE_NAME));
+			mSceneSaved = mSceneStore.load(sceneSize, this);
+			// Start with the camera over the middle of the world
+			mCamera.set(metrics.widthPixels / 2 - worldSize / 2, metrics.heightPixels / 2 - worldSize / 2, 1.0f);
+			// Only move images once per display frame, however fast the touch sensor reports
+			multiTouchController.setFramePacedUpdates(true);
+		}
 
 		mLinePaintTouchPointCircle.setColor(Color.YELLOW);
 		mLinePaintTouchPointCircle.setStrokeWidth(5);
 		mLinePaintTouchPointCircle.setStyle(Style.STROKE);
 		mLinePaintTouchPointCircle.setAntiAlias(true);
+		mBitmapPaint.setFilterBitmap(true);
+		mFastBitmapPaint.setFilterBitmap(false);
 		setBackgroundColor(Color.BLACK);
 	}
 
+	/**
+	 * Everything a view needs to carry on where a view destroyed by a configuration change left off: the scene (with its decoded bitmaps, grid,
+	 * journal and store), the camera, the UI modes, and the controller and the touch point retained from it.
+	 * Returned by retainScene() for the activity to hand to its next instance.
+	 */
+	static class RetainedScene {
+		private ArrayList<Img> images;
+
+		private int[] zOrders;
+
+		private int nextZOrder;
+
+		private SceneGrid grid;
+
+		private Camera camera;
+
+		private boolean lassoMode;
+
+		private Object lasso;
+
+		private Group group;
+
+		private TransformJournal journal;
+
+		private SparseArray<DecodedImage> decodedImages;
+
+		private SceneStore sceneStore;
+
+		private boolean sceneSaved;
+
+		private int uiMode;
+
+		private MultiTouchController<Object> controller;
+
+		/** The touch point retained for drawing the debug marks, still retained (so not returned to the controller's pool) */
+		private PointInfo touchPoint;
+
+		/** The display size the camera was set up for */
+		private int widthPixels, heightPixels;
+	}
+
+	/**
+	 * Hand over the scene to be passed to the view created after a configuration change. Called from the activity's
+	 * onRetainNonConfigurationInstance(). This view must not be used afterwards.
+	 */
+	public RetainedScene retainScene() {
+		RetainedScene retained = new RetainedScene();
+		retained.images = mImages;
+		retained.zOrders = mZOrders;
+		retained.nextZOrder = mNextZOrder;
+		retained.grid = mGrid;
+		retained.camera = mCamera;
+		retained.lassoMode = mLassoMode;
+		retained.lasso = mLasso;
+		retained.group = mGroup;
+		retained.journal = mJournal;
+		retained.decodedImages = mDecodedImages;
+		retained.sceneStore = mSceneStore;
+		retained.sceneSaved = mSceneSaved;
+		retained.uiMode = mUIMode;
+		retained.controller = multiTouchController;
+		retained.touchPoint = currTouchPoint;
+		DisplayMetrics metrics = getResources().getDisplayMetrics();
+		retained.widthPixels = metrics.widthPixels;
+		retained.heightPixels = metrics.heightPixels;
+		return retained;
+	}
+
+	/**
+	 * Take over a retained scene. The world is sized by the larger screen dimension, so it and the image transforms in it are unchanged by a
+	 * rotation; only the camera is moved so that the world point that was in the middle of the old screen is in the middle of the new one. Images
+	 * that would then be out of the world are pulled back in when they are reloaded (by Img.place(), from the new metrics).
+	 */
+	private void adoptScene(RetainedScene retained, DisplayMetrics metrics) {
+		mImages = retained.images;
+		mZOrders = retained.zOrders;
+		mNextZOrder = retained.nextZOrder;
+		mGrid = retained.grid;
+		mCamera = retained.camera;
+		mCamera.set(mCamera.offX + (metrics.widthPixels - retained.widthPixels) / 2.0f, mCamera.offY + (metrics.heightPixels - retained.heightPixels)
+				/ 2.0f, mCamera.scale);
+		mLassoMode = retained.lassoMode;
+		// The controller may still have the old marker object selected
+		mLasso = retained.lasso;
+		mGroup = retained.group;
+		mJournal = retained.journal;
+		mDecodedImages = retained.decodedImages;
+		mSceneStore = retained.sceneStore;
+		mSceneSaved = retained.sceneSaved;
+		mUIMode = retained.uiMode;
+		multiTouchController = retained.controller;
+		multiTouchController.setObjectCanvas(this);
+		// Take over the old view's hold on its touch point, so that it is released (and returned to the controller's pool) in due course
+		currTouchPoint = retained.touchPoint;
+	}
+
+	/** Fill the scene with numImages images (cycling through IMAGES) scattered over a square world of the given size */
+	private void populateScene(Resources res, int numImages, float worldSize) {
+		mImages.clear();
+		mImages.ensureCapacity(numImages);
+		for (int i = 0; i < numImages; i++)
+			mImages.add(new Img(IMAGES[i % IMAGES.length], res, worldSize, i));
+		mZOrders = new int[numImages];
+		for (int i = 0; i < numImages; i++)
+			mZOrders[i] = i;
+		mNextZOrder = numImages;
+	}
+
 	/** Called by activity's onResume() method to load the images */
 	public void loadImages(Context context) {
 		Resources res = context.getResources();
 		int n = mImages.size();
+		for (int i = 0; i < n; i++) {
+			Img img = mImages.get(i);
+			DecodedImage image = mDecodedImages.get(img.getResId());
+			if (image == null) {
+				image = new DecodedImage(res, img.getResId());
+				mDecodedImages.put(img.getResId(), image);
+			}
+			img.load(res, image);
+			updateGrid(i, img);
+		}
+		if (!mSceneSaved) {
+			// First run: save the whole (random) layout, after which only moved images are rewritten
+			mSceneStore.setSceneSize(n);
+			for (int i = 0; i < n; i++)
+				saveImage(mImages.get(i));
+			mSceneStore.flush();
+			mSceneSaved = true;
+		}
+	}
+
+	/** Called by the scene store on startup with the saved layout of each image, before the images are loaded */
+	public void restore(int id, int imageIdx, int zOrder, float centerX, float centerY, float scaleX, float scaleY, float angle) {
+		if (imageIdx >= 0 && imageIdx < IMAGES.length)
+			mImages.get(id).restore(IMAGES[imageIdx], centerX, centerY, scaleX, scaleY, angle);
+		mZOrders[id] = zOrder;
+		mNextZOrder = Math.max(mNextZOrder, zOrder + 1);
+	}
+
+	/** Queue the current layout of an image to be saved at the next mSceneStore.flush() */
+	private void saveImage(Img img) {
+		int imageIdx = 0;
+		while (imageIdx < IMAGES.length - 1 && IMAGES[imageIdx] != img.getResId())
+			imageIdx++;
+		mSceneStore.update(img.getId(), imageIdx, mZOrders[img.getId()], img.getCenterX(), img.getCenterY(), img.getScaleX(), img.getScaleY(),
+				img.getAngle());
+	}
+
+	/** Update the grid entry of an image after it has moved */
+	private void updateGrid(int id, Img img) {
+		// Use the circle around the unrotated bounds, so that the entry also covers the image when it is rotated
+		float r = (float) Math.sqrt((img.getMaxX() - img.getMinX()) * (img.getMaxX() - img.getMinX()) + (img.getMaxY() - img.getMinY())
+				* (img.getMaxY() - img.getMinY())) / 2;
+		float cx = img.getCenterX(), cy = img.getCenterY();
+		mGrid.update(id, cx - r, cy - r, cx + r, cy + r);
+	}
+
+	/**
+	 * Find the images whose grid cells overlap the given box in world coords, and leave their sort keys in mSortKeys in ascending z-order. Returns
+	 * the number of images found.
+	 */
+	private int findImages(float minX, float minY, float maxX, float maxY) {
+		int n = mGrid.query(minX, minY, maxX, maxY);
+		int[] ids = mGrid.getResults();
+		if (mSortKeys.length < n)
+			mSortKeys = new long[Math.max(n, mSortKeys.length * 2)];
 		for (int i = 0; i < n; i++)
-			mImages.get(i).load(res);
+			mSortKeys[i] = ((long) mZOrders[ids[i]] << 32) | ids[i];
+		Arrays.sort(mSortKeys, 0, n);
+		return n;
 	}
 
-	/** Called by activity's onPause() method to free memory used for loading the images */
+	/**
+	 * Called by activity's onPause() method to free memory used for loading the images. Not called when the activity is only being recreated for
+	 * a configuration change, so that the decoded images are handed to the next view by retainScene() instead of being decoded again.
+	 */
 	public void unloadImages() {
 		int n = mImages.size();
 		for (int i = 0; i < n; i++)
 			mImages.get(i).unload();
+		for (int i = 0; i < mDecodedImages.size(); i++)
+			mDecodedImages.valueAt(i).recycle();
+		mDecodedImages.clear();
+	}
+
+	/**
+	 * Called by activity's onDestroy() method when the scene is not being handed to a new instance: finishes saving the scene and stops the thread
+	 * that writes it. The view must not be used afterwards.
+	 */
+	public void close() {
+		mSceneStore.close();
 	}
 
 	// ---------------------------------------------------------------------------------------------------
@@ -116,11 +421,30 @@ public class PhotoSortrView extends View implements MultiTouchObjectCanvas<Photo
 	@Override
 	protected void onDraw(Canvas canvas) {
 		super.onDraw(canvas);
-		int n = mImages.size();
-		for (int i = 0; i < n; i++)
-			mImages.get(i).draw(canvas);
-		if (mShowDebugInfo)
+		// Only draw the images in the grid cells that overlap the viewport
+		int n = findImages(mCamera.toWorldX(0), mCamera.toWorldY(0), mCamera.toWorldX(getWidth()), mCamera.toWorldY(getHeight()));
+		// Draw cheaply while a gesture is in progress
+		boolean lowDetail = multiTouchController.getMode() != MultiTouchController.MODE_NOTHING;
+		Paint bitmapPaint = lowDetail ? mFastBitmapPaint : mBitmapPaint;
+		canvas.save();
+		canvas.translate(mCamera.offX, mCamera.offY);
+		canvas.scale(mCamera.scale, mCamera.scale);
+		for (int i = 0; i < n; i++) {
+			Img img = mImages.get((int) mSortKeys[i]);
+			DecodedImage image = img.getDecodedImage();
+			if (image == null)
+				continue;
+			float drawnWidth = (img.getMaxX() - img.getMinX()) * mCamera.scale;
+			img.draw(canvas, image.getMip(lowDetail ? drawnWidth * LOW_DETAIL_MIP_SCALE : drawnWidth), bitmapPaint, mDrawRect);
+		}
+		canvas.restore();
+		if (mShowDebugInfo) {
+			mLinePaintTouchPointCircle.setAntiAlias(!lowDetail);
 			drawMultitouchDebugMarks(canvas);
+		}
+		for (int i = 2; i < mLassoLength; i += 2)
+			canvas.drawLine(mCamera.toScreenX(mLassoPoints[i - 2]), mCamera.toScreenY(mLassoPoints[i - 1]), mCamera.toScreenX(mLassoPoints[i]),
+					mCamera.toScreenY(mLassoPoints[i + 1]), mLinePaintTouchPointCircle);
 	}
 
 	// ---------------------------------------------------------------------------------------------------
@@ -130,6 +454,111 @@ public class PhotoSortrView extends View implements MultiTouchObjectCanvas<Photo
 		invalidate();
 	}
 
+	/**
+	 * Whether a touch is in progress. Undo, redo, scrubbing and switching lasso mode are ignored until it ends, since they would change the journal
+	 * and the group under the controller, which still holds the selected image or group.
+	 */
+	private boolean isTouchInProgress() {
+		return multiTouchController.getMode() != MultiTouchController.MODE_NOTHING;
+	}
+
+	/** Undo the last move of an image or group. Ignored while a touch is in progress. */
+	public void undo() {
+		if (isTouchInProgress())
+			return;
+		// The group's member transforms would be out of date
+		mGroup.clear();
+		if (mJournal.undo(this)) {
+			mSceneStore.flush();
+			invalidate();
+		}
+	}
+
+	/** Redo the last undone move. Ignored while a touch is in progress. */
+	public void redo() {
+		if (isTouchInProgress())
+			return;
+		mGroup.clear();
+		if (mJournal.redo(this)) {
+			mSceneStore.flush();
+			invalidate();
+		}
+	}
+
+	/**
+	 * Rewind or fast-forward the scene to how it was at the given fraction (0 to 1) of the way through the history in the journal. Ignored while a
+	 * touch is in progress.
+	 */
+	public void scrubHistory(float fraction) {
+		if (isTouchInProgress())
+			return;
+		mGroup.clear();
+		long start = mJournal.getStartTime(), end = mJournal.getEndTime();
+		mJournal.seek(start + (long) ((end - start) * fraction), this);
+		mSceneStore.flush();
+		invalidate();
+	}
+
+	/** Called by the journal to move an image when undoing, redoing or seeking */
+	public void setTransform(int id, float centerX, float centerY, float scaleX, float scaleY, float angle) {
+		Img img = mImages.get(id);
+		if (img.setPos(centerX, centerY, scaleX, scaleY, angle)) {
+			updateGrid(id, img);
+			saveImage(img);
+		}
+	}
+
+	/** Journal the start of a gesture on an image or group */
+	private void beginJournaling(Object obj, long eventTime) {
+		mJournaledObj = obj;
+		mLastKeyframeTime = eventTime;
+		if (obj instanceof Img) {
+			Img img = (Img) obj;
+			mJournal.begin(img.getId(), img.getCenterX(), img.getCenterY(), img.getScaleX(), img.getScaleY(), img.getAngle());
+		} else if (obj == mGroup) {
+			for (int i = 0; i < mGroup.size; i++) {
+				Img img = mImages.get(mGroup.ids[i]);
+				mJournal.begin(img.getId(), img.getCenterX(), img.getCenterY(), img.getScaleX(), img.getScaleY(), img.getAngle());
+			}
+		}
+	}
+
+	/** Journal the transforms of the images being moved: as keyframes (at most every JOURNAL_KEYFRAME_INTERVAL ms), or at the end of the gesture */
+	private void journal(long eventTime, boolean end) {
+		if (!end && eventTime - mLastKeyframeTime < JOURNAL_KEYFRAME_INTERVAL)
+			return;
+		mLastKeyframeTime = eventTime;
+		int n = mJournaledObj == mGroup ? mGroup.size : 1;
+		// Keyframe all of a group or none of it, so that seeking never shows it torn apart
+		if (!end && !mJournal.canKeyframe(n))
+			return;
+		for (int i = 0; i < n; i++) {
+			Img img = mJournaledObj == mGroup ? mImages.get(mGroup.ids[i]) : (Img) mJournaledObj;
+			if (end) {
+				mJournal.end(img.getId(), img.getCenterX(), img.getCenterY(), img.getScaleX(), img.getScaleY(), img.getAngle(), eventTime);
+				saveImage(img);
+			} else {
+				mJournal.keyframe(img.getId(), img.getCenterX(), img.getCenterY(), img.getScaleX(), img.getScaleY(), img.getAngle(), eventTime);
+			}
+		}
+		if (end) {
+			// Write the moved images in the background
+			mSceneStore.flush();
+			mJournal.endGesture();
+			mJournaledObj = null;
+		}
+	}
+
+	/** Switch lasso mode on or off. Switching it off clears the group. Ignored while a touch is in progress. */
+	public void toggleLassoMode() {
+		if (isTouchInProgress())
+			return;
+		mLassoMode = !mLassoMode;
+		mGroup.clear();
+		mLassoLength = 0;
+		invalidate();
+	}
+
 	private void drawMultitouchDebugMarks(Canvas canvas) {
 		if (currTouchPoint.isDown()) {
 			float[] xs = currTouchPoint.getXs();
@@ -145,77 +574,430 @@ public class PhotoSortrView extends View implements MultiTouchObjectCanvas<Photo
 
 	// ---------------------------------------------------------------------------------------------------
 
+	/** Hold onto the controller's touch point for drawing the debug marks. The point is retained rather than copied. */
+	private void setCurrTouchPoint(PointInfo touchPoint) {
+		if (touchPoint != currTouchPoint) {
+			currTouchPoint.release();
+			touchPoint.retain();
+			currTouchPoint = touchPoint;
+		}
+	}
+
 	/** Pass touch events to the MT controller */
 	@Override
 	public boolean onTouchEvent(MotionEvent event) {
 		return multiTouchController.onTouchEvent(event);
 	}
 
-	/** Get the image that is under the single-touch point, or return null (canceling the drag op) if none */
-	public Img getDraggableObjectAtPoint(PointInfo pt) {
-		float x = pt.getX(), y = pt.getY();
-		int n = mImages.size();
+	/**
+	 * Get the topmost image that is under the single-touch point, or the camera (to pan/zoom the whole scene) if there is none. In lasso mode, get
+	 * the group if the image is in it, otherwise start a new lasso.
+	 */
+	public Object getDraggableObjectAtPoint(PointInfo pt) {
+		float x = mCamera.toWorldX(pt.getX()), y = mCamera.toWorldY(pt.getY());
+		int n = findImages(x, y, x, y);
 		for (int i = n - 1; i >= 0; i--) {
-			Img im = mImages.get(i);
+			Img im = mImages.get((int) mSortKeys[i]);
 			if (im.containsPoint(x, y))
-				return im;
+				return mLassoMode ? (mGroup.contains(im.getId()) ? mGroup : mLasso) : im;
 		}
-		return null;
+		return mLassoMode ? mLasso : mCamera;
 	}
 
 	/**
 	 * Select an object for dragging. Called whenever an object is found to be under the point (non-null is returned by getDraggableObjectAtPoint())
 	 * and a drag operation is starting. Called with null when drag op ends.
 	 */
-	public void selectObject(Img img, PointInfo touchPoint) {
-		currTouchPoint.set(touchPoint);
-		if (img != null) {
+	public void selectObject(Object obj, PointInfo touchPoint) {
+		setCurrTouchPoint(touchPoint);
+		if (obj instanceof Img) {
 			// Move image to the top of the stack when selected
-			mImages.remove(img);
-			mImages.add(img);
-		} else {
-			// Called with img == null when drag stops.
+			mZOrders[((Img) obj).getId()] = mNextZOrder++;
+			beginJournaling(obj, touchPoint.getEventTime());
+		} else if (obj == mGroup) {
+			// Move the group to the top of the stack, keeping the order of its members
+			mNextZOrder = mGroup.raise(mZOrders, mNextZOrder);
+			beginJournaling(obj, touchPoint.getEventTime());
+		} else if (obj == null && mJournaledObj != null) {
+			journal(touchPoint.getEventTime(), true);
+		} else if (obj == mLasso) {
+			mLassoLength = 0;
+			addLassoPoint(touchPoint);
+		} else if (obj == null && mLassoLength > 0) {
+			// Lasso finished, select the images inside it
+			selectLassoedImages();
+			mLassoLength = 0;
 		}
 		invalidate();
 	}
 
-	/** Get the current position and scale of the selected image. Called whenever a drag starts or is reset. */
-	public void getPositionAndScale(Img img, PositionAndScale objPosAndScaleOut) {
+	/** Get the current position and scale of the selected image or the camera, in screen coords. Called whenever a drag starts or is reset. */
+	public void getPositionAndScale(Object obj, PositionAndScale objPosAndScaleOut) {
+		if (obj == mCamera || obj == mLasso) {
+			objPosAndScaleOut.set(mCamera.offX, mCamera.offY, true, mCamera.scale, false, mCamera.scale, mCamera.scale, false, 0.0f);
+			return;
+		} else if (obj == mGroup) {
+			float s = mCamera.scale;
+			objPosAndScaleOut.set(mCamera.toScreenX(mGroup.xOff), mCamera.toScreenY(mGroup.yOff), true, s * mGroup.scale, false, s * mGroup.scale,
+					s * mGroup.scale, (mUIMode & UI_MODE_ROTATE) != 0, mGroup.angle);
+			return;
+		}
+		Img img = (Img) obj;
+		float s = mCamera.scale;
 		// FIXME affine-izem (and fix the fact that the anisotropic_scale part requires averaging the two scale factors)
-		objPosAndScaleOut.set(img.getCenterX(), img.getCenterY(), (mUIMode & UI_MODE_ANISOTROPIC_SCALE) == 0,
-				(img.getScaleX() + img.getScaleY()) / 2, (mUIMode & UI_MODE_ANISOTROPIC_SCALE) != 0, img.getScaleX(), img.getScaleY(),
+		objPosAndScaleOut.set(mCamera.toScreenX(img.getCenterX()), mCamera.toScreenY(img.getCenterY()), (mUIMode & UI_MODE_ANISOTROPIC_SCALE) == 0,
+				s * (img.getScaleX() + img.getScaleY()) / 2, (mUIMode & UI_MODE_ANISOTROPIC_SCALE) != 0, s * img.getScaleX(), s * img.getScaleY(),
 				(mUIMode & UI_MODE_ROTATE) != 0, img.getAngle());
 	}
 
-	/** Set the position and scale of the dragged/stretched image. */
-	public boolean setPositionAndScale(Img img, PositionAndScale newImgPosAndScale, PointInfo touchPoint) {
-		currTouchPoint.set(touchPoint);
-		boolean ok = img.setPos(newImgPosAndScale);
+	/** Set the position and scale of the dragged/stretched image, or pan/zoom the camera. */
+	public boolean setPositionAndScale(Object obj, PositionAndScale newObjPosAndScale, PointInfo touchPoint) {
+		setCurrTouchPoint(touchPoint);
+		boolean ok;
+		if (obj == mCamera) {
+			float scale = newObjPosAndScale.getScale();
+			ok = scale >= MIN_CAMERA_SCALE && scale <= MAX_CAMERA_SCALE;
+			if (ok)
+				mCamera.set(newObjPosAndScale.getXOff(), newObjPosAndScale.getYOff(), scale);
+		} else if (obj == mLasso) {
+			ok = addLassoPoint(touchPoint);
+		} else if (obj == mGroup) {
+			// One callback for the whole group: move every member in one pass
+			mGroup.xOff = mCamera.toWorldX(newObjPosAndScale.getXOff());
+			mGroup.yOff = mCamera.toWorldY(newObjPosAndScale.getYOff());
+			mGroup.scale = newObjPosAndScale.getScale() / mCamera.scale;
+			mGroup.angle = newObjPosAndScale.getAngle();
+			mGroup.apply(mImages);
+			for (int i = 0; i < mGroup.size; i++)
+				updateGrid(mGroup.ids[i], mImages.get(mGroup.ids[i]));
+			journal(touchPoint.getEventTime(), false);
+			ok = true;
+		} else {
+			Img img = (Img) obj;
+			ok = img.setPos(newObjPosAndScale, mUIMode, mCamera);
+			if (ok) {
+				snapAndCollide(img);
+				updateGrid(img.getId(), img);
+				journal(touchPoint.getEventTime(), false);
+			}
+		}
 		if (ok)
 			invalidate();
 		return ok;
 	}
 
+	/** Append the touch point to the lasso being drawn, unless it is too close to the previous point. Returns true if it was added. */
+	private boolean addLassoPoint(PointInfo touchPoint) {
+		float x = mCamera.toWorldX(touchPoint.getX()), y = mCamera.toWorldY(touchPoint.getY());
+		if (mLassoLength > 0) {
+			float dx = (x - mLassoPoints[mLassoLength - 2]) * mCamera.scale, dy = (y - mLassoPoints[mLassoLength - 1]) * mCamera.scale;
+			if (dx * dx + dy * dy < MIN_LASSO_SEGMENT * MIN_LASSO_SEGMENT)
+				return false;
+		}
+		if (mLassoLength == mLassoPoints.length) {
+			float[] newPoints = new float[mLassoLength * 2];
+			System.arraycopy(mLassoPoints, 0, newPoints, 0, mLassoLength);
+			mLassoPoints = newPoints;
+		}
+		mLassoPoints[mLassoLength++] = x;
+		mLassoPoints[mLassoLength++] = y;
+		return true;
+	}
+
+	/** Make the images whose centers are inside the lasso the new group */
+	private void selectLassoedImages() {
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		for (int i = 0; i < mLassoLength; i += 2) {
+			minX = Math.min(minX, mLassoPoints[i]);
+			maxX = Math.max(maxX, mLassoPoints[i]);
+			minY = Math.min(minY, mLassoPoints[i + 1]);
+			maxY = Math.max(maxY, mLassoPoints[i + 1]);
+		}
+		int n = findImages(minX, minY, maxX, maxY);
+		mGroup.clear();
+		for (int i = 0; i < n; i++) {
+			Img img = mImages.get((int) mSortKeys[i]);
+			if (insideLasso(img.getCenterX(), img.getCenterY()))
+				mGroup.add(img);
+		}
+		mGroup.start();
+	}
+
+	/** Even-odd test of whether a point is inside the (implicitly closed) lasso polygon */
+	private boolean insideLasso(float x, float y) {
+		boolean inside = false;
+		for (int i = 0, j = mLassoLength - 2; i < mLassoLength; j = i, i += 2) {
+			float xi = mLassoPoints[i], yi = mLassoPoints[i + 1], xj = mLassoPoints[j], yj = mLassoPoints[j + 1];
+			if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi)
+				inside = !inside;
+		}
+		return inside;
+	}
+
+	/**
+	 * Nudge an image that has just been moved so that its edges or center snap to those of nearby images, then push it out of any image it
+	 * overlaps (along the axis of least overlap). A push can move it into another image, so the neighbours are looked up again after each round
+	 * of pushes, for at most MAX_COLLIDE_PASSES rounds. A snap or push that would take the image out of the world is not made. Only the images in
+	 * the grid cells around the moved image are looked at, so this takes about the same time however many images there are in the scene. Bounds
+	 * are the unrotated bounds of the images.
+	 */
+	private void snapAndCollide(Img img) {
+		float snapDist = SNAP_DISTANCE / mCamera.scale;
+		int n = mGrid.query(img.getMinX() - snapDist, img.getMinY() - snapDist, img.getMaxX() + snapDist, img.getMaxY() + snapDist);
+		int[] ids = mGrid.getResults();
+
+		// Snap: find the smallest offset in each axis that lines up an edge or the center with an edge or center of a neighbour
+		float bestDx = snapDist, bestDy = snapDist;
+		for (int i = 0; i < n; i++) {
+			if (ids[i] == img.getId())
+				continue;
+			Img other = mImages.get(ids[i]);
+			bestDx = closestSnap(bestDx, img.getMinX(), img.getCenterX(), img.getMaxX(), other.getMinX(), other.getCenterX(), other.getMaxX());
+			bestDy = closestSnap(bestDy, img.getMinY(), img.getCenterY(), img.getMaxY(), other.getMinY(), other.getCenterY(), other.getMaxY());
+		}
+		float dx = Math.abs(bestDx) < snapDist ? bestDx : 0.0f, dy = Math.abs(bestDy) < snapDist ? bestDy : 0.0f;
+		if (dx != 0.0f || dy != 0.0f)
+			img.moveBy(dx, dy);
+
+		// Collide: push out of each overlapping neighbour in turn, then look again around where the pushes left the image
+		for (int pass = 0; pass < MAX_COLLIDE_PASSES; pass++) {
+			n = mGrid.query(img.getMinX(), img.getMinY(), img.getMaxX(), img.getMaxY());
+			ids = mGrid.getResults();
+			float minX = img.getMinX(), maxX = img.getMaxX(), minY = img.getMinY(), maxY = img.getMaxY();
+			dx = dy = 0.0f;
+			for (int i = 0; i < n; i++) {
+				if (ids[i] == img.getId())
+					continue;
+				Img other = mImages.get(ids[i]);
+				float overlapX = Math.min(maxX, other.getMaxX()) - Math.max(minX, other.getMinX());
+				float overlapY = Math.min(maxY, other.getMaxY()) - Math.max(minY, other.getMinY());
+				if (overlapX <= 0.0f || overlapY <= 0.0f)
+					continue;
+				if (overlapX < overlapY) {
+					float push = (minX + maxX < other.getMinX() + other.getMaxX()) ? -overlapX : overlapX;
+					dx += push;
+					minX += push;
+					maxX += push;
+				} else {
+					float push = (minY + maxY < other.getMinY() + other.getMaxY()) ? -overlapY : overlapY;
+					dy += push;
+					minY += push;
+					maxY += push;
+				}
+			}
+			// Stop once nothing overlaps, or if the pushes would take the image out of the world
+			if ((dx == 0.0f && dy == 0.0f) || !img.moveBy(dx, dy))
+				break;
+		}
+	}
+
+	/** Return whichever of best and the offsets between the min/center/max lines of an image and those of another has the smallest magnitude */
+	private static float closestSnap(float best, float min, float center, float max, float otherMin, float otherCenter, float otherMax) {
+		best = closer(best, otherMin - min);
+		best = closer(best, otherMax - min);
+		best = closer(best, otherMin - max);
+		best = closer(best, otherMax - max);
+		best = closer(best, otherCenter - center);
+		return best;
+	}
+
+	private static float closer(float a, float b) {
+		return Math.abs(b) < Math.abs(a) ? b : a;
+	}
+
 	// ----------------------------------------------------------------------------------------------
 
-	class Img {
+	/**
+	 * A group of images that are moved together, selected with the lasso. The group has its own transform (position of its pivot, scale and
+	 * angle, in world coords), which starts out as the identity about the centroid of its members. The members' transforms at that time are kept
+	 * relative to the pivot in parallel arrays, and apply() maps all of them through the group transform in one loop.
+	 */
+	static class Group {
+		/** The group transform */
+		float xOff, yOff, scale = 1.0f, angle;
+
+		int size;
+
+		int[] ids = new int[64];
+
+		/** Each member's center relative to the pivot, scale and angle when the group was started */
+		float[] relXs = new float[64], relYs = new float[64], scaleXs = new float[64], scaleYs = new float[64], angles = new float[64];
+
+		void clear() {
+			size = 0;
+		}
+
+		boolean contains(int id) {
+			for (int i = 0; i < size; i++)
+				if (ids[i] == id)
+					return true;
+			return false;
+		}
+
+		/** Add a member, whose current transform is recorded by start() */
+		void add(Img img) {
+			if (size == ids.length) {
+				int newLength = size * 2;
+				ids = grow(ids, newLength);
+				relXs = grow(relXs, newLength);
+				relYs = grow(relYs, newLength);
+				scaleXs = grow(scaleXs, newLength);
+				scaleYs = grow(scaleYs, newLength);
+				angles = grow(angles, newLength);
+			}
+			ids[size] = img.getId();
+			relXs[size] = img.getCenterX();
+			relYs[size] = img.getCenterY();
+			scaleXs[size] = img.getScaleX();
+			scaleYs[size] = img.getScaleY();
+			angles[size] = img.getAngle();
+			size++;
+		}
+
+		/** Put the pivot at the centroid of the members, and make member positions relative to it */
+		void start() {
+			float cx = 0.0f, cy = 0.0f;
+			for (int i = 0; i < size; i++) {
+				cx += relXs[i];
+				cy += relYs[i];
+			}
+			if (size > 0) {
+				cx /= size;
+				cy /= size;
+			}
+			for (int i = 0; i < size; i++) {
+				relXs[i] -= cx;
+				relYs[i] -= cy;
+			}
+			xOff = cx;
+			yOff = cy;
+			scale = 1.0f;
+			angle = 0.0f;
+		}
+
+		/** Give the members z-orders starting at nextZOrder, in their current order. Returns the next unused z-order. */
+		int raise(int[] zOrders, int nextZOrder) {
+			// Insertion sort of the members by z-order (groups are small enough, and usually already sorted)
+			for (int i = 1; i < size; i++)
+				for (int j = i; j > 0 && zOrders[ids[j - 1]] > zOrders[ids[j]]; j--)
+					swap(j - 1, j);
+			for (int i = 0; i < size; i++)
+				zOrders[ids[i]] = nextZOrder++;
+			return nextZOrder;
+		}
+
+		private void swap(int i, int j) {
+			int id = ids[i];
+			ids[i] = ids[j];
+			ids[j] = id;
+			float t = relXs[i];
+			relXs[i] = relXs[j];
+			relXs[j] = t;
+			t = relYs[i];
+			relYs[i] = relYs[j];
+			relYs[j] = t;
+			t = scaleXs[i];
+			scaleXs[i] = scaleXs[j];
+			scaleXs[j] = t;
+			t = scaleYs[i];
+			scaleYs[i] = scaleYs[j];
+			scaleYs[j] = t;
+			t = angles[i];
+			angles[i] = angles[j];
+			angles[j] = t;
+		}
+
+		/** Move every member to its start transform mapped through the group transform */
+		void apply(ArrayList<Img> images) {
+			float cos = (float) Math.cos(angle) * scale, sin = (float) Math.sin(angle) * scale;
+			for (int i = 0; i < size; i++) {
+				float rx = relXs[i], ry = relYs[i];
+				images.get(ids[i]).setPos(xOff + rx * cos - ry * sin, yOff + rx * sin + ry * cos, scaleXs[i] * scale, scaleYs[i] * scale, angles[i]
+						+ angle);
+			}
+		}
+
+		private static int[] grow(int[] arr, int newLength) {
+			int[] newArr = new int[newLength];
+			System.arraycopy(arr, 0, newArr, 0, arr.length);
+			return newArr;
+		}
+
+		private static float[] grow(float[] arr, int newLength) {
+			float[] newArr = new float[newLength];
+			System.arraycopy(arr, 0, newArr, 0, arr.length);
+			return newArr;
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------
+
+	/** The pan and zoom of the whole scene: screen coords = world coords * scale + offset */
+	static class Camera {
+		float offX, offY, scale = 1.0f;
+
+		void set(float offX, float offY, float scale) {
+			this.offX = offX;
+			this.offY = offY;
+			this.scale = scale;
+		}
+
+		float toWorldX(float screenX) {
+			return (screenX - offX) / scale;
+		}
+
+		float toWorldY(float screenY) {
+			return (screenY - offY) / scale;
+		}
+
+		float toScreenX(float worldX) {
+			return worldX * scale + offX;
+		}
+
+		float toScreenY(float worldY) {
+			return worldY * scale + offY;
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------
+
+	/** An image in the scene. Static so that it can also be used by PhotoSortrSurfaceView. */
+	static class Img {
 		private int resId;
 
+		/** The index of the image in its scene */
+		private final int id;
+
 		private Drawable drawable;
 
+		private DecodedImage decodedImage;
+
 		private boolean firstLoad;
 
 		private int width, height, displayWidth, displayHeight;
 
+		/** The size of the square world the image is kept within, or 0 if the world is the screen */
+		private final float worldSize;
+
+		private float worldWidth, worldHeight;
+
 		private float centerX, centerY, scaleX, scaleY, angle;
 
 		private float minX, maxX, minY, maxY;
 
 		private static final float SCREEN_MARGIN = 100;
 
+		/** An image on a world the size of the screen */
 		public Img(int resId, Resources res) {
+			this(resId, res, 0, 0);
+		}
+
+		/** An image with the given id on a square world of the given size, or on a world the size of the screen if worldSize is 0 */
+		public Img(int resId, Resources res, float worldSize, int id) {
 			this.resId = resId;
+			this.id = id;
 			this.firstLoad = true;
+			this.worldSize = worldSize;
 			getMetrics(res);
 		}
 
@@ -229,50 +1011,87 @@ public class PhotoSortrView extends View implements MultiTouchObjectCanvas<Photo
 					metrics.heightPixels) : Math.min(metrics.widthPixels, metrics.heightPixels);
 			this.displayHeight = res.getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE ? Math.min(metrics.widthPixels,
 					metrics.heightPixels) : Math.max(metrics.widthPixels, metrics.heightPixels);
+			this.worldWidth = worldSize > 0 ? worldSize : displayWidth;
+			this.worldHeight = worldSize > 0 ? worldSize : displayHeight;
 		}
 
 		/** Called by activity's onResume() method to load the images */
 		public void load(Resources res) {
-			getMetrics(res);
 			this.drawable = res.getDrawable(resId);
-			this.width = drawable.getIntrinsicWidth();
-			this.height = drawable.getIntrinsicHeight();
+			place(res, drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight());
+		}
+
+		/** Called by activity's onResume() method to load the images, when the image is drawn from a shared decoded image rather than a Drawable */
+		public void load(Resources res, DecodedImage decodedImage) {
+			this.decodedImage = decodedImage;
+			place(res, decodedImage.getWidth(), decodedImage.getHeight());
+		}
+
+		/** Give the image a saved resource and transform before it is first loaded, so that load() keeps it there rather than placing it at random */
+		void restore(int resId, float centerX, float centerY, float scaleX, float scaleY, float angle) {
+			this.resId = resId;
+			this.centerX = centerX;
+			this.centerY = centerY;
+			this.scaleX = scaleX;
+			this.scaleY = scaleY;
+			this.angle = angle;
+			this.firstLoad = false;
+		}
+
+		/** Position the image at random on first load, or keep it where it was (but within the world) when reloaded or restored */
+		private void place(Resources res, int width, int height) {
+			getMetrics(res);
+			this.width = width;
+			this.height = height;
 			float cx, cy, sx, sy;
 			if (firstLoad) {
-				cx = SCREEN_MARGIN + (float) (Math.random() * (displayWidth - 2 * SCREEN_MARGIN));
-				cy = SCREEN_MARGIN + (float) (Math.random() * (displayHeight - 2 * SCREEN_MARGIN));
+				cx = SCREEN_MARGIN + (float) (Math.random() * (worldWidth - 2 * SCREEN_MARGIN));
+				cy = SCREEN_MARGIN + (float) (Math.random() * (worldHeight - 2 * SCREEN_MARGIN));
 				float sc = (float) (Math.max(displayWidth, displayHeight) / (float) Math.max(width, height) * Math.random() * 0.3 + 0.2);
 				sx = sy = sc;
+				angle = 0.0f;
 				firstLoad = false;
 			} else {
-				// Reuse position and scale information if it is available
-				// FIXME this doesn't actually work because the whole activity is torn down and re-created on rotate
+				// Reuse position and scale information if it is available (the Img was restored from a saved scene, or, in PhotoSortrView, kept
+				// across the activity being torn down and re-created on rotate)
 				cx = this.centerX;
 				cy = this.centerY;
 				sx = this.scaleX;
 				sy = this.scaleY;
-				// Make sure the image is not off the screen after a screen rotation
-				if (this.maxX < SCREEN_MARGIN)
+				// Make sure the image is not off the screen after a screen rotation. The bounds are worked out from the new size, since a
+				// restored image has no bounds yet.
+				float ws = (width / 2) * sx, hs = (height / 2) * sy;
+				if (cx + ws < SCREEN_MARGIN)
 					cx = SCREEN_MARGIN;
-				else if (this.minX > displayWidth - SCREEN_MARGIN)
-					cx = displayWidth - SCREEN_MARGIN;
-				if (this.maxY > SCREEN_MARGIN)
+				else if (cx - ws > worldWidth - SCREEN_MARGIN)
+					cx = worldWidth - SCREEN_MARGIN;
+				if (cy + hs < SCREEN_MARGIN)
 					cy = SCREEN_MARGIN;
-				else if (this.minY > displayHeight - SCREEN_MARGIN)
-					cy = displayHeight - SCREEN_MARGIN;
+				else if (cy - hs > worldHeight - SCREEN_MARGIN)
+					cy = worldHeight - SCREEN_MARGIN;
 			}
-			setPos(cx, cy, sx, sy, 0.0f);
+			setPos(cx, cy, sx, sy, angle);
 		}
 
 		/** Called by activity's onPause() method to free memory used for loading the images */
 		public void unload() {
 			this.drawable = null;
+			this.decodedImage = null;
 		}
 
-		/** Set the position and scale of an image in screen coordinates */
-		public boolean setPos(PositionAndScale newImgPosAndScale) {
-			return setPos(newImgPosAndScale.getXOff(), newImgPosAndScale.getYOff(), (mUIMode & UI_MODE_ANISOTROPIC_SCALE) != 0 ? newImgPosAndScale
-					.getScaleX() : newImgPosAndScale.getScale(), (mUIMode & UI_MODE_ANISOTROPIC_SCALE) != 0 ? newImgPosAndScale.getScaleY()
+		/** Set the position and scale of an image from a transform in screen coordinates, as seen through the camera */
+		public boolean setPos(PositionAndScale newImgPosAndScale, int uiMode, Camera camera) {
+			float s = camera.scale;
+			return setPos(camera.toWorldX(newImgPosAndScale.getXOff()), camera.toWorldY(newImgPosAndScale.getYOff()),
+					((uiMode & UI_MODE_ANISOTROPIC_SCALE) != 0 ? newImgPosAndScale.getScaleX() : newImgPosAndScale.getScale()) / s,
+					((uiMode & UI_MODE_ANISOTROPIC_SCALE) != 0 ? newImgPosAndScale.getScaleY() : newImgPosAndScale.getScale()) / s,
+					newImgPosAndScale.getAngle());
+		}
+
+		/** Set the position and scale of an image in world coordinates, for a world the size of the screen (i.e. with no camera) */
+		public boolean setPos(PositionAndScale newImgPosAndScale, int uiMode) {
+			return setPos(newImgPosAndScale.getXOff(), newImgPosAndScale.getYOff(), (uiMode & UI_MODE_ANISOTROPIC_SCALE) != 0 ? newImgPosAndScale
+					.getScaleX() : newImgPosAndScale.getScale(), (uiMode & UI_MODE_ANISOTROPIC_SCALE) != 0 ? newImgPosAndScale.getScaleY()
 					: newImgPosAndScale.getScale(), newImgPosAndScale.getAngle());
 			// FIXME: anisotropic scaling jumps when axis-snapping
 			// FIXME: affine-ize
@@ -280,11 +1099,16 @@ public class PhotoSortrView extends View implements MultiTouchObjectCanvas<Photo
 			// newImgPosAndScale.getScaleAnisotropicY(), 0.0f);
 		}
 
-		/** Set the position and scale of an image in screen coordinates */
-		private boolean setPos(float centerX, float centerY, float scaleX, float scaleY, float angle) {
+		/** Move the image by the given amount in world coordinates. Returns false (and does not move it) if it would leave the world. */
+		public boolean moveBy(float dx, float dy) {
+			return setPos(centerX + dx, centerY + dy, scaleX, scaleY, angle);
+		}
+
+		/** Set the position and scale of an image in world coordinates */
+		boolean setPos(float centerX, float centerY, float scaleX, float scaleY, float angle) {
 			float ws = (width / 2) * scaleX, hs = (height / 2) * scaleY;
 			float newMinX = centerX - ws, newMinY = centerY - hs, newMaxX = centerX + ws, newMaxY = centerY + hs;
-			if (newMinX > displayWidth - SCREEN_MARGIN || newMaxX < SCREEN_MARGIN || newMinY > displayHeight - SCREEN_MARGIN
+			if (newMinX > worldWidth - SCREEN_MARGIN || newMaxX < SCREEN_MARGIN || newMinY > worldHeight - SCREEN_MARGIN
 					|| newMaxY < SCREEN_MARGIN)
 				return false;
 			this.centerX = centerX;
@@ -299,28 +1123,50 @@ public class PhotoSortrView extends View implements MultiTouchObjectCanvas<Photo
 			return true;
 		}
 
-		/** Return whether or not the given screen coords are inside this image */
+		/**
+		 * Return whether or not the given world coords are on this image: the point is mapped into the image with the inverse of the image's
+		 * transform (so rotation is accounted for), then tested against the decoded image's occupancy mask, if it has one, so that transparent
+		 * parts of the image can't be grabbed.
+		 */
 		public boolean containsPoint(float scrnX, float scrnY) {
-			// FIXME: need to correctly account for image rotation
-			return (scrnX >= minX && scrnX <= maxX && scrnY >= minY && scrnY <= maxY);
+			float dx = scrnX - centerX, dy = scrnY - centerY;
+			float cos = (float) Math.cos(angle), sin = (float) Math.sin(angle);
+			float u = (dx * cos + dy * sin) / (width * scaleX) + 0.5f;
+			float v = (-dx * sin + dy * cos) / (height * scaleY) + 0.5f;
+			if (decodedImage != null)
+				return decodedImage.isOpaqueAt(u, v);
+			return u >= 0.0f && u <= 1.0f && v >= 0.0f && v <= 1.0f;
 		}
 
-		public void draw(Canvas canvas) {
+		/** Draw the image from the given bitmap (the decoded image or one of its mip levels), using drawRect as scratch space */
+		public void draw(Canvas canvas, Bitmap bitmap, Paint paint, RectF drawRect) {
 			canvas.save();
 			float dx = (maxX + minX) / 2;
 			float dy = (maxY + minY) / 2;
-			drawable.setBounds((int) minX, (int) minY, (int) maxX, (int) maxY);
+			drawRect.set(minX, minY, maxX, maxY);
 			canvas.translate(dx, dy);
 			canvas.rotate(angle * 180.0f / (float) Math.PI);
 			canvas.translate(-dx, -dy);
-			drawable.draw(canvas);
+			canvas.drawBitmap(bitmap, null, drawRect, paint);
 			canvas.restore();
 		}
 
+		public int getId() {
+			return id;
+		}
+
+		public int getResId() {
+			return resId;
+		}
+
 		public Drawable getDrawable() {
 			return drawable;
 		}
 
+		public DecodedImage getDecodedImage() {
+			return decodedImage;
+		}
+
 		public int getWidth() {
 			return width;
 		}
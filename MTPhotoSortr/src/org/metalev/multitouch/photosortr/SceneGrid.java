@@ -0,0 +1,179 @@
+/**
+ * SceneGrid.java
+ *
+ * (c) Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.metalev.multitouch.photosortr;
+
+/**
+ * A uniform grid over the world, used as a spatial index of the images in a scene, so that drawing and hit testing only look at the images near
+ * the viewport or touch point rather than at every image. Each object (identified by a small non-negative int id) is entered in every cell that
+ * its bounding box overlaps. Moving an object only touches the grid if it crosses a cell boundary. Objects outside the world are clamped into the
+ * edge cells. Nothing allocates except when a cell or the id arrays need to grow.
+ */
+class SceneGrid {
+	private final float cellSize;
+
+	private final int cols, rows;
+
+	/** The ids in each cell, and the number of ids in each cell */
+	private final int[][] cells;
+
+	private final int[] cellCounts;
+
+	/** The cell range each id was last entered in, or minCol == -1 if the id is not in the grid */
+	private int[] minCols = new int[0], minRows = new int[0], maxCols = new int[0], maxRows = new int[0];
+
+	/** The query in which each id was last returned, to avoid returning an id twice when it spans several cells */
+	private int[] queryStamps = new int[0];
+
+	private int queryStamp;
+
+	/** The ids found by the last query */
+	private int[] results = new int[16];
+
+	SceneGrid(float worldWidth, float worldHeight, float cellSize) {
+		this.cellSize = cellSize;
+		this.cols = Math.max(1, (int) Math.ceil(worldWidth / cellSize));
+		this.rows = Math.max(1, (int) Math.ceil(worldHeight / cellSize));
+		cells = new int[cols * rows][];
+		cellCounts = new int[cols * rows];
+		for (int i = 0; i < cells.length; i++)
+			cells[i] = new int[4];
+	}
+
+	private int col(float x) {
+		int c = (int) Math.floor(x / cellSize);
+		return c < 0 ? 0 : c >= cols ? cols - 1 : c;
+	}
+
+	private int row(float y) {
+		int r = (int) Math.floor(y / cellSize);
+		return r < 0 ? 0 : r >= rows ? rows - 1 : r;
+	}
+
+	private void ensureIdCapacity(int id) {
+		if (id < minCols.length)
+			return;
+		int newLength = Math.max(id + 1, minCols.length * 2);
+		minCols = grow(minCols, newLength, -1);
+		minRows = grow(minRows, newLength, 0);
+		maxCols = grow(maxCols, newLength, 0);
+		maxRows = grow(maxRows, newLength, 0);
+		queryStamps = grow(queryStamps, newLength, 0);
+	}
+
+	private static int[] grow(int[] arr, int newLength, int fill) {
+		int[] newArr = new int[newLength];
+		System.arraycopy(arr, 0, newArr, 0, arr.length);
+		for (int i = arr.length; i < newLength; i++)
+			newArr[i] = fill;
+		return newArr;
+	}
+
+	/** Enter the object in the grid with the given bounding box, or move it there if it is already in the grid */
+	void update(int id, float minX, float minY, float maxX, float maxY) {
+		ensureIdCapacity(id);
+		int c0 = col(minX), r0 = row(minY), c1 = col(maxX), r1 = row(maxY);
+		if (minCols[id] == c0 && minRows[id] == r0 && maxCols[id] == c1 && maxRows[id] == r1)
+			// Still in the same cells (the common case for a small move)
+			return;
+		remove(id);
+		for (int r = r0; r <= r1; r++) {
+			for (int c = c0; c <= c1; c++) {
+				int cell = r * cols + c;
+				int n = cellCounts[cell];
+				if (n == cells[cell].length) {
+					int[] newCell = new int[n * 2];
+					System.arraycopy(cells[cell], 0, newCell, 0, n);
+					cells[cell] = newCell;
+				}
+				cells[cell][n] = id;
+				cellCounts[cell] = n + 1;
+			}
+		}
+		minCols[id] = c0;
+		minRows[id] = r0;
+		maxCols[id] = c1;
+		maxRows[id] = r1;
+	}
+
+	/** Remove the object from the grid, if it is in it */
+	void remove(int id) {
+		if (id >= minCols.length || minCols[id] < 0)
+			return;
+		for (int r = minRows[id]; r <= maxRows[id]; r++) {
+			for (int c = minCols[id]; c <= maxCols[id]; c++) {
+				int cell = r * cols + c;
+				int[] ids = cells[cell];
+				int n = cellCounts[cell];
+				for (int i = 0; i < n; i++) {
+					if (ids[i] == id) {
+						ids[i] = ids[n - 1];
+						cellCounts[cell] = n - 1;
+						break;
+					}
+				}
+			}
+		}
+		minCols[id] = -1;
+	}
+
+	/**
+	 * Find the objects in the cells overlapping the given box. Returns the number found; the ids are in getResults(), in no particular order. The
+	 * objects are only known to be in the same cells as the box, so callers should do their own exact test if needed.
+	 */
+	int query(float minX, float minY, float maxX, float maxY) {
+		if (++queryStamp == 0) {
+			// Wrapped around, so old stamps could match again
+			for (int i = 0; i < queryStamps.length; i++)
+				queryStamps[i] = 0;
+			queryStamp = 1;
+		}
+		int numResults = 0;
+		int c0 = col(minX), r0 = row(minY), c1 = col(maxX), r1 = row(maxY);
+		for (int r = r0; r <= r1; r++) {
+			for (int c = c0; c <= c1; c++) {
+				int cell = r * cols + c;
+				int[] ids = cells[cell];
+				int n = cellCounts[cell];
+				for (int i = 0; i < n; i++) {
+					int id = ids[i];
+					if (queryStamps[id] != queryStamp) {
+						queryStamps[id] = queryStamp;
+						if (numResults == results.length) {
+							int[] newResults = new int[numResults * 2];
+							System.arraycopy(results, 0, newResults, 0, numResults);
+							results = newResults;
+						}
+						results[numResults++] = id;
+					}
+				}
+			}
+		}
+		return numResults;
+	}
+
+	/** The ids found by the last call to query(); only the first (return value of query()) entries are valid */
+	int[] getResults() {
+		return results;
+	}
+}
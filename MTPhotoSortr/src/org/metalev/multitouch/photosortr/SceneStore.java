@@ -0,0 +1,273 @@
+/**
+ * SceneStore.java
+ *
+ * (c) Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.metalev.multitouch.photosortr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.util.Log;
+
+/**
+ * Saves the layout of a scene to a compact binary file, and restores it by memory-mapping the file.
+ *
+ * File format (big-endian): a header of int magic ("PSSC"), int version, int record size, int number of records, followed by one fixed-size
+ * record per image, at offset HEADER_SIZE + id * RECORD_SIZE: int id, int image index (into PhotoSortrView.IMAGES), int z-order, then float
+ * center x, center y, scale x, scale y and angle, in world coords. Because records have a fixed place in the file, an image that has moved can be
+ * rewritten on its own.
+ *
+ * Writes happen on a background thread: the UI thread queues changed records with update() and then calls flush(), which only copies the
+ * records into a buffer and wakes the writer. close() writes anything still queued, syncs the file and stops the writer.
+ */
+class SceneStore {
+	/** Receives the records read by load() */
+	static interface Receiver {
+		void restore(int id, int imageIdx, int zOrder, float centerX, float centerY, float scaleX, float scaleY, float angle);
+	}
+
+	private static final int MAGIC = 0x50535343; // "PSSC"
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 16, RECORD_SIZE = 32;
+
+	private final File file;
+
+	/** Records queued by the UI thread, guarded by this. Swapped with mWriting by the writer thread. */
+	private Records mPending = new Records();
+
+	/** Records being written by the writer thread */
+	private Records mWriting = new Records();
+
+	/** The number of records to write in the header (and to size the file for), or -1 if the header is already written; guarded by this */
+	private int mPendingSceneSize = -1;
+
+	/** Set by close(), after which the writer exits once it has written everything queued; guarded by this */
+	private boolean mClosed;
+
+	private final WriterThread mWriter = new WriterThread();
+
+	SceneStore(File file) {
+		this.file = file;
+		mWriter.start();
+	}
+
+	/**
+	 * Memory-map the file and pass each record to the receiver. Returns false, without calling the receiver, if there is no file, or it is not a
+	 * valid scene file of this version with exactly numRecords records.
+	 */
+	boolean load(int numRecords, Receiver receiver) {
+		if (!file.exists() || file.length() != HEADER_SIZE + (long) numRecords * RECORD_SIZE)
+			return false;
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "r");
+			MappedByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+			if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION || buf.getInt(8) != RECORD_SIZE || buf.getInt(12) != numRecords)
+				return false;
+			for (int i = 0, pos = HEADER_SIZE; i < numRecords; i++, pos += RECORD_SIZE)
+				if (buf.getInt(pos) != i)
+					// Not fully written (e.g. the process died before the first save finished)
+					return false;
+			for (int i = 0, pos = HEADER_SIZE; i < numRecords; i++, pos += RECORD_SIZE)
+				receiver.restore(i, buf.getInt(pos + 4), buf.getInt(pos + 8), buf.getFloat(pos + 12), buf.getFloat(pos + 16), buf.getFloat(pos + 20),
+						buf.getFloat(pos + 24), buf.getFloat(pos + 28));
+			return true;
+		} catch (IOException e) {
+			Log.w("PhotoSortr", "Could not read scene from " + file, e);
+			return false;
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	/** Rewrite the header for a scene of the given size, e.g. before writing every record of a new scene */
+	synchronized void setSceneSize(int numRecords) {
+		mPendingSceneSize = numRecords;
+	}
+
+	/** Queue the record of one image to be written at the next flush() */
+	synchronized void update(int id, int imageIdx, int zOrder, float centerX, float centerY, float scaleX, float scaleY, float angle) {
+		mPending.add(id, imageIdx, zOrder, centerX, centerY, scaleX, scaleY, angle);
+	}
+
+	/** Write the queued records on the writer thread */
+	synchronized void flush() {
+		notify();
+	}
+
+	/**
+	 * Write any queued records, sync the file to disk and close it, and stop the writer thread, waiting for it to finish. The store must not be
+	 * used afterwards.
+	 */
+	void close() {
+		synchronized (this) {
+			mClosed = true;
+			notify();
+		}
+		boolean interrupted = false;
+		while (mWriter.isAlive()) {
+			try {
+				mWriter.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	// ------------------------------------------------------------------------------------
+
+	/** Records waiting to be written, in parallel arrays */
+	private static class Records {
+		private int size;
+
+		private int[] ids = new int[16], imageIdxs = new int[16], zOrders = new int[16];
+
+		/** centerX, centerY, scaleX, scaleY, angle for each record */
+		private float[] values = new float[16 * 5];
+
+		private void add(int id, int imageIdx, int zOrder, float centerX, float centerY, float scaleX, float scaleY, float angle) {
+			if (size == ids.length) {
+				ids = grow(ids, size * 2);
+				imageIdxs = grow(imageIdxs, size * 2);
+				zOrders = grow(zOrders, size * 2);
+				float[] newValues = new float[size * 2 * 5];
+				System.arraycopy(values, 0, newValues, 0, size * 5);
+				values = newValues;
+			}
+			ids[size] = id;
+			imageIdxs[size] = imageIdx;
+			zOrders[size] = zOrder;
+			int j = size * 5;
+			values[j] = centerX;
+			values[j + 1] = centerY;
+			values[j + 2] = scaleX;
+			values[j + 3] = scaleY;
+			values[j + 4] = angle;
+			size++;
+		}
+
+		private static int[] grow(int[] arr, int newLength) {
+			int[] newArr = new int[newLength];
+			System.arraycopy(arr, 0, newArr, 0, arr.length);
+			return newArr;
+		}
+	}
+
+	/** Waits for flush(), then writes the queued header and records with positional writes. Syncs and closes the file on close(). */
+	private class WriterThread extends Thread {
+		private final ByteBuffer recordBuf = ByteBuffer.allocate(RECORD_SIZE);
+
+		private RandomAccessFile raf;
+
+		WriterThread() {
+			super("PhotoSortrSceneWriter");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				writeUntilClosed();
+			} finally {
+				closeFile();
+			}
+		}
+
+		private void writeUntilClosed() {
+			while (true) {
+				int sceneSize;
+				Records records;
+				synchronized (SceneStore.this) {
+					while (mPending.size == 0 && mPendingSceneSize < 0) {
+						if (mClosed)
+							return;
+						try {
+							SceneStore.this.wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					records = mPending;
+					mPending = mWriting;
+					mWriting = records;
+					sceneSize = mPendingSceneSize;
+					mPendingSceneSize = -1;
+				}
+				try {
+					write(sceneSize, records);
+				} catch (IOException e) {
+					Log.w("PhotoSortr", "Could not write scene to " + file, e);
+				}
+				records.size = 0;
+			}
+		}
+
+		private void closeFile() {
+			if (raf == null)
+				return;
+			try {
+				raf.getFD().sync();
+			} catch (IOException e) {
+				Log.w("PhotoSortr", "Could not sync scene to " + file, e);
+			} finally {
+				try {
+					raf.close();
+				} catch (IOException e) {
+				}
+				raf = null;
+			}
+		}
+
+		private void write(int sceneSize, Records records) throws IOException {
+			if (raf == null)
+				raf = new RandomAccessFile(file, "rw");
+			FileChannel channel = raf.getChannel();
+			if (sceneSize >= 0) {
+				raf.setLength(HEADER_SIZE + (long) sceneSize * RECORD_SIZE);
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(sceneSize).flip();
+				channel.write(header, 0);
+			}
+			for (int i = 0; i < records.size; i++) {
+				int j = i * 5;
+				recordBuf.clear();
+				recordBuf.putInt(records.ids[i]).putInt(records.imageIdxs[i]).putInt(records.zOrders[i]);
+				recordBuf.putFloat(records.values[j]).putFloat(records.values[j + 1]).putFloat(records.values[j + 2]);
+				recordBuf.putFloat(records.values[j + 3]).putFloat(records.values[j + 4]).flip();
+				channel.write(recordBuf, HEADER_SIZE + (long) records.ids[i] * RECORD_SIZE);
+			}
+		}
+	}
+}
@@ -0,0 +1,403 @@
+/**
+ * TransformJournal.java
+ *
+ * (c) Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.metalev.multitouch.photosortr;
+
+/**
+ * A history of object moves in a fixed amount of memory, for undo/redo and for scrubbing back and forth through a session.
+ *
+ * Each gesture is journaled when it ends as one MOVE entry per object moved, holding the object's transform before the gesture and the change
+ * made by the gesture. Optional KEYFRAME entries hold an object's transform part way through a gesture, so that seeking can show the gesture in
+ * progress; an object that had keyframes but ends where it started gets a closing KEYFRAME instead of a MOVE, and a gesture that moved nothing
+ * is dropped, keyframes and all, so that every gesture in the journal ends each object where it really ended. Transforms are quantized
+ * (positions to 1/8 unit, scales logarithmically, angles to 1/4096 radian) and written as zigzag varints, the change in a MOVE as a delta from
+ * the transform before, so a typical entry takes 15-25 bytes. Entries are self-contained, so when the byte budget is used up the oldest entries
+ * can simply be dropped. The keyframes of one gesture may take at most 1/KEYFRAME_BUDGET_DIVISOR of the budget (see canKeyframe()), so that a
+ * long gesture on many objects can't push the whole undo history out. The byte offset, time and gesture number of each entry are kept in a
+ * parallel index, so seeking to a time is a binary search.
+ *
+ * The journal has a cursor: the scene is always in the state after the entries before the cursor have been applied. undo(), redo() and seek()
+ * move the cursor, applying transforms to the scene through a Target; journaling a new gesture discards any entries after the cursor.
+ */
+class TransformJournal {
+
+	/** Receives the transforms to apply to the scene when the cursor moves */
+	static interface Target {
+		void setTransform(int id, float centerX, float centerY, float scaleX, float scaleY, float angle);
+	}
+
+	private static final byte TYPE_MOVE = 1, TYPE_KEYFRAME = 2;
+
+	private static final float POS_QUANTUM = 8.0f, ANGLE_QUANTUM = 4096.0f;
+
+	/** Scales are quantized as round(log2(scale) * SCALE_QUANTUM) */
+	private static final double SCALE_QUANTUM = 4096.0 / Math.log(2.0);
+
+	/** Upper bound on the size of one entry: type, id and ten varints of at most 5 bytes */
+	private static final int MAX_ENTRY_SIZE = 1 + 5 + 10 * 5;
+
+	/** Entries are at least this many bytes, which bounds how many entries the budget can hold */
+	private static final int MIN_ENTRY_SIZE = 8;
+
+	/** The keyframes of one gesture may take at most this fraction of the byte budget */
+	private static final int KEYFRAME_BUDGET_DIVISOR = 8;
+
+	/** The entries, written in a ring. An entry never wraps: if it doesn't fit at the end, it is written at the start. */
+	private final byte[] buf;
+
+	/** Index ring, indexed by entry sequence number modulo the index capacity: byte offset, time (ms since the journal started) and gesture */
+	private final int[] offsets, times, gestures;
+
+	/** Sequence numbers of the oldest entry, one past the newest entry, and the cursor */
+	private long head, tail, cursor;
+
+	private final long startTime;
+
+	/** Bytes the keyframes of one gesture may take, and the bytes taken by those of the current gesture */
+	private final int keyframeBudget;
+
+	private int gestureKeyframeBytes;
+
+	/** The gesture being journaled, and the transforms of its objects before it started */
+	private int gesture;
+
+	private int numPending;
+
+	private int[] pendingIds = new int[16];
+
+	private int[][] pendingBefores = new int[16][];
+
+	/** Whether keyframe() has been called for each pending object */
+	private boolean[] pendingKeyframed = new boolean[16];
+
+	/** Sequence number of the current gesture's first entry, or -1 if it has none yet; and whether it has a MOVE entry */
+	private long gestureStartSeq = -1;
+
+	private boolean gestureMoved;
+
+	/** Scratch space for encoding an entry, and for decoding transforms */
+	private final byte[] entryBuf = new byte[MAX_ENTRY_SIZE];
+
+	private final int[] quantized = new int[5], quantizedBefore = new int[5];
+
+	private int readPos;
+
+	/** Create a journal holding at most byteBudget bytes of entries (plus an index of 12 bytes per MIN_ENTRY_SIZE bytes of budget) */
+	TransformJournal(int byteBudget, long startTime) {
+		buf = new byte[byteBudget];
+		int indexCapacity = Math.max(1, byteBudget / MIN_ENTRY_SIZE);
+		offsets = new int[indexCapacity];
+		times = new int[indexCapacity];
+		gestures = new int[indexCapacity];
+		this.startTime = startTime;
+		keyframeBudget = byteBudget / KEYFRAME_BUDGET_DIVISOR;
+	}
+
+	// ------------------------------------------------------------------------------------
+
+	/** Note an object's transform at the start of a gesture. Call for every object the gesture may move, then journal the gesture with end(). */
+	void begin(int id, float centerX, float centerY, float scaleX, float scaleY, float angle) {
+		if (numPending == pendingIds.length) {
+			int[] newIds = new int[numPending * 2];
+			int[][] newBefores = new int[numPending * 2][];
+			System.arraycopy(pendingIds, 0, newIds, 0, numPending);
+			System.arraycopy(pendingBefores, 0, newBefores, 0, numPending);
+			pendingIds = newIds;
+			pendingBefores = newBefores;
+			pendingKeyframed = new boolean[numPending * 2];
+		}
+		if (pendingBefores[numPending] == null)
+			pendingBefores[numPending] = new int[5];
+		pendingIds[numPending] = id;
+		pendingKeyframed[numPending] = false;
+		quantize(centerX, centerY, scaleX, scaleY, angle, pendingBefores[numPending]);
+		numPending++;
+	}
+
+	/**
+	 * Whether keyframes for numObjects more objects fit in what is left of the current gesture's keyframe budget. Check this once for all the
+	 * objects being keyframed at one time, so that either all of them or none of them are keyframed.
+	 */
+	boolean canKeyframe(int numObjects) {
+		return gestureKeyframeBytes + numObjects * MAX_ENTRY_SIZE <= keyframeBudget;
+	}
+
+	/** Journal an object's transform part way through the current gesture. See canKeyframe(). */
+	void keyframe(int id, float centerX, float centerY, float scaleX, float scaleY, float angle, long time) {
+		int pendingIdx = pendingIndex(id);
+		if (pendingIdx >= 0)
+			pendingKeyframed[pendingIdx] = true;
+		gestureKeyframeBytes += writeKeyframe(id, centerX, centerY, scaleX, scaleY, angle, time);
+	}
+
+	/** Append a KEYFRAME entry, returning its length in bytes */
+	private int writeKeyframe(int id, float centerX, float centerY, float scaleX, float scaleY, float angle, long time) {
+		quantize(centerX, centerY, scaleX, scaleY, angle, quantized);
+		int len = 0;
+		entryBuf[len++] = TYPE_KEYFRAME;
+		len = writeVarint(entryBuf, len, id);
+		for (int i = 0; i < 5; i++)
+			len = writeVarint(entryBuf, len, zigzag(quantized[i]));
+		append(len, time);
+		return len;
+	}
+
+	/**
+	 * Journal the end of the gesture for one object, given its final transform. Objects that did not move are not journaled, except for a closing
+	 * keyframe if they had keyframes, so that replaying the gesture leaves them where they ended rather than at their last keyframe.
+	 */
+	void end(int id, float centerX, float centerY, float scaleX, float scaleY, float angle, long time) {
+		int pendingIdx = pendingIndex(id);
+		if (pendingIdx < 0)
+			return;
+		int[] before = pendingBefores[pendingIdx];
+		quantize(centerX, centerY, scaleX, scaleY, angle, quantized);
+		boolean moved = false;
+		for (int i = 0; i < 5; i++)
+			moved |= quantized[i] != before[i];
+		if (!moved) {
+			if (pendingKeyframed[pendingIdx])
+				writeKeyframe(id, centerX, centerY, scaleX, scaleY, angle, time);
+			return;
+		}
+		gestureMoved = true;
+		int len = 0;
+		entryBuf[len++] = TYPE_MOVE;
+		len = writeVarint(entryBuf, len, id);
+		for (int i = 0; i < 5; i++)
+			len = writeVarint(entryBuf, len, zigzag(before[i]));
+		for (int i = 0; i < 5; i++)
+			len = writeVarint(entryBuf, len, zigzag(quantized[i] - before[i]));
+		append(len, time);
+	}
+
+	/**
+	 * Finish the current gesture, after end() has been called for each of its objects. A gesture that moved nothing is dropped, along with any
+	 * keyframes it wrote, so that undo and redo never stop at a gesture that has no effect.
+	 */
+	void endGesture() {
+		if (!gestureMoved && gestureStartSeq >= 0)
+			tail = cursor = Math.max(head, gestureStartSeq);
+		numPending = 0;
+		gestureKeyframeBytes = 0;
+		gestureStartSeq = -1;
+		gestureMoved = false;
+		gesture++;
+	}
+
+	/** The index of the pending object with the given id, or -1 if begin() was not called for it */
+	private int pendingIndex(int id) {
+		for (int i = 0; i < numPending; i++)
+			if (pendingIds[i] == id)
+				return i;
+		return -1;
+	}
+
+	/** Append an entry from entryBuf, discarding entries after the cursor and, if out of space, the oldest entries */
+	private void append(int len, long time) {
+		// A new entry makes the undone entries unreachable
+		tail = cursor;
+		if (gestureStartSeq < 0)
+			gestureStartSeq = tail;
+		int offset = tail == head ? 0 : offsets[index(tail - 1)] + entryLength(offsets[index(tail - 1)]);
+		if (offset + len > buf.length)
+			offset = 0;
+		// Drop the oldest entries until the new one fits and there is room in the index
+		while (tail > head && (tail - head == offsets.length || overlaps(offset, len, offsets[index(head)])))
+			head++;
+		System.arraycopy(entryBuf, 0, buf, offset, len);
+		int idx = index(tail);
+		offsets[idx] = offset;
+		times[idx] = (int) (time - startTime);
+		gestures[idx] = gesture;
+		tail++;
+		cursor = tail;
+	}
+
+	/** Whether writing len bytes at offset would overwrite the (oldest) entry at headOffset */
+	private boolean overlaps(int offset, int len, int headOffset) {
+		return headOffset >= offset && headOffset < offset + len || offset >= headOffset && offset < headOffset + entryLength(headOffset);
+	}
+
+	private int index(long seq) {
+		return (int) (seq % offsets.length);
+	}
+
+	// ------------------------------------------------------------------------------------
+
+	/** Whether there is a gesture before the cursor that can be undone */
+	boolean canUndo() {
+		return cursor > head;
+	}
+
+	/** Whether there is an undone gesture after the cursor that can be redone */
+	boolean canRedo() {
+		return cursor < tail;
+	}
+
+	/** Undo the last gesture before the cursor. Returns false if there was nothing to undo. */
+	boolean undo(Target target) {
+		if (cursor == head)
+			return false;
+		finishGesture(target);
+		int g = gestures[index(cursor - 1)];
+		while (cursor > head && gestures[index(cursor - 1)] == g)
+			stepBack(target);
+		return true;
+	}
+
+	/** Redo the first gesture after the cursor. Returns false if there was nothing to redo. */
+	boolean redo(Target target) {
+		if (cursor == tail)
+			return false;
+		int g = gestures[index(cursor)];
+		while (cursor < tail && gestures[index(cursor)] == g)
+			stepForward(target);
+		return true;
+	}
+
+	/** Move the cursor to just after the last entry at or before the given time, putting the scene in the state it was in at that time */
+	void seek(long time, Target target) {
+		int t = (int) (time - startTime);
+		// Binary search for the first entry after time
+		long lo = head, hi = tail;
+		while (lo < hi) {
+			long mid = (lo + hi) >>> 1;
+			if (times[index(mid)] <= t)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		long targetSeq = lo;
+		if (targetSeq >= cursor) {
+			while (cursor < targetSeq)
+				stepForward(target);
+		} else {
+			finishGesture(target);
+			while (cursor > targetSeq)
+				stepBack(target);
+			// Stepping back over a MOVE restores the state before its gesture; replay any keyframes of that gesture up to the cursor
+			long k = cursor;
+			while (k > head && buf[offsets[index(k - 1)]] == TYPE_KEYFRAME && gestures[index(k - 1)] == gestures[index(cursor - 1)])
+				k--;
+			for (; k < cursor; k++)
+				apply(offsets[index(k)], true, target);
+		}
+	}
+
+	/** The time of the oldest entry still in the journal, or of the journal start if it is empty */
+	long getStartTime() {
+		return head == tail ? startTime : startTime + times[index(head)];
+	}
+
+	/** The time of the newest entry, or of the journal start if it is empty */
+	long getEndTime() {
+		return head == tail ? startTime : startTime + times[index(tail - 1)];
+	}
+
+	/**
+	 * If seek() left the cursor part way through a gesture's keyframes, finish the gesture, so that stepping back over its MOVEs restores its start
+	 * (stepping back over a keyframe does nothing)
+	 */
+	private void finishGesture(Target target) {
+		while (cursor > head && cursor < tail && buf[offsets[index(cursor - 1)]] == TYPE_KEYFRAME
+				&& gestures[index(cursor)] == gestures[index(cursor - 1)])
+			stepForward(target);
+	}
+
+	private void stepBack(Target target) {
+		cursor--;
+		int offset = offsets[index(cursor)];
+		if (buf[offset] == TYPE_MOVE)
+			apply(offset, false, target);
+	}
+
+	private void stepForward(Target target) {
+		apply(offsets[index(cursor)], true, target);
+		cursor++;
+	}
+
+	/** Decode the entry at offset and pass to the target: for a MOVE, the transform after it if forward, else the transform before it */
+	private void apply(int offset, boolean forward, Target target) {
+		readPos = offset + 1;
+		byte type = buf[offset];
+		int id = readVarint();
+		for (int i = 0; i < 5; i++)
+			quantized[i] = unzigzag(readVarint());
+		if (type == TYPE_MOVE && forward) {
+			System.arraycopy(quantized, 0, quantizedBefore, 0, 5);
+			for (int i = 0; i < 5; i++)
+				quantized[i] = quantizedBefore[i] + unzigzag(readVarint());
+		}
+		target.setTransform(id, quantized[0] / POS_QUANTUM, quantized[1] / POS_QUANTUM, (float) Math.exp(quantized[2] / SCALE_QUANTUM),
+				(float) Math.exp(quantized[3] / SCALE_QUANTUM), quantized[4] / ANGLE_QUANTUM);
+	}
+
+	/** The length in bytes of the entry at offset */
+	private int entryLength(int offset) {
+		readPos = offset + 1;
+		readVarint();
+		int numVarints = buf[offset] == TYPE_MOVE ? 10 : 5;
+		for (int i = 0; i < numVarints; i++)
+			readVarint();
+		return readPos - offset;
+	}
+
+	// ------------------------------------------------------------------------------------
+
+	private static void quantize(float centerX, float centerY, float scaleX, float scaleY, float angle, int[] out) {
+		out[0] = Math.round(centerX * POS_QUANTUM);
+		out[1] = Math.round(centerY * POS_QUANTUM);
+		out[2] = (int) Math.round(Math.log(scaleX) * SCALE_QUANTUM);
+		out[3] = (int) Math.round(Math.log(scaleY) * SCALE_QUANTUM);
+		out[4] = Math.round(angle * ANGLE_QUANTUM);
+	}
+
+	private static int zigzag(int v) {
+		return (v << 1) ^ (v >> 31);
+	}
+
+	private static int unzigzag(int v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/** Write v as an unsigned varint (7 bits per byte, low bits first) at pos, returning the position after it */
+	private static int writeVarint(byte[] out, int pos, int v) {
+		while ((v & ~0x7f) != 0) {
+			out[pos++] = (byte) ((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		out[pos++] = (byte) v;
+		return pos;
+	}
+
+	private int readVarint() {
+		int v = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = buf[readPos++];
+			v |= (b & 0x7f) << shift;
+			if (b >= 0)
+				return v;
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/**
+ * PhotoSortrDrawBenchmark.java
+ *
+ * (c) Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.metalev.multitouch.photosortr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.metalev.multitouch.controller.FrameMeter;
+import org.metalev.multitouch.controller.SyntheticEvents;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.util.DisplayMetrics;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+
+/**
+ * Measures the time and allocations per frame of PhotoSortrView for scenes of 5 to 10,000 images. For each scene size it replays a one-finger
+ * drag and a two-finger pinch that zooms out and back in, one MotionEvent (batching several touch samples) per display frame, and runs each frame
+ * as the UI thread would: onTouchEvent(), then the Choreographer's frame callbacks (which apply the frame-paced transforms), then draw() if the
+ * view was invalidated. The Canvas is the one in tools/android-standin, which counts draw calls and bitmap pixels rather than rasterizing, so the
+ * times are those of the view's own work (finding, sorting and transforming the visible images) and not of drawing pixels; compare versions of
+ * the view on the same machine. The images are placed at random as in the app, so results vary a little from run to run.
+ *
+ * Run it with tools/run.sh from the top of the repository: tools/run.sh org.metalev.multitouch.photosortr.PhotoSortrDrawBenchmark [replays
+ * [drawableDir]], where drawableDir (by default MTPhotoSortr/res/drawable) holds the app's images, whose sizes are read from the files.
+ */
+public class PhotoSortrDrawBenchmark {
+
+	private static final int[] SCENE_SIZES = { 5, 100, 1000, 10000 };
+
+	/** The files of PhotoSortrView.IMAGES, in the same order */
+	private static final String[] IMAGE_FILES = { "m74hubble.jpg", "catarina.jpg", "tahiti.jpg", "sunset.jpg", "lake.jpg" };
+
+	private static final int SCREEN_WIDTH = 1080, SCREEN_HEIGHT = 1920;
+
+	/** Frames of movement in each gesture, and samples batched into the event of each frame, as for a 240Hz touch sensor read at 60Hz */
+	private static final int GESTURE_FRAMES = 120, SAMPLES_PER_FRAME = 4;
+
+	/** Time between samples (ms) */
+	private static final long SAMPLE_INTERVAL = 4;
+
+	/** The drag is a figure of eight this many pixels wide, around the middle of the screen */
+	private static final float DRAG_SIZE = 600;
+
+	/** The fingers of the pinch start and end this far apart (pixels), and come together to a quarter of it, zooming out by 4 */
+	private static final float PINCH_SPREAD = 800;
+
+	/** Untimed replays before the timed ones, to let the JIT compile the code being measured */
+	private static final int WARMUP_REPLAYS = 5;
+
+	/** Usage: PhotoSortrDrawBenchmark [replays [drawableDir]]. Prints one line per scene size. */
+	public static void main(String[] args) {
+		int replays = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		File drawableDir = new File(args.length > 1 ? args[1] : "MTPhotoSortr/res/drawable");
+		DisplayMetrics metrics = new DisplayMetrics();
+		metrics.widthPixels = SCREEN_WIDTH;
+		metrics.heightPixels = SCREEN_HEIGHT;
+		Resources res = new Resources(metrics, new Configuration());
+		for (int i = 0; i < IMAGE_FILES.length; i++) {
+			File file = new File(drawableDir, IMAGE_FILES[i]);
+			if (!file.isFile())
+				throw new IllegalArgumentException(file + " not found; run from the top of the repository or give the drawable dir");
+			res.putDrawableFile(PhotoSortrView.IMAGES[i], file);
+		}
+		PhotoSortrDrawBenchmark benchmark = new PhotoSortrDrawBenchmark();
+		for (int i = 0; i < SCENE_SIZES.length; i++)
+			System.out.println(benchmark.run(res, SCENE_SIZES[i], replays));
+	}
+
+	// ------------------------------------------------------------------------------------
+
+	/** The drag then the pinch, one event per frame */
+	private final MotionEvent[] events;
+
+	private final Canvas canvas = new Canvas(Bitmap.createBitmap(SCREEN_WIDTH, SCREEN_HEIGHT, Bitmap.Config.ARGB_8888));
+
+	/** Frames in which the view was drawn, since the last reset */
+	private long drawnFrames;
+
+	private PhotoSortrDrawBenchmark() {
+		SyntheticEvents synth = new SyntheticEvents();
+		ArrayList<MotionEvent> list = new ArrayList<MotionEvent>();
+		int[] ptrIds = { 0, 1 };
+		float[] xs = new float[2], ys = new float[2], pressures = { 1.0f, 1.0f };
+		// Event times are in the SystemClock.uptimeMillis() time base, which the view's journal uses too
+		long eventTime = SystemClock.uptimeMillis();
+
+		setDrag(0, xs, ys);
+		list.add(synth.obtain(MotionEvent.ACTION_DOWN, eventTime, 1, ptrIds, xs, ys, pressures));
+		for (int frame = 0; frame < GESTURE_FRAMES; frame++) {
+			MotionEvent event = null;
+			for (int i = 1; i <= SAMPLES_PER_FRAME; i++) {
+				eventTime += SAMPLE_INTERVAL;
+				setDrag((frame * SAMPLES_PER_FRAME + i) / (float) (GESTURE_FRAMES * SAMPLES_PER_FRAME), xs, ys);
+				if (event == null)
+					event = synth.obtain(MotionEvent.ACTION_MOVE, eventTime, 1, ptrIds, xs, ys, pressures);
+				else
+					synth.addBatch(event, eventTime, 1, xs, ys, pressures);
+			}
+			list.add(event);
+		}
+		list.add(synth.obtain(MotionEvent.ACTION_UP, eventTime += SAMPLE_INTERVAL, 1, ptrIds, xs, ys, pressures));
+
+		setPinch(0, xs, ys);
+		list.add(synth.obtain(MotionEvent.ACTION_DOWN, eventTime += SAMPLE_INTERVAL, 1, ptrIds, xs, ys, pressures));
+		list.add(synth.obtain(MotionEvent.ACTION_POINTER_DOWN | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT), eventTime += SAMPLE_INTERVAL, 2,
+				ptrIds, xs, ys, pressures));
+		for (int frame = 0; frame < GESTURE_FRAMES; frame++) {
+			MotionEvent event = null;
+			for (int i = 1; i <= SAMPLES_PER_FRAME; i++) {
+				eventTime += SAMPLE_INTERVAL;
+				setPinch((frame * SAMPLES_PER_FRAME + i) / (float) (GESTURE_FRAMES * SAMPLES_PER_FRAME), xs, ys);
+				if (event == null)
+					event = synth.obtain(MotionEvent.ACTION_MOVE, eventTime, 2, ptrIds, xs, ys, pressures);
+				else
+					synth.addBatch(event, eventTime, 2, xs, ys, pressures);
+			}
+			list.add(event);
+		}
+		list.add(synth.obtain(MotionEvent.ACTION_POINTER_UP | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT), eventTime += SAMPLE_INTERVAL, 2,
+				ptrIds, xs, ys, pressures));
+		list.add(synth.obtain(MotionEvent.ACTION_UP, eventTime += SAMPLE_INTERVAL, 1, ptrIds, xs, ys, pressures));
+		events = list.toArray(new MotionEvent[list.size()]);
+	}
+
+	/** The finger of the drag at the given fraction of the way along it: a figure of eight that starts and ends in the middle of the screen */
+	private static void setDrag(float t, float[] xs, float[] ys) {
+		double a = 2 * Math.PI * t;
+		xs[0] = SCREEN_WIDTH / 2 + DRAG_SIZE / 2 * (float) Math.sin(a);
+		ys[0] = SCREEN_HEIGHT / 2 + DRAG_SIZE / 4 * (float) Math.sin(2 * a);
+	}
+
+	/** The fingers of the pinch at the given fraction of the way through it: they come together and turn a little, then go back */
+	private static void setPinch(float t, float[] xs, float[] ys) {
+		double a = Math.PI * t;
+		float r = PINCH_SPREAD / 2 * (1.0f - 0.75f * (float) Math.sin(a)), angle = 0.5f * (float) Math.sin(a);
+		float dx = r * (float) Math.cos(angle), dy = r * (float) Math.sin(angle);
+		xs[0] = SCREEN_WIDTH / 2 - dx;
+		ys[0] = SCREEN_HEIGHT / 2 - dy;
+		xs[1] = SCREEN_WIDTH / 2 + dx;
+		ys[1] = SCREEN_HEIGHT / 2 + dy;
+	}
+
+	/** Benchmark a new scene of sceneSize images, returning a line describing the results */
+	private String run(Resources res, int sceneSize, int replays) {
+		File filesDir = createTempDir();
+		try {
+			BenchmarkContext context = new BenchmarkContext(res, filesDir);
+			PhotoSortrView view = new PhotoSortrView(context, sceneSize);
+			view.layout(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+			view.loadImages(context);
+			try {
+				for (int i = 0; i < WARMUP_REPLAYS; i++)
+					replay(view, null);
+				FrameMeter meter = new FrameMeter(replays * events.length);
+				canvas.resetCounts();
+				drawnFrames = 0;
+				meter.start();
+				for (int i = 0; i < replays; i++)
+					replay(view, meter);
+				meter.stop();
+				return String.format("%5d images: %s; drawn in %d of %d frames, %.1f draw calls and %.2f Mpx of bitmaps per frame drawn", sceneSize,
+						meter.summary(), drawnFrames, meter.getFrames(), (double) canvas.getDrawCalls() / Math.max(1, drawnFrames),
+						canvas.getBitmapPixels() / 1e6 / Math.max(1, drawnFrames));
+			} finally {
+				view.unloadImages();
+				view.close();
+			}
+		} finally {
+			File[] files = filesDir.listFiles();
+			for (int i = 0; files != null && i < files.length; i++)
+				files[i].delete();
+			filesDir.delete();
+		}
+	}
+
+	/** Run one frame per event, as the UI thread does: dispatch the event, run the frame callbacks, and draw the view if it was invalidated */
+	private void replay(PhotoSortrView view, FrameMeter meter) {
+		Choreographer choreographer = Choreographer.getInstance();
+		for (int i = 0; i < events.length; i++) {
+			if (meter != null)
+				meter.startFrame();
+			view.onTouchEvent(events[i]);
+			choreographer.doFrame(events[i].getEventTime() * 1000000L);
+			if (view.isDirty()) {
+				view.draw(canvas);
+				drawnFrames++;
+			}
+			if (meter != null)
+				meter.endFrame();
+		}
+	}
+
+	private static File createTempDir() {
+		try {
+			File dir = File.createTempFile("photosortr", "");
+			if (!dir.delete() || !dir.mkdir())
+				throw new IllegalStateException("could not create " + dir);
+			return dir;
+		} catch (IOException e) {
+			throw new IllegalStateException("could not create a temporary directory", e);
+		}
+	}
+
+	/** The app's Context: its resources, and a files dir for the saved scene */
+	private static class BenchmarkContext extends Context {
+		private final Resources res;
+
+		private final File filesDir;
+
+		BenchmarkContext(Resources res, File filesDir) {
+			this.res = res;
+			this.filesDir = filesDir;
+		}
+
+		@Override
+		public Resources getResources() {
+			return res;
+		}
+
+		@Override
+		public File getFilesDir() {
+			return filesDir;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ * TransformJournalCheck.java
+ *
+ * (c) Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.metalev.multitouch.photosortr;
+
+/**
+ * Checks of TransformJournal's undo, redo and seeking, in particular for gestures with keyframes in which an object ends where it started, and of
+ * the limit on the keyframes of one gesture. Run it with main() on a JVM (it needs nothing from Android); it prints each failed check and exits
+ * with status 1 if there were any.
+ */
+public class TransformJournalCheck implements TransformJournal.Target {
+
+	private static final long KEYFRAME_INTERVAL = 250;
+
+	/** The scene: the transform of each object, as centerX, centerY, scale, angle */
+	private final float[][] objs = new float[100][];
+
+	private final TransformJournal journal;
+
+	private int failures;
+
+	private TransformJournalCheck(int byteBudget) {
+		journal = new TransformJournal(byteBudget, 0L);
+	}
+
+	public void setTransform(int id, float centerX, float centerY, float scaleX, float scaleY, float angle) {
+		objs[id] = new float[] { centerX, centerY, scaleX, angle };
+	}
+
+	public static void main(String[] args) {
+		int failures = new TransformJournalCheck(4096).singleObject() + new TransformJournalCheck(4096).group()
+				+ new TransformJournalCheck(64 * 1024).longGroupGesture();
+		System.out.println(failures == 0 ? "All checks passed" : failures + " checks failed");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/** One object is moved, then picked up, moved about for long enough to be keyframed, and put back where it started */
+	private int singleObject() {
+		setTransform(0, 100, 100, 1, 1, 0);
+		gesture(new int[] { 0 }, new float[][] { { 200, 100 } }, new float[][] { { 300, 300 } }, 1000);
+		gesture(new int[] { 0 }, new float[][] { { 500, 500 } }, new float[][] { { 300, 300 } }, 2000);
+		expect("after return-to-start gesture", 0, 300, 300);
+
+		journal.undo(this);
+		expect("undo skips the gesture that moved nothing", 0, 100, 100);
+		check("nothing left to undo", !journal.canUndo());
+		journal.redo(this);
+		expect("redo", 0, 300, 300);
+		check("nothing left to redo", !journal.canRedo());
+
+		journal.seek(2000 + KEYFRAME_INTERVAL, this);
+		expect("seek into return-to-start gesture", 0, 300, 300);
+		journal.seek(1000 + KEYFRAME_INTERVAL, this);
+		expect("seek to keyframe of first gesture", 0, 200, 100);
+		journal.seek(0, this);
+		expect("seek to start", 0, 100, 100);
+		journal.seek(journal.getEndTime(), this);
+		expect("seek to end", 0, 300, 300);
+		return failures;
+	}
+
+	/** A group of two objects is moved with keyframes; one ends where it started, the other does not */
+	private int group() {
+		setTransform(0, 100, 100, 1, 1, 0);
+		setTransform(1, 400, 100, 1, 1, 0);
+		gesture(new int[] { 0, 1 }, new float[][] { { 150, 150 }, { 450, 150 } }, new float[][] { { 200, 200 }, { 400, 100 } }, 1000);
+		expect("after gesture", 0, 200, 200);
+		expect("after gesture", 1, 400, 100);
+
+		journal.undo(this);
+		expect("undo", 0, 100, 100);
+		expect("undo", 1, 400, 100);
+		journal.redo(this);
+		expect("redo moves the object that moved", 0, 200, 200);
+		expect("redo leaves the object that came back where it ended, not at its keyframe", 1, 400, 100);
+
+		journal.seek(1000 + KEYFRAME_INTERVAL, this);
+		expect("seek to keyframe", 0, 150, 150);
+		expect("seek to keyframe", 1, 450, 150);
+		journal.seek(journal.getEndTime(), this);
+		expect("seek to end", 0, 200, 200);
+		expect("seek to end", 1, 400, 100);
+		journal.seek(0, this);
+		journal.undo(this);
+		expect("undo at start does nothing", 0, 100, 100);
+		return failures;
+	}
+
+	/**
+	 * One object is moved, then a large group is moved about for a minute, keyframed the way PhotoSortrView does it. The group's keyframes must not
+	 * push the first gesture out of the journal.
+	 */
+	private int longGroupGesture() {
+		int n = objs.length;
+		for (int i = 0; i < n; i++)
+			setTransform(i, 100 + i * 10, 100, 1, 1, 0);
+		gesture(new int[] { 0 }, new float[][] { { 50, 50 } }, new float[][] { { 60, 60 } }, 1000);
+
+		for (int i = 0; i < n; i++) {
+			float[] o = objs[i];
+			journal.begin(i, o[0], o[1], o[2], o[2], o[3]);
+		}
+		long time = 2000;
+		for (int step = 1; step <= 60000 / KEYFRAME_INTERVAL; step++) {
+			time += KEYFRAME_INTERVAL;
+			if (!journal.canKeyframe(n))
+				continue;
+			for (int i = 0; i < n; i++)
+				journal.keyframe(i, 100 + i * 10 + step, 100 + step, 1, 1, 0, time);
+		}
+		for (int i = 0; i < n; i++) {
+			setTransform(i, 100 + i * 10 + 500, 600, 1, 1, 0);
+			journal.end(i, 100 + i * 10 + 500, 600, 1, 1, 0, time);
+		}
+		journal.endGesture();
+
+		journal.undo(this);
+		expect("undo group gesture", 0, 60, 60);
+		expect("undo group gesture", n - 1, 100 + (n - 1) * 10, 100);
+		check("first gesture still in the journal", journal.canUndo());
+		journal.undo(this);
+		expect("undo first gesture", 0, 100, 100);
+		journal.redo(this);
+		journal.redo(this);
+		expect("redo group gesture", n - 1, 100 + (n - 1) * 10 + 500, 600);
+		return failures;
+	}
+
+	/** Journal a gesture starting at startTime that moves objects ids to keyframe positions, then to end positions */
+	private void gesture(int[] ids, float[][] keyframes, float[][] ends, long startTime) {
+		for (int i = 0; i < ids.length; i++) {
+			float[] o = objs[ids[i]];
+			journal.begin(ids[i], o[0], o[1], o[2], o[2], o[3]);
+		}
+		for (int i = 0; i < ids.length; i++) {
+			setTransform(ids[i], keyframes[i][0], keyframes[i][1], 1, 1, 0);
+			journal.keyframe(ids[i], keyframes[i][0], keyframes[i][1], 1, 1, 0, startTime + KEYFRAME_INTERVAL);
+		}
+		for (int i = 0; i < ids.length; i++) {
+			setTransform(ids[i], ends[i][0], ends[i][1], 1, 1, 0);
+			journal.end(ids[i], ends[i][0], ends[i][1], 1, 1, 0, startTime + 2 * KEYFRAME_INTERVAL);
+		}
+		journal.endGesture();
+	}
+
+	private void expect(String what, int id, float centerX, float centerY) {
+		float[] o = objs[id];
+		check(what + ": object " + id + " at (" + o[0] + ", " + o[1] + "), expected (" + centerX + ", " + centerY + ")",
+				Math.abs(o[0] - centerX) < 0.5f && Math.abs(o[1] - centerY) < 0.5f);
+	}
+
+	private void check(String what, boolean ok) {
+		if (!ok) {
+			System.out.println("FAILED: " + what);
+			failures++;
+		}
+	}
+}
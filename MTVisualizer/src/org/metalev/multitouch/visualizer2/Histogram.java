@@ -0,0 +1,79 @@
+/**
+ * Histogram.java
+ *
+ * (c) Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.metalev.multitouch.visualizer2;
+
+/**
+ * A fixed-size histogram of small non-negative integer values (e.g. times in ms), with one bucket per value up to a maximum and an overflow bucket
+ * above that. Adding a value and reading a percentile never allocate.
+ */
+class Histogram {
+	private final int[] buckets;
+
+	private int count, max;
+
+	/** Values in the range [0, maxValue] get their own bucket, larger values are counted as maxValue + 1. */
+	Histogram(int maxValue) {
+		buckets = new int[maxValue + 2];
+	}
+
+	void add(int value) {
+		if (value < 0)
+			value = 0;
+		else if (value >= buckets.length)
+			value = buckets.length - 1;
+		buckets[value]++;
+		count++;
+		if (value > max)
+			max = value;
+	}
+
+	void clear() {
+		for (int i = 0; i < buckets.length; i++)
+			buckets[i] = 0;
+		count = max = 0;
+	}
+
+	int getCount() {
+		return count;
+	}
+
+	/** The largest value added, or maxValue + 1 if there were any values above maxValue. */
+	int getMax() {
+		return max;
+	}
+
+	/** The smallest value v such that at least percent% of values are <= v, or 0 if the histogram is empty. */
+	int getPercentile(int percent) {
+		int target = (int) (((long) count * percent + 99) / 100);
+		if (target == 0)
+			return 0;
+		int cumulative = 0;
+		for (int i = 0; i <= max; i++) {
+			cumulative += buckets[i];
+			if (cumulative >= target)
+				return i;
+		}
+		return max;
+	}
+}
@@ -36,6 +36,7 @@ import android.graphics.Rect;
 import android.graphics.Typeface;
 import android.graphics.Paint.Align;
 import android.graphics.Paint.Style;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.MotionEvent;
@@ -74,7 +75,66 @@ public class MultiTouchVisualizerView extends View implements MultiTouchObjectCa
 
 	private Paint mAngLabelBg = new Paint();
 
-	private int[] mTouchPointColors = new int[MultiTouchController.MAX_TOUCH_POINTS];
+	/** Per touch point index, grown by ensurePointCapacity() */
+	private int[] mTouchPointColors = new int[0];
+
+	// -- Preallocated text buffers, so that onDraw() doesn't allocate anything
+
+	private static final char[] PINCH_LABEL_PREFIX = "Pinch dist: ".toCharArray();
+
+	private static final char[] POINT_ID_PREFIX = "(id:".toCharArray();
+
+	/** Long enough for any label or stats line */
+	private char[] mLabelBuf = new char[128];
+
+	/** Widths of infoLines as measured by mTouchTheScreenLabelPaint, which doesn't change */
+	private int[] mInfoLineWidths = new int[infoLines.length];
+
+	// -- Input sampling and latency statistics, shown as an overlay. All times are in ms.
+
+	/** Whether to show the statistics overlay */
+	private boolean mShowStats = true;
+
+	/** Times above this many ms are all counted in the same overflow bucket */
+	private static final int STATS_MAX_MS = 250;
+
+	/** Per pointer id: histogram of intervals between successive samples */
+	private Histogram[] mSampleIntervalHists = new Histogram[0];
+
+	/** Per pointer id: event time of the last sample, and the sample sequence number it was seen in */
+	private long[] mLastSampleTimes = new long[0];
+
+	private int[] mLastSampleSeqs = new int[0];
+
+	/** Incremented once per sample received from the controller */
+	private int mSampleSeq;
+
+	/** Number of samples (historical plus current) per ACTION_MOVE MotionEvent */
+	private Histogram mBatchSizeHist = new Histogram(64);
+
+	/** Time between a sample's event time and the start of the first onDraw() that shows it */
+	private Histogram mLatencyHist = new Histogram(STATS_MAX_MS);
+
+	/** Event time of the sample shown by the last onDraw() */
+	private long mLastDrawnEventTime = -1;
+
+	private Paint mStatsPaint = new Paint();
+
+	private static final char[] LATENCY_LABEL = "touch-to-draw ms: p50 ".toCharArray();
+
+	private static final char[] BATCH_LABEL = "samples/event: p50 ".toCharArray();
+
+	private static final char[] POINTER_LABEL = "ptr ".toCharArray();
+
+	private static final char[] HZ_LABEL = " Hz  dt p50 ".toCharArray();
+
+	private static final char[] JITTER_LABEL = "  jitter ".toCharArray();
+
+	private static final char[] P95_LABEL = " p95 ".toCharArray();
+
+	private static final char[] MAX_LABEL = " max ".toCharArray();
+
+	private static final char[] N_LABEL = "  n ".toCharArray();
 
 	// ------------------------------------------------------------------------------------
 
@@ -140,12 +200,24 @@ public class MultiTouchVisualizerView extends View implements MultiTouchObjectCa
 		mAngLabelBg.setStrokeWidth(15);
 		setBackgroundColor(Color.BLACK);
 
-		for (int i = 0; i < MultiTouchController.MAX_TOUCH_POINTS; i++)
-			mTouchPointColors[i] = i < TOUCH_COLORS.length ? TOUCH_COLORS[i] : (int) (Math.random() * 0xffffff) + 0xff000000;
+		ensurePointCapacity(MultiTouchController.MAX_TOUCH_POINTS);
+
+		mStatsPaint.setColor(Color.WHITE);
+		mStatsPaint.setTextSize(18);
+		mStatsPaint.setTypeface(Typeface.MONOSPACE);
+		mStatsPaint.setAntiAlias(true);
+
+		Rect bounds = new Rect();
+		for (int i = 0; i < infoLines.length; i++) {
+			mTouchTheScreenLabelPaint.getTextBounds(infoLines[i], 0, infoLines[i].length(), bounds);
+			mInfoLineWidths[i] = bounds.width();
+		}
 	}
 
 	@Override
 	public boolean onTouchEvent(MotionEvent event) {
+		if (event.getAction() == MotionEvent.ACTION_MOVE)
+			mBatchSizeHist.add(event.getHistorySize() + 1);
 		// Pass the event on to the controller
 		return multiTouchController.onTouchEvent(event);
 	}
@@ -177,16 +249,138 @@ public class MultiTouchVisualizerView extends View implements MultiTouchObjectCa
 	 * @param touchPoint
 	 */
 	private void touchPointChanged(PointInfo touchPoint) {
-		// Take a snapshot of touch point info, the touch point is volatile
-		mCurrTouchPoint.set(touchPoint);
+		recordSample(touchPoint);
+		// Keep the touch point for drawing: retain it so that the controller doesn't reuse it, rather than copying it
+		if (touchPoint != mCurrTouchPoint) {
+			mCurrTouchPoint.release();
+			touchPoint.retain();
+			mCurrTouchPoint = touchPoint;
+		}
 		invalidate();
 	}
 
-	private void paintText(Canvas canvas, String msg, float vPos) {
-		Rect bounds = new Rect();
-		int msgLen = msg.length();
-		mTouchTheScreenLabelPaint.getTextBounds(msg, 0, msgLen, bounds);
-		canvas.drawText(msg, (canvas.getWidth() - bounds.width()) * .5f, vPos, mTouchTheScreenLabelPaint);
+	/**
+	 * Grow the per-point colors and statistics to cover at least numPoints touch point indices and pointer ids. Only allocates the first time more
+	 * touch points are seen than ever before, never in onDraw().
+	 */
+	private void ensurePointCapacity(int numPoints) {
+		int oldCapacity = mTouchPointColors.length;
+		if (numPoints <= oldCapacity)
+			return;
+		int capacity = Math.max(numPoints, oldCapacity * 2);
+		int[] colors = new int[capacity];
+		Histogram[] hists = new Histogram[capacity];
+		long[] times = new long[capacity];
+		int[] seqs = new int[capacity];
+		System.arraycopy(mTouchPointColors, 0, colors, 0, oldCapacity);
+		System.arraycopy(mSampleIntervalHists, 0, hists, 0, oldCapacity);
+		System.arraycopy(mLastSampleTimes, 0, times, 0, oldCapacity);
+		System.arraycopy(mLastSampleSeqs, 0, seqs, 0, oldCapacity);
+		for (int i = oldCapacity; i < capacity; i++) {
+			colors[i] = i < TOUCH_COLORS.length ? TOUCH_COLORS[i] : (int) (Math.random() * 0xffffff) + 0xff000000;
+			hists[i] = new Histogram(STATS_MAX_MS);
+		}
+		mTouchPointColors = colors;
+		mSampleIntervalHists = hists;
+		mLastSampleTimes = times;
+		mLastSampleSeqs = seqs;
+	}
+
+	/** Add the intervals since each pointer's previous sample to the per-pointer histograms */
+	private void recordSample(PointInfo touchPoint) {
+		int seq = ++mSampleSeq;
+		if (!touchPoint.isDown())
+			return;
+		long eventTime = touchPoint.getEventTime();
+		int numPoints = touchPoint.getNumTouchPoints();
+		int[] pointerIds = touchPoint.getPointerIds();
+		ensurePointCapacity(numPoints);
+		for (int i = 0; i < numPoints; i++) {
+			// (Pointer ids are not read from single-touch events)
+			int id = numPoints == 1 ? 0 : pointerIds[i];
+			if (id < 0)
+				continue;
+			ensurePointCapacity(id + 1);
+			// Only count intervals where the pointer was also present in the previous sample
+			if (mLastSampleSeqs[id] == seq - 1)
+				mSampleIntervalHists[id].add((int) (eventTime - mLastSampleTimes[id]));
+			mLastSampleTimes[id] = eventTime;
+			mLastSampleSeqs[id] = seq;
+		}
+	}
+
+	/** Draw the sampling and latency statistics overlay, one line per pointer id that has been seen */
+	private void drawStats(Canvas canvas) {
+		float spacing = mStatsPaint.getFontSpacing(), y = spacing;
+
+		int len = appendChars(mLabelBuf, 0, LATENCY_LABEL);
+		len = appendPercentiles(mLabelBuf, len, mLatencyHist);
+		mStatsPaint.setColor(Color.WHITE);
+		canvas.drawText(mLabelBuf, 0, len, 4, y, mStatsPaint);
+		y += spacing;
+
+		len = appendChars(mLabelBuf, 0, BATCH_LABEL);
+		len = appendPercentiles(mLabelBuf, len, mBatchSizeHist);
+		canvas.drawText(mLabelBuf, 0, len, 4, y, mStatsPaint);
+		y += spacing;
+
+		for (int id = 0; id < mSampleIntervalHists.length; id++) {
+			Histogram hist = mSampleIntervalHists[id];
+			if (hist.getCount() == 0)
+				continue;
+			int p50 = hist.getPercentile(50);
+			len = appendChars(mLabelBuf, 0, POINTER_LABEL);
+			len = appendInt(mLabelBuf, len, id + 1);
+			mLabelBuf[len++] = ':';
+			mLabelBuf[len++] = ' ';
+			len = appendInt(mLabelBuf, len, p50 == 0 ? 0 : 1000 / p50);
+			len = appendChars(mLabelBuf, len, HZ_LABEL);
+			len = appendInt(mLabelBuf, len, p50);
+			len = appendChars(mLabelBuf, len, P95_LABEL);
+			len = appendInt(mLabelBuf, len, hist.getPercentile(95));
+			len = appendChars(mLabelBuf, len, JITTER_LABEL);
+			len = appendInt(mLabelBuf, len, hist.getPercentile(95) - hist.getPercentile(5));
+			len = appendChars(mLabelBuf, len, N_LABEL);
+			len = appendInt(mLabelBuf, len, hist.getCount());
+			mStatsPaint.setColor(mTouchPointColors[id]);
+			canvas.drawText(mLabelBuf, 0, len, 4, y, mStatsPaint);
+			y += spacing;
+		}
+	}
+
+	/** Append "p50 p95 max" values of hist (the "p50 " label is expected to have been written already) */
+	private static int appendPercentiles(char[] buf, int pos, Histogram hist) {
+		pos = appendInt(buf, pos, hist.getPercentile(50));
+		pos = appendChars(buf, pos, P95_LABEL);
+		pos = appendInt(buf, pos, hist.getPercentile(95));
+		pos = appendChars(buf, pos, MAX_LABEL);
+		return appendInt(buf, pos, hist.getMax());
+	}
+
+	private void paintInfoLine(Canvas canvas, int lineIdx, float vPos) {
+		canvas.drawText(infoLines[lineIdx], (canvas.getWidth() - mInfoLineWidths[lineIdx]) * .5f, vPos, mTouchTheScreenLabelPaint);
+	}
+
+	/** Copy chars into buf at pos, returning the position after the last char written */
+	private static int appendChars(char[] buf, int pos, char[] chars) {
+		System.arraycopy(chars, 0, buf, pos, chars.length);
+		return pos + chars.length;
+	}
+
+	/** Write the decimal digits of val into buf at pos without allocating, returning the position after the last digit */
+	private static int appendInt(char[] buf, int pos, int val) {
+		if (val < 0) {
+			buf[pos++] = '-';
+			val = -val;
+		}
+		int end = pos;
+		for (int v = val; v >= 10; v /= 10)
+			end++;
+		for (int i = end; i >= pos; i--) {
+			buf[i] = (char) ('0' + val % 10);
+			val /= 10;
+		}
+		return end + 1;
 	}
 
 	private static final String[] infoLines = { "Touch the screen", "with one or more", "fingers to test", "multitouch", "characteristics" };
@@ -194,6 +388,13 @@ public class MultiTouchVisualizerView extends View implements MultiTouchObjectCa
 	@Override
 	protected void onDraw(Canvas canvas) {
 		super.onDraw(canvas);
+		if (mCurrTouchPoint.isDown() && mCurrTouchPoint.getEventTime() != mLastDrawnEventTime) {
+			// Event times are in the SystemClock.uptimeMillis() time base
+			mLastDrawnEventTime = mCurrTouchPoint.getEventTime();
+			mLatencyHist.add((int) (SystemClock.uptimeMillis() - mLastDrawnEventTime));
+		}
+		if (mShowStats)
+			drawStats(canvas);
 		if (mCurrTouchPoint.isDown()) {
 			int numPoints = mCurrTouchPoint.getNumTouchPoints();
 			float[] xs = mCurrTouchPoint.getXs();
@@ -255,12 +456,13 @@ public class MultiTouchVisualizerView extends View implements MultiTouchObjectCa
 					ang += 180.0f;
 				else if (ang > 91.0f)
 					ang -= 180.0f;
-				String angStr = "Pinch dist: " + Math.round(mCurrTouchPoint.getMultiTouchDiameter());
+				int len = appendChars(mLabelBuf, 0, PINCH_LABEL_PREFIX);
+				len = appendInt(mLabelBuf, len, Math.round(mCurrTouchPoint.getMultiTouchDiameter()));
 				canvas.save();
 				canvas.translate(x, y);
 				canvas.rotate(ang);
-				canvas.drawText(angStr, 0, -10, mAngLabelBg);
-				canvas.drawText(angStr, 0, -10, mAngLabelPaint);
+				canvas.drawText(mLabelBuf, 0, len, 0, -10, mAngLabelBg);
+				canvas.drawText(mLabelBuf, 0, len, 0, -10, mAngLabelPaint);
 				canvas.restore();
 			}
 
@@ -277,15 +479,20 @@ public class MultiTouchVisualizerView extends View implements MultiTouchObjectCa
 				int id = pointerIds[idx];
 				mPointLabelPaint.setColor(mTouchPointColors[idx]);
 				float r = 70 + pressures[idx] * 120, d = r * .71f;
-				String label = (idx + 1) + (idx == id ? "" : "(id:" + (id + 1) + ")");
-				canvas.drawText(label, xs[idx] + d, ys[idx] - d, mPointLabelBg);
-				canvas.drawText(label, xs[idx] + d, ys[idx] - d, mPointLabelPaint);
+				int len = appendInt(mLabelBuf, 0, idx + 1);
+				if (idx != id) {
+					len = appendChars(mLabelBuf, len, POINT_ID_PREFIX);
+					len = appendInt(mLabelBuf, len, id + 1);
+					mLabelBuf[len++] = ')';
+				}
+				canvas.drawText(mLabelBuf, 0, len, xs[idx] + d, ys[idx] - d, mPointLabelBg);
+				canvas.drawText(mLabelBuf, 0, len, xs[idx] + d, ys[idx] - d, mPointLabelPaint);
 			}
 		} else {
 			float spacing = mTouchTheScreenLabelPaint.getFontSpacing();
 			float totHeight = spacing * infoLines.length;
 			for (int i = 0; i < infoLines.length; i++)
-				paintText(canvas, infoLines[i], (canvas.getHeight() - totHeight) * .5f + i * spacing);
+				paintInfoLine(canvas, i, (canvas.getHeight() - totHeight) * .5f + i * spacing);
 		}
 	}
 }
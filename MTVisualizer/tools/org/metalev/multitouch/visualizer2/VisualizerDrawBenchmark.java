@@ -0,0 +1,192 @@
+/**
+ * VisualizerDrawBenchmark.java
+ *
+ * (c) Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.metalev.multitouch.visualizer2;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import org.metalev.multitouch.controller.FrameMeter;
+import org.metalev.multitouch.controller.SyntheticEvents;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.util.DisplayMetrics;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+
+/**
+ * Measures the time and allocations per frame of MultiTouchVisualizerView with 1 to 10 fingers down. For each number of fingers it replays a
+ * gesture in which the fingers go down one by one, circle the middle of the screen while spreading and closing, and go up again, one MotionEvent
+ * (batching several touch samples) per display frame, and runs each frame as the UI thread would: onTouchEvent(), then the Choreographer's frame
+ * callbacks, then draw() if the view was invalidated. The Canvas is the one in tools/android-standin, which counts draw calls rather than
+ * rasterizing, so the times are those of the view's own work (the statistics overlay, labels and marks) and not of drawing pixels; compare
+ * versions of the view on the same machine.
+ *
+ * Run it with tools/run.sh: tools/run.sh org.metalev.multitouch.visualizer2.VisualizerDrawBenchmark [replays]
+ */
+public class VisualizerDrawBenchmark {
+
+	private static final int[] FINGER_COUNTS = { 1, 2, 5, 10 };
+
+	private static final int SCREEN_WIDTH = 1080, SCREEN_HEIGHT = 1920;
+
+	/** Frames of movement with all the fingers down, and samples batched into the event of each frame, as for a 240Hz sensor read at 60Hz */
+	private static final int GESTURE_FRAMES = 240, SAMPLES_PER_FRAME = 4;
+
+	/** Time between samples (ms) */
+	private static final long SAMPLE_INTERVAL = 4;
+
+	/** The fingers circle the middle of the screen at this distance from it (pixels), give or take a third */
+	private static final float CIRCLE_RADIUS = 300;
+
+	/** Untimed replays before the timed ones, to let the JIT compile the code being measured */
+	private static final int WARMUP_REPLAYS = 5;
+
+	/** Usage: VisualizerDrawBenchmark [replays]. Prints one line per number of fingers. */
+	public static void main(String[] args) {
+		int replays = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		DisplayMetrics metrics = new DisplayMetrics();
+		metrics.widthPixels = SCREEN_WIDTH;
+		metrics.heightPixels = SCREEN_HEIGHT;
+		Resources res = new Resources(metrics, new Configuration());
+		for (int i = 0; i < FINGER_COUNTS.length; i++)
+			System.out.println(new VisualizerDrawBenchmark(FINGER_COUNTS[i]).run(res, replays));
+	}
+
+	// ------------------------------------------------------------------------------------
+
+	private final int numFingers;
+
+	/** The gesture, one event per frame */
+	private final MotionEvent[] events;
+
+	private final Canvas canvas = new Canvas(Bitmap.createBitmap(SCREEN_WIDTH, SCREEN_HEIGHT, Bitmap.Config.ARGB_8888));
+
+	/** Frames in which the view was drawn, since the last reset */
+	private long drawnFrames;
+
+	private VisualizerDrawBenchmark(int numFingers) {
+		this.numFingers = numFingers;
+		SyntheticEvents synth = new SyntheticEvents();
+		ArrayList<MotionEvent> list = new ArrayList<MotionEvent>();
+		int[] ptrIds = new int[numFingers];
+		float[] xs = new float[numFingers], ys = new float[numFingers], pressures = new float[numFingers];
+		for (int i = 0; i < numFingers; i++) {
+			ptrIds[i] = i;
+			pressures[i] = 1.0f;
+		}
+		// Event times are in the SystemClock.uptimeMillis() time base, which the view's touch-to-draw latency statistics use too
+		long eventTime = SystemClock.uptimeMillis();
+
+		setFingers(0, xs, ys);
+		list.add(synth.obtain(MotionEvent.ACTION_DOWN, eventTime, 1, ptrIds, xs, ys, pressures));
+		for (int i = 1; i < numFingers; i++)
+			list.add(synth.obtain(MotionEvent.ACTION_POINTER_DOWN | (i << MotionEvent.ACTION_POINTER_INDEX_SHIFT), eventTime += SAMPLE_INTERVAL,
+					i + 1, ptrIds, xs, ys, pressures));
+		for (int frame = 0; frame < GESTURE_FRAMES; frame++) {
+			MotionEvent event = null;
+			for (int i = 1; i <= SAMPLES_PER_FRAME; i++) {
+				eventTime += SAMPLE_INTERVAL;
+				setFingers((frame * SAMPLES_PER_FRAME + i) / (float) (GESTURE_FRAMES * SAMPLES_PER_FRAME), xs, ys);
+				if (event == null)
+					event = synth.obtain(MotionEvent.ACTION_MOVE, eventTime, numFingers, ptrIds, xs, ys, pressures);
+				else
+					synth.addBatch(event, eventTime, numFingers, xs, ys, pressures);
+			}
+			list.add(event);
+		}
+		for (int i = numFingers - 1; i > 0; i--)
+			list.add(synth.obtain(MotionEvent.ACTION_POINTER_UP | (i << MotionEvent.ACTION_POINTER_INDEX_SHIFT), eventTime += SAMPLE_INTERVAL,
+					i + 1, ptrIds, xs, ys, pressures));
+		list.add(synth.obtain(MotionEvent.ACTION_UP, eventTime += SAMPLE_INTERVAL, 1, ptrIds, xs, ys, pressures));
+		events = list.toArray(new MotionEvent[list.size()]);
+	}
+
+	/** The fingers at the given fraction of the way through the gesture: evenly spaced on a circle that turns once and grows and shrinks */
+	private void setFingers(float t, float[] xs, float[] ys) {
+		float r = CIRCLE_RADIUS * (1.0f + (float) Math.sin(2 * Math.PI * t) / 3);
+		for (int i = 0; i < numFingers; i++) {
+			double a = 2 * Math.PI * (t + (double) i / numFingers);
+			xs[i] = SCREEN_WIDTH / 2 + r * (float) Math.cos(a);
+			ys[i] = SCREEN_HEIGHT / 2 + r * (float) Math.sin(a);
+		}
+	}
+
+	/** Benchmark a new view, returning a line describing the results */
+	private String run(Resources res, int replays) {
+		MultiTouchVisualizerView view = new MultiTouchVisualizerView(new BenchmarkContext(res));
+		view.layout(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+		for (int i = 0; i < WARMUP_REPLAYS; i++)
+			replay(view, null);
+		FrameMeter meter = new FrameMeter(replays * events.length);
+		canvas.resetCounts();
+		drawnFrames = 0;
+		meter.start();
+		for (int i = 0; i < replays; i++)
+			replay(view, meter);
+		meter.stop();
+		return String.format("%2d fingers: %s; drawn in %d of %d frames, %.1f draw calls per frame drawn", numFingers, meter.summary(),
+				drawnFrames, meter.getFrames(), (double) canvas.getDrawCalls() / Math.max(1, drawnFrames));
+	}
+
+	/** Run one frame per event, as the UI thread does: dispatch the event, run the frame callbacks, and draw the view if it was invalidated */
+	private void replay(MultiTouchVisualizerView view, FrameMeter meter) {
+		Choreographer choreographer = Choreographer.getInstance();
+		for (int i = 0; i < events.length; i++) {
+			if (meter != null)
+				meter.startFrame();
+			view.onTouchEvent(events[i]);
+			choreographer.doFrame(events[i].getEventTime() * 1000000L);
+			if (view.isDirty()) {
+				view.draw(canvas);
+				drawnFrames++;
+			}
+			if (meter != null)
+				meter.endFrame();
+		}
+	}
+
+	/** The app's Context, which only needs its resources */
+	private static class BenchmarkContext extends Context {
+		private final Resources res;
+
+		BenchmarkContext(Resources res) {
+			this.res = res;
+		}
+
+		@Override
+		public Resources getResources() {
+			return res;
+		}
+
+		@Override
+		public File getFilesDir() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package android.content.res;
+
+/**
+ * Resources.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Part of the plain-Java stand-in for the Android framework that the tools are compiled against to run them on a JVM (see tools/run.sh); it is
+ * never part of an app. There is no resource table: a tool constructs the Resources with the display it wants and says which file each drawable
+ * resource id is in, with putDrawableFile() (which the real Resources does not have).
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+import java.io.File;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.util.DisplayMetrics;
+import android.util.SparseArray;
+
+public class Resources {
+	private final DisplayMetrics mMetrics;
+
+	private final Configuration mConfiguration;
+
+	private final SparseArray<File> mDrawableFiles = new SparseArray<File>();
+
+	public Resources(DisplayMetrics metrics, Configuration config) {
+		mMetrics = metrics;
+		mConfiguration = config;
+	}
+
+	public DisplayMetrics getDisplayMetrics() {
+		return mMetrics;
+	}
+
+	public Configuration getConfiguration() {
+		return mConfiguration;
+	}
+
+	/** Stand-in only: the image file of a drawable resource id */
+	public void putDrawableFile(int id, File file) {
+		mDrawableFiles.put(id, file);
+	}
+
+	/** Stand-in only: the image file of a drawable resource id, see putDrawableFile() */
+	public File getDrawableFile(int id) {
+		File file = mDrawableFiles.get(id);
+		if (file == null)
+			throw new IllegalArgumentException("No file for drawable resource 0x" + Integer.toHexString(id) + ", see putDrawableFile()");
+		return file;
+	}
+
+	public Drawable getDrawable(int id) {
+		final Bitmap bitmap = BitmapFactory.decodeResource(this, id);
+		return new Drawable() {
+			@Override
+			public int getIntrinsicWidth() {
+				return bitmap.getWidth();
+			}
+
+			@Override
+			public int getIntrinsicHeight() {
+				return bitmap.getHeight();
+			}
+
+			@Override
+			public void draw(Canvas canvas) {
+				canvas.drawBitmap(bitmap, null, getBounds(), null);
+			}
+		};
+	}
+}
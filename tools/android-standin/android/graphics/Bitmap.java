@@ -0,0 +1,90 @@
+package android.graphics;
+
+/**
+ * Bitmap.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Part of the plain-Java stand-in for the Android framework that the tools are compiled against to run them on a JVM (see tools/run.sh); it is
+ * never part of an app. Only the size of a bitmap is kept, not its pixels, so every bitmap is opaque and reads as black.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+public final class Bitmap {
+	public enum Config {
+		ALPHA_8, RGB_565, ARGB_4444, ARGB_8888
+	}
+
+	private final int mWidth, mHeight;
+
+	private final Config mConfig;
+
+	private boolean mRecycled;
+
+	private Bitmap(int width, int height, Config config) {
+		mWidth = width;
+		mHeight = height;
+		mConfig = config;
+	}
+
+	public static Bitmap createBitmap(int width, int height, Config config) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("width and height must be > 0");
+		return new Bitmap(width, height, config);
+	}
+
+	public static Bitmap createScaledBitmap(Bitmap src, int dstWidth, int dstHeight, boolean filter) {
+		return createBitmap(dstWidth, dstHeight, src.mConfig);
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	public Config getConfig() {
+		return mConfig;
+	}
+
+	public boolean hasAlpha() {
+		return false;
+	}
+
+	public int getPixel(int x, int y) {
+		return 0xff000000;
+	}
+
+	public void getPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+		for (int row = 0; row < height; row++)
+			for (int col = 0; col < width; col++)
+				pixels[offset + row * stride + col] = 0xff000000;
+	}
+
+	public void recycle() {
+		mRecycled = true;
+	}
+
+	public boolean isRecycled() {
+		return mRecycled;
+	}
+}
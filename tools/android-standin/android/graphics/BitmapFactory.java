@@ -0,0 +1,63 @@
+package android.graphics;
+
+/**
+ * BitmapFactory.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Part of the plain-Java stand-in for the Android framework that the tools are compiled against to run them on a JVM (see tools/run.sh); it is
+ * never part of an app. Decoding only reads the size of the image from the header of its file (see Resources.putDrawableFile()).
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import android.content.res.Resources;
+
+public class BitmapFactory {
+	public static Bitmap decodeResource(Resources res, int id) {
+		File file = res.getDrawableFile(id);
+		try {
+			ImageInputStream in = ImageIO.createImageInputStream(file);
+			try {
+				Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+				if (!readers.hasNext())
+					return null;
+				ImageReader reader = readers.next();
+				try {
+					reader.setInput(in);
+					return Bitmap.createBitmap(reader.getWidth(0), reader.getHeight(0), Bitmap.Config.ARGB_8888);
+				} finally {
+					reader.dispose();
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package android.graphics;
+
+/**
+ * Canvas.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Part of the plain-Java stand-in for the Android framework that the tools are compiled against to run them on a JVM (see tools/run.sh); it is
+ * never part of an app. Nothing is rasterized. Instead the canvas counts draw calls and the device pixels covered by drawn bitmaps (from the
+ * scale of the current matrix), as a rough measure of the work a real canvas would have done; a tool reads and resets these with getDrawCalls(),
+ * getBitmapPixels() and resetCounts(), which the real Canvas does not have.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+public class Canvas {
+	private final int mWidth, mHeight;
+
+	/** The product of the scales applied by scale(), and the stack of it saved by save() */
+	private float mScaleX = 1.0f, mScaleY = 1.0f;
+
+	private float[] mSavedScales = new float[32];
+
+	private int mSaveCount;
+
+	private long mDrawCalls, mBitmapPixels;
+
+	public Canvas() {
+		this(0, 0);
+	}
+
+	public Canvas(Bitmap bitmap) {
+		this(bitmap.getWidth(), bitmap.getHeight());
+	}
+
+	private Canvas(int width, int height) {
+		mWidth = width;
+		mHeight = height;
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	public int save() {
+		if (2 * mSaveCount + 2 > mSavedScales.length) {
+			float[] newSaved = new float[mSavedScales.length * 2];
+			System.arraycopy(mSavedScales, 0, newSaved, 0, mSavedScales.length);
+			mSavedScales = newSaved;
+		}
+		mSavedScales[2 * mSaveCount] = mScaleX;
+		mSavedScales[2 * mSaveCount + 1] = mScaleY;
+		return ++mSaveCount;
+	}
+
+	public void restore() {
+		if (mSaveCount == 0)
+			throw new IllegalStateException("Underflow in restore");
+		mSaveCount--;
+		mScaleX = mSavedScales[2 * mSaveCount];
+		mScaleY = mSavedScales[2 * mSaveCount + 1];
+	}
+
+	public void translate(float dx, float dy) {
+	}
+
+	public void scale(float sx, float sy) {
+		mScaleX *= sx;
+		mScaleY *= sy;
+	}
+
+	public void rotate(float degrees) {
+	}
+
+	public void drawColor(int color) {
+		mDrawCalls++;
+	}
+
+	public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+		mDrawCalls++;
+	}
+
+	public void drawCircle(float cx, float cy, float radius, Paint paint) {
+		mDrawCalls++;
+	}
+
+	public void drawRect(RectF rect, Paint paint) {
+		mDrawCalls++;
+	}
+
+	public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+		mDrawCalls++;
+	}
+
+	public void drawText(String text, float x, float y, Paint paint) {
+		mDrawCalls++;
+	}
+
+	public void drawText(char[] text, int index, int count, float x, float y, Paint paint) {
+		mDrawCalls++;
+	}
+
+	public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+		mDrawCalls++;
+		mBitmapPixels += (long) Math.abs(dst.width() * mScaleX * dst.height() * mScaleY);
+	}
+
+	public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+		mDrawCalls++;
+		mBitmapPixels += (long) Math.abs(dst.width() * mScaleX * dst.height() * mScaleY);
+	}
+
+	/** Stand-in only: the number of draw calls since the last resetCounts() */
+	public long getDrawCalls() {
+		return mDrawCalls;
+	}
+
+	/** Stand-in only: the number of device pixels covered by bitmaps drawn since the last resetCounts() (overlapping bitmaps count twice) */
+	public long getBitmapPixels() {
+		return mBitmapPixels;
+	}
+
+	/** Stand-in only */
+	public void resetCounts() {
+		mDrawCalls = mBitmapPixels = 0;
+	}
+}
@@ -0,0 +1,117 @@
+package android.graphics;
+
+/**
+ * Paint.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Part of the plain-Java stand-in for the Android framework that the tools are compiled against to run them on a JVM (see tools/run.sh); it is
+ * never part of an app. Text is measured as if every character were 0.6 of the text size wide, and line spacing is 1.2 times the text size.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+public class Paint {
+	public enum Style {
+		FILL, STROKE, FILL_AND_STROKE
+	}
+
+	public enum Align {
+		LEFT, CENTER, RIGHT
+	}
+
+	private int mColor = 0xff000000;
+
+	private float mStrokeWidth, mTextSize = 12.0f;
+
+	private Style mStyle = Style.FILL;
+
+	private Align mTextAlign = Align.LEFT;
+
+	private Typeface mTypeface;
+
+	private boolean mAntiAlias, mFilterBitmap;
+
+	public Paint() {
+	}
+
+	public void set(Paint src) {
+		mColor = src.mColor;
+		mStrokeWidth = src.mStrokeWidth;
+		mTextSize = src.mTextSize;
+		mStyle = src.mStyle;
+		mTextAlign = src.mTextAlign;
+		mTypeface = src.mTypeface;
+		mAntiAlias = src.mAntiAlias;
+		mFilterBitmap = src.mFilterBitmap;
+	}
+
+	public int getColor() {
+		return mColor;
+	}
+
+	public void setColor(int color) {
+		mColor = color;
+	}
+
+	public void setAlpha(int a) {
+		mColor = (mColor & 0x00ffffff) | (a << 24);
+	}
+
+	public void setStrokeWidth(float width) {
+		mStrokeWidth = width;
+	}
+
+	public void setStyle(Style style) {
+		mStyle = style;
+	}
+
+	public void setAntiAlias(boolean aa) {
+		mAntiAlias = aa;
+	}
+
+	public void setFilterBitmap(boolean filter) {
+		mFilterBitmap = filter;
+	}
+
+	public void setTextSize(float textSize) {
+		mTextSize = textSize;
+	}
+
+	public void setTextAlign(Align align) {
+		mTextAlign = align;
+	}
+
+	public Typeface setTypeface(Typeface typeface) {
+		mTypeface = typeface;
+		return typeface;
+	}
+
+	public float getFontSpacing() {
+		return mTextSize * 1.2f;
+	}
+
+	public float measureText(String text) {
+		return text.length() * mTextSize * 0.6f;
+	}
+
+	public void getTextBounds(String text, int start, int end, Rect bounds) {
+		bounds.set(0, (int) -mTextSize, (int) ((end - start) * mTextSize * 0.6f), 0);
+	}
+}
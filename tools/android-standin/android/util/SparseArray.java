@@ -0,0 +1,97 @@
+package android.util;
+
+/**
+ * SparseArray.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Part of the plain-Java stand-in for the Android framework that the tools are compiled against to run them on a JVM (see tools/run.sh); it is
+ * never part of an app. Keys are kept sorted, as in the real one, but the value of a removed key is not kept for reuse.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+public class SparseArray<E> {
+	private int[] mKeys = new int[10];
+
+	private Object[] mValues = new Object[10];
+
+	private int mSize;
+
+	private int indexOfKey(int key) {
+		int lo = 0, hi = mSize - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (mKeys[mid] < key)
+				lo = mid + 1;
+			else if (mKeys[mid] > key)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return ~lo;
+	}
+
+	@SuppressWarnings("unchecked")
+	public E get(int key) {
+		int i = indexOfKey(key);
+		return i >= 0 ? (E) mValues[i] : null;
+	}
+
+	public void put(int key, E value) {
+		int i = indexOfKey(key);
+		if (i >= 0) {
+			mValues[i] = value;
+			return;
+		}
+		i = ~i;
+		if (mSize == mKeys.length) {
+			int[] newKeys = new int[mSize * 2];
+			Object[] newValues = new Object[mSize * 2];
+			System.arraycopy(mKeys, 0, newKeys, 0, mSize);
+			System.arraycopy(mValues, 0, newValues, 0, mSize);
+			mKeys = newKeys;
+			mValues = newValues;
+		}
+		System.arraycopy(mKeys, i, mKeys, i + 1, mSize - i);
+		System.arraycopy(mValues, i, mValues, i + 1, mSize - i);
+		mKeys[i] = key;
+		mValues[i] = value;
+		mSize++;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public int keyAt(int index) {
+		return mKeys[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	public E valueAt(int index) {
+		return (E) mValues[index];
+	}
+
+	public void clear() {
+		for (int i = 0; i < mSize; i++)
+			mValues[i] = null;
+		mSize = 0;
+	}
+}
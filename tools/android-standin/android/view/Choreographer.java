@@ -0,0 +1,73 @@
+package android.view;
+
+/**
+ * Choreographer.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Part of the plain-Java stand-in for the Android framework that the tools are compiled against to run them on a JVM (see tools/run.sh); it is
+ * never part of an app. There is no display, so frames happen when a tool calls doFrame() (which the real Choreographer does not have): that runs
+ * the callbacks posted before it, as the real Choreographer does on each vsync.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+import java.util.ArrayList;
+
+public final class Choreographer {
+	public interface FrameCallback {
+		void doFrame(long frameTimeNanos);
+	}
+
+	private static final ThreadLocal<Choreographer> sThreadInstance = new ThreadLocal<Choreographer>() {
+		@Override
+		protected Choreographer initialValue() {
+			return new Choreographer();
+		}
+	};
+
+	private ArrayList<FrameCallback> mCallbacks = new ArrayList<FrameCallback>(), mRunning = new ArrayList<FrameCallback>();
+
+	private Choreographer() {
+	}
+
+	/** The Choreographer of the calling thread */
+	public static Choreographer getInstance() {
+		return sThreadInstance.get();
+	}
+
+	public void postFrameCallback(FrameCallback callback) {
+		mCallbacks.add(callback);
+	}
+
+	public void removeFrameCallback(FrameCallback callback) {
+		while (mCallbacks.remove(callback))
+			;
+	}
+
+	/** Stand-in only: run the callbacks posted so far. Callbacks they post run at the next frame. */
+	public void doFrame(long frameTimeNanos) {
+		ArrayList<FrameCallback> callbacks = mCallbacks;
+		mCallbacks = mRunning;
+		mRunning = callbacks;
+		for (int i = 0; i < callbacks.size(); i++)
+			callbacks.get(i).doFrame(frameTimeNanos);
+		callbacks.clear();
+	}
+}
@@ -0,0 +1,267 @@
+package android.view;
+
+/**
+ * MotionEvent.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Part of the plain-Java stand-in for the Android framework that the tools are compiled against to run them on a JVM (see tools/run.sh); it is
+ * never part of an app. Stores the pointers of each sample in arrays, with the same accessors as the real MotionEvent (API level 14), and
+ * recycles events through a pool like the real one.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+public final class MotionEvent {
+	public static final int ACTION_MASK = 0xff, ACTION_DOWN = 0, ACTION_UP = 1, ACTION_MOVE = 2, ACTION_CANCEL = 3, ACTION_OUTSIDE = 4,
+			ACTION_POINTER_DOWN = 5, ACTION_POINTER_UP = 6, ACTION_POINTER_INDEX_MASK = 0xff00, ACTION_POINTER_INDEX_SHIFT = 8;
+
+	public static final int TOOL_TYPE_UNKNOWN = 0, TOOL_TYPE_FINGER = 1, TOOL_TYPE_STYLUS = 2, TOOL_TYPE_MOUSE = 3;
+
+	public static final class PointerProperties {
+		public int id, toolType;
+	}
+
+	public static final class PointerCoords {
+		public float x, y, pressure, size, touchMajor, touchMinor, toolMajor, toolMinor, orientation;
+	}
+
+	private static final Object sPoolLock = new Object();
+
+	private static MotionEvent sPool;
+
+	private MotionEvent mNext;
+
+	private long mDownTime;
+
+	private int mAction, mSource, mNumPointers, mNumSamples;
+
+	private int[] mIds = new int[0], mToolTypes = new int[0];
+
+	/** Sample s of pointer i is at index s * mNumPointers + i. The last sample is the current one, the others are the history. */
+	private float[] mXs = new float[0], mYs = new float[0], mPressures = new float[0], mTouchMajors = new float[0], mTouchMinors = new float[0],
+			mOrientations = new float[0];
+
+	private long[] mEventTimes = new long[0];
+
+	private MotionEvent() {
+	}
+
+	public static MotionEvent obtain(long downTime, long eventTime, int action, int pointerCount, PointerProperties[] pointerProperties,
+			PointerCoords[] pointerCoords, int metaState, int buttonState, float xPrecision, float yPrecision, int deviceId, int edgeFlags,
+			int source, int flags) {
+		MotionEvent ev;
+		synchronized (sPoolLock) {
+			ev = sPool;
+			if (ev != null) {
+				sPool = ev.mNext;
+				ev.mNext = null;
+			}
+		}
+		if (ev == null)
+			ev = new MotionEvent();
+		ev.mDownTime = downTime;
+		ev.mAction = action;
+		ev.mSource = source;
+		ev.mNumPointers = pointerCount;
+		ev.mNumSamples = 0;
+		if (ev.mIds.length < pointerCount) {
+			ev.mIds = new int[pointerCount];
+			ev.mToolTypes = new int[pointerCount];
+		}
+		for (int i = 0; i < pointerCount; i++) {
+			ev.mIds[i] = pointerProperties[i].id;
+			ev.mToolTypes[i] = pointerProperties[i].toolType;
+		}
+		ev.addSample(eventTime, pointerCoords);
+		return ev;
+	}
+
+	/** Add a sample to an ACTION_MOVE event; the previous current sample becomes the newest historical sample */
+	public void addBatch(long eventTime, PointerCoords[] pointerCoords, int metaState) {
+		addSample(eventTime, pointerCoords);
+	}
+
+	private void addSample(long eventTime, PointerCoords[] pointerCoords) {
+		int s = mNumSamples, n = mNumPointers;
+		if (mEventTimes.length <= s) {
+			long[] newTimes = new long[s * 2 + 1];
+			System.arraycopy(mEventTimes, 0, newTimes, 0, s);
+			mEventTimes = newTimes;
+		}
+		if (mXs.length < (s + 1) * n) {
+			int capacity = (s + 1) * n * 2;
+			mXs = grow(mXs, capacity);
+			mYs = grow(mYs, capacity);
+			mPressures = grow(mPressures, capacity);
+			mTouchMajors = grow(mTouchMajors, capacity);
+			mTouchMinors = grow(mTouchMinors, capacity);
+			mOrientations = grow(mOrientations, capacity);
+		}
+		mEventTimes[s] = eventTime;
+		for (int i = 0; i < n; i++) {
+			PointerCoords c = pointerCoords[i];
+			int idx = s * n + i;
+			mXs[idx] = c.x;
+			mYs[idx] = c.y;
+			mPressures[idx] = c.pressure;
+			mTouchMajors[idx] = c.touchMajor;
+			mTouchMinors[idx] = c.touchMinor;
+			mOrientations[idx] = c.orientation;
+		}
+		mNumSamples++;
+	}
+
+	private static float[] grow(float[] a, int capacity) {
+		float[] b = new float[capacity];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	/** Return the event to the pool. It must not be used afterwards. */
+	public void recycle() {
+		synchronized (sPoolLock) {
+			mNext = sPool;
+			sPool = this;
+		}
+	}
+
+	public int getAction() {
+		return mAction;
+	}
+
+	public int getActionMasked() {
+		return mAction & ACTION_MASK;
+	}
+
+	public int getActionIndex() {
+		return (mAction & ACTION_POINTER_INDEX_MASK) >> ACTION_POINTER_INDEX_SHIFT;
+	}
+
+	public int getSource() {
+		return mSource;
+	}
+
+	public long getDownTime() {
+		return mDownTime;
+	}
+
+	public long getEventTime() {
+		return mEventTimes[mNumSamples - 1];
+	}
+
+	public int getPointerCount() {
+		return mNumPointers;
+	}
+
+	public int getPointerId(int pointerIndex) {
+		return mIds[pointerIndex];
+	}
+
+	public int findPointerIndex(int pointerId) {
+		for (int i = 0; i < mNumPointers; i++)
+			if (mIds[i] == pointerId)
+				return i;
+		return -1;
+	}
+
+	public int getToolType(int pointerIndex) {
+		return mToolTypes[pointerIndex];
+	}
+
+	public int getHistorySize() {
+		return mNumSamples - 1;
+	}
+
+	public long getHistoricalEventTime(int pos) {
+		return mEventTimes[pos];
+	}
+
+	public float getX() {
+		return getX(0);
+	}
+
+	public float getY() {
+		return getY(0);
+	}
+
+	public float getPressure() {
+		return getPressure(0);
+	}
+
+	public float getX(int pointerIndex) {
+		return getHistoricalX(pointerIndex, mNumSamples - 1);
+	}
+
+	public float getY(int pointerIndex) {
+		return getHistoricalY(pointerIndex, mNumSamples - 1);
+	}
+
+	public float getPressure(int pointerIndex) {
+		return getHistoricalPressure(pointerIndex, mNumSamples - 1);
+	}
+
+	public float getTouchMajor(int pointerIndex) {
+		return getHistoricalTouchMajor(pointerIndex, mNumSamples - 1);
+	}
+
+	public float getTouchMinor(int pointerIndex) {
+		return getHistoricalTouchMinor(pointerIndex, mNumSamples - 1);
+	}
+
+	public float getOrientation(int pointerIndex) {
+		return getHistoricalOrientation(pointerIndex, mNumSamples - 1);
+	}
+
+	public float getHistoricalX(int pos) {
+		return getHistoricalX(0, pos);
+	}
+
+	public float getHistoricalY(int pos) {
+		return getHistoricalY(0, pos);
+	}
+
+	public float getHistoricalPressure(int pos) {
+		return getHistoricalPressure(0, pos);
+	}
+
+	public float getHistoricalX(int pointerIndex, int pos) {
+		return mXs[pos * mNumPointers + pointerIndex];
+	}
+
+	public float getHistoricalY(int pointerIndex, int pos) {
+		return mYs[pos * mNumPointers + pointerIndex];
+	}
+
+	public float getHistoricalPressure(int pointerIndex, int pos) {
+		return mPressures[pos * mNumPointers + pointerIndex];
+	}
+
+	public float getHistoricalTouchMajor(int pointerIndex, int pos) {
+		return mTouchMajors[pos * mNumPointers + pointerIndex];
+	}
+
+	public float getHistoricalTouchMinor(int pointerIndex, int pos) {
+		return mTouchMinors[pos * mNumPointers + pointerIndex];
+	}
+
+	public float getHistoricalOrientation(int pointerIndex, int pos) {
+		return mOrientations[pos * mNumPointers + pointerIndex];
+	}
+}
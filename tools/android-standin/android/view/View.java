@@ -0,0 +1,124 @@
+package android.view;
+
+/**
+ * View.java
+ *
+ * Author: Luke Hutchison (luke.hutch@mit.edu)
+ *
+ * Part of the plain-Java stand-in for the Android framework that the tools are compiled against to run them on a JVM (see tools/run.sh); it is
+ * never part of an app. Holds the view's size and whether it needs drawing; there is no window or view hierarchy, so a tool sizes the view with
+ * layout() and draws it with draw() itself.
+ *
+ * --
+ *
+ * Released under the MIT license (but please notify me if you use this code, so that I can give your project credit at
+ * http://code.google.com/p/android-multitouch-controller ).
+ *
+ * MIT license: http://www.opensource.org/licenses/MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+
+public class View {
+	private final Context mContext;
+
+	private int mLeft, mTop, mRight, mBottom;
+
+	private boolean mHasBackgroundColor;
+
+	private int mBackgroundColor;
+
+	/** Set by invalidate(), cleared by draw() */
+	private volatile boolean mDirty = true;
+
+	public View(Context context) {
+		this(context, null, 0);
+	}
+
+	public View(Context context, AttributeSet attrs) {
+		this(context, attrs, 0);
+	}
+
+	public View(Context context, AttributeSet attrs, int defStyle) {
+		mContext = context;
+	}
+
+	public Context getContext() {
+		return mContext;
+	}
+
+	public Resources getResources() {
+		return mContext.getResources();
+	}
+
+	public final int getWidth() {
+		return mRight - mLeft;
+	}
+
+	public final int getHeight() {
+		return mBottom - mTop;
+	}
+
+	/** Give the view its position and size, calling onSizeChanged() if the size changed, as the layout pass does */
+	public void layout(int l, int t, int r, int b) {
+		int oldWidth = getWidth(), oldHeight = getHeight();
+		mLeft = l;
+		mTop = t;
+		mRight = r;
+		mBottom = b;
+		if (getWidth() != oldWidth || getHeight() != oldHeight)
+			onSizeChanged(getWidth(), getHeight(), oldWidth, oldHeight);
+		invalidate();
+	}
+
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+	}
+
+	public void setBackgroundColor(int color) {
+		mHasBackgroundColor = true;
+		mBackgroundColor = color;
+		invalidate();
+	}
+
+	public void invalidate() {
+		mDirty = true;
+	}
+
+	public void postInvalidate() {
+		mDirty = true;
+	}
+
+	/** Whether the view has been invalidated since it was last drawn */
+	public boolean isDirty() {
+		return mDirty;
+	}
+
+	/** Draw the background and then the view itself, as for a view with no children */
+	public void draw(Canvas canvas) {
+		mDirty = false;
+		if (mHasBackgroundColor)
+			canvas.drawColor(mBackgroundColor);
+		onDraw(canvas);
+	}
+
+	protected void onDraw(Canvas canvas) {
+	}
+
+	public boolean onTouchEvent(MotionEvent event) {
+		return false;
+	}
+}
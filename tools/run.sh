@@ -0,0 +1,42 @@
+#!/bin/sh
+#
+# Compiles the tools in the tools/ directory of each project, and the sources they use, against the plain-Java stand-in for the Android
+# framework in tools/android-standin, then runs one of them on a JVM. Needs only a JDK (javac and java on the PATH), not the Android SDK.
+#
+# Usage: tools/run.sh [main class [args...]]
+#   e.g. tools/run.sh org.metalev.multitouch.controller.SoakHarness 1000000
+# With no arguments it only compiles, which checks that the tools still build.
+#
+# To compare TwoFingerBenchmark with another version of the controller (e.g. from an older checkout), point CONTROLLER_SRC at that
+# version's MTController/src. Only the benchmark and what it uses are compiled then, into a separate directory:
+#   CONTROLLER_SRC=/path/to/old/MTController/src tools/run.sh org.metalev.multitouch.controller.TwoFingerBenchmark
+
+set -e
+
+root=$(cd "$(dirname "$0")/.." && pwd)
+standin="$root/tools/android-standin"
+tools="$root/MTController/tools:$root/MTPhotoSortr/tools:$root/MTVisualizer/tools"
+
+if [ -n "$CONTROLLER_SRC" ]; then
+	out="$root/tools/build/other-controller"
+	sourcepath="$standin:$CONTROLLER_SRC:$root/MTController/tools"
+	sources="$root/MTController/tools/org/metalev/multitouch/controller/TwoFingerBenchmark.java"
+else
+	out="$root/tools/build/classes"
+	sourcepath="$standin:$root/MTController/src:$root/MTPhotoSortr/src:$root/MTVisualizer/src:$tools"
+	sources=
+	for dir in $(echo "$tools" | tr ':' ' '); do
+		if [ -d "$dir" ]; then
+			sources="$sources $(find "$dir" -name '*.java')"
+		fi
+	done
+fi
+
+rm -rf "$out"
+mkdir -p "$out"
+# -sourcepath compiles just the app and framework classes the tools use, so the stand-in only has to cover those
+javac -nowarn -encoding UTF-8 -d "$out" -sourcepath "$sourcepath" $sources
+
+if [ $# -gt 0 ]; then
+	exec java -cp "$out" "$@"
+fi